@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path helpers over compiler output names: closures, anonymous classes and
+ * trait helpers mixed with plain classes. One operation is one batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroovyClassHelperBenchmark {
+    private static final int BATCH_SIZE = 10000;
+    private static final String BASE_DIRECTORY = "/build/project/target/classes";
+    private static final String[] SUFFIXES = {
+            "", "$1", "$2", "$_closure1", "$_run_closure2", "$Inner", "$Trait$Helper", "$Trait$FieldHelper"
+    };
+
+    private String[] filePaths;
+    private String[] classNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filePaths = new String[BATCH_SIZE];
+        classNames = new String[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String className = "com/example/module" + (i % 40) + "/feature" + (i % 7)
+                    + "/Type" + i + SUFFIXES[i % SUFFIXES.length];
+            filePaths[i] = BASE_DIRECTORY + "/" + className + ".class";
+            classNames[i] = className.replace('/', '.');
+        }
+    }
+
+    @Benchmark
+    public void getClassPathFromFilePath(Blackhole blackhole) {
+        for (String filePath : filePaths) {
+            blackhole.consume(GroovyClassHelper.getClassPathFromFilePath(filePath, BASE_DIRECTORY));
+        }
+    }
+
+    @Benchmark
+    public void getClassPathForClass(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(GroovyClassHelper.getClassPathForClass(className));
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.RecognitionException;
+import groovyjarjarantlr.TokenStreamException;
+import groovyjarjarantlr.collections.AST;
+import org.codehaus.groovy.antlr.parser.GroovyRecognizer;
+import org.codehaus.groovy.antlr.treewalker.SourceCodeTraversal;
+import org.codehaus.groovy.antlr.treewalker.VisitorAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Separates the phases behind a parse: token scanning, lexing plus parsing
+ * into an AST, and walking an already built AST. Sources are held in memory
+ * so disk access is not part of the numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroovyParsePhasesBenchmark {
+
+    @Param({"SMALL_SCRIPTS", "HUGE_CLASSES", "DEEPLY_NESTED"})
+    public SyntheticCorpus corpus;
+
+    private List<String> sources;
+    private List<AST> asts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RecognitionException, TokenStreamException {
+        sources = new ArrayList<String>(corpus.sources().values());
+        asts = new ArrayList<AST>(sources.size());
+        for (String source : sources) {
+            asts.add(parse(source));
+        }
+    }
+
+    private static AST parse(String source) throws RecognitionException, TokenStreamException {
+        GroovyRecognizer parser = GroovyRecognizer.make(GroovySourceInput.newLexer(new StringReader(source)));
+        parser.setSourceBuffer(GroovySourceInput.getSourceBuffer());
+        parser.compilationUnit();
+        return parser.getAST();
+    }
+
+    @Benchmark
+    public void tokenScan(Blackhole blackhole) throws GroovyParseLimitException {
+        for (String source : sources) {
+            GroovyDeclarationScanner scanner = new GroovyDeclarationScanner(false);
+            blackhole.consume(scanner.scan(new StringReader(source)));
+            blackhole.consume(scanner.getClassPaths());
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws RecognitionException, TokenStreamException {
+        for (String source : sources) {
+            blackhole.consume(parse(source));
+        }
+    }
+
+    @Benchmark
+    public void declarationTraversal(Blackhole blackhole) {
+        for (AST ast : asts) {
+            GroovyClassVisitor visitor = new GroovyClassVisitor();
+            new GroovyDeclarationTraversal(visitor, false).process(ast);
+            blackhole.consume(visitor.getClassPaths());
+        }
+    }
+
+    @Benchmark
+    public void localClassTraversal(Blackhole blackhole) {
+        for (AST ast : asts) {
+            GroovyClassVisitor visitor = new GroovyClassVisitor();
+            new GroovyDeclarationTraversal(visitor, true).process(ast);
+            blackhole.consume(visitor.getClassPaths());
+        }
+    }
+
+    /** Baseline: the stock Groovy traversal over every node. */
+    @Benchmark
+    public void sourceCodeTraversal(Blackhole blackhole) {
+        for (AST ast : asts) {
+            blackhole.consume(new SourceCodeTraversal(new VisitorAdapter()).process(ast));
+        }
+    }
+
+}
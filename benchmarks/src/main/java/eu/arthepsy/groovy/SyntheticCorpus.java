@@ -0,0 +1,147 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generated Groovy sources used as benchmark input, so results do not
+ * depend on whatever project happens to be checked out next to the module.
+ */
+public enum SyntheticCorpus {
+    SMALL_SCRIPTS(2000) {
+        @Override
+        String generate(int index) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("package bench.scripts.group").append(index % 50).append("\n\n");
+            sb.append("import java.util.concurrent.TimeUnit\n\n");
+            sb.append("def values = [1, 2, 3].collect { it * ").append(index).append(" }\n");
+            sb.append("println \"script ").append(index).append(": ${values.sum()}\"\n");
+            sb.append("class Helper").append(index).append(" {\n");
+            sb.append("    int timeout = TimeUnit.SECONDS.toMillis(").append(index % 7).append(")\n");
+            sb.append("    def call(String name) { name.toUpperCase() }\n");
+            sb.append("}\n");
+            return sb.toString();
+        }
+    },
+    HUGE_CLASSES(4) {
+        @Override
+        String generate(int index) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("package bench.huge\n\n");
+            sb.append("class Huge").append(index).append(" {\n");
+            for (int m = 0; m < 3000; m++) {
+                sb.append("    def field").append(m).append(" = [key: ").append(m).append(", list: [1, 2, 3]]\n");
+                sb.append("    def method").append(m).append("(int a, String b) {\n");
+                sb.append("        def total = 0\n");
+                sb.append("        for (int i = 0; i < a; i++) {\n");
+                sb.append("            total += b.size() * i + field").append(m).append(".key\n");
+                sb.append("        }\n");
+                sb.append("        [a, b, total].findAll { it != null }.each { println \"${it} ").append(m).append("\" }\n");
+                sb.append("        return total\n");
+                sb.append("    }\n");
+                if (m % 500 == 0) {
+                    sb.append("    static class Part").append(m).append(" { def value = ").append(m).append(" }\n");
+                }
+            }
+            sb.append("}\n");
+            return sb.toString();
+        }
+    },
+    DEEPLY_NESTED(50) {
+        @Override
+        String generate(int index) {
+            int depth = 60;
+            StringBuilder sb = new StringBuilder();
+            sb.append("package bench.nested\n\n");
+            for (int d = 0; d < depth; d++) {
+                sb.append("class Level").append(d).append("_").append(index).append(" {\n");
+                sb.append("def value").append(d).append(" = ").append(d).append("\n");
+            }
+            for (int d = 0; d < depth; d++) {
+                sb.append("}\n");
+            }
+            return sb.toString();
+        }
+    };
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int fileCount;
+
+    SyntheticCorpus(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    abstract String generate(int index);
+
+    Map<String, String> sources() {
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+        for (int i = 0; i < fileCount; i++) {
+            sources.put(name().toLowerCase() + "/Source" + i + ".groovy", generate(i));
+        }
+        return sources;
+    }
+
+    List<Path> write(Path directory) throws IOException {
+        List<Path> files = new ArrayList<Path>(fileCount);
+        for (Map.Entry<String, String> source : sources().entrySet()) {
+            Path file = directory.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getValue().getBytes(UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
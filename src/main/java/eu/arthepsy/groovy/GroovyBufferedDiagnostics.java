@@ -0,0 +1,95 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps diagnostics in memory for batch runs to inspect afterwards. Beyond
+ * the capacity, further diagnostics are only counted.
+ */
+public class GroovyBufferedDiagnostics implements GroovyDiagnostics {
+    private final GroovyDiagnosticLevel level;
+    private final int capacity;
+    private final Queue<GroovyDiagnostic> diagnostics = new ConcurrentLinkedQueue<GroovyDiagnostic>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /** Keeps every warning and error. */
+    public GroovyBufferedDiagnostics() {
+        this(GroovyDiagnosticLevel.WARN, Integer.MAX_VALUE);
+    }
+
+    public GroovyBufferedDiagnostics(GroovyDiagnosticLevel level, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        this.level = level;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean isEnabled(GroovyDiagnosticLevel level) {
+        return this.level.includes(level);
+    }
+
+    @Override
+    public void report(GroovyDiagnostic diagnostic) {
+        if (!isEnabled(diagnostic.getLevel())) {
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        diagnostics.add(diagnostic);
+    }
+
+    /** Snapshot of the diagnostics kept, in the order reported. */
+    public List<GroovyDiagnostic> getDiagnostics() {
+        return new ArrayList<GroovyDiagnostic>(diagnostics);
+    }
+
+    /** Number of diagnostics not kept because the capacity was reached. */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Removes and returns the diagnostics kept so far. */
+    public List<GroovyDiagnostic> drain() {
+        List<GroovyDiagnostic> drained = new ArrayList<GroovyDiagnostic>();
+        GroovyDiagnostic diagnostic;
+        while ((diagnostic = diagnostics.poll()) != null) {
+            size.decrementAndGet();
+            drained.add(diagnostic);
+        }
+        return drained;
+    }
+
+}
@@ -0,0 +1,422 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import org.codehaus.groovy.util.ReleaseInfo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * On-disk cache of per-file parse results, keyed by file path and validated
+ * by size, modification time and content hash. The cache file ends with a
+ * CRC32 of its contents and is replaced atomically, so a truncated or
+ * foreign file is simply treated as an empty cache.
+ * <p>
+ * Results for git blobs are keyed by blob id and file name instead, and
+ * need no validation, as a blob never changes.
+ */
+public class GroovyClassCache {
+    private static final int MAGIC = 0x47435043;
+    private static final int FORMAT_VERSION = 6;
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final int IMPORT_STATIC = 1;
+    private static final int IMPORT_STAR = 2;
+    private static final String BLOB_KEY_PREFIX = "blob:";
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries;
+
+    public GroovyClassCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public void remove(Path file) {
+        entries.remove(getKey(file));
+    }
+
+    GroovyFileResult get(Path file, BasicFileAttributes attributes, int options) throws IOException {
+        String key = getKey(file);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.options != options || entry.size != attributes.size()) {
+            return null;
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (entry.modified != modified) {
+            if (!Arrays.equals(entry.hash, hash(file))) {
+                entries.remove(key, entry);
+                return null;
+            }
+            entries.put(key, new Entry(entry.size, modified, entry.hash, options, entry.result));
+        }
+        return entry.result;
+    }
+
+    void put(Path file, BasicFileAttributes attributes, byte[] hash, int options, GroovyFileResult result) {
+        long modified = attributes.lastModifiedTime().toMillis();
+        entries.put(getKey(file), new Entry(attributes.size(), modified, hash, options, result));
+    }
+
+    GroovyFileResult getBlob(String blobKey, int options) {
+        Entry entry = entries.get(BLOB_KEY_PREFIX + blobKey);
+        return (entry != null && entry.options == options ? entry.result : null);
+    }
+
+    void putBlob(String blobKey, int options, GroovyFileResult result) {
+        entries.put(BLOB_KEY_PREFIX + blobKey, new Entry(-1, 0, new byte[0], options, result));
+    }
+
+    public void load() throws IOException {
+        entries.clear();
+        if (!Files.isRegularFile(cacheFile)) {
+            return;
+        }
+        byte[] data = Files.readAllBytes(cacheFile);
+        int length = data.length - 8;
+        if (length < 0) {
+            return;
+        }
+        // a damaged file is dropped before any entry is decoded
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if (ByteBuffer.wrap(data, length, 8).getLong() != crc.getValue()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+        try {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || in.readInt() != GroovyClassParser.PARSER_VERSION
+                    || !in.readUTF().equals(getGroovyVersion())) {
+                return;
+            }
+            Map<String, Entry> loaded = new ConcurrentHashMap<String, Entry>();
+            int count = readCount(in);
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                loaded.put(key, readEntry(in, key));
+            }
+            entries.putAll(loaded);
+        } catch (IOException e) {
+            entries.clear();
+        } finally {
+            in.close();
+        }
+    }
+
+    public void save() throws IOException {
+        Path directory = cacheFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)), crc));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(GroovyClassParser.PARSER_VERSION);
+                out.writeUTF(getGroovyVersion());
+                Map<String, Entry> snapshot = new HashMap<String, Entry>(entries);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    writeEntry(out, e.getValue());
+                }
+                out.flush();
+                out.writeLong(crc.getValue());
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " not available", e);
+        }
+    }
+
+    private static byte[] hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        InputStream in;
+        try {
+            in = new DigestInputStream(Files.newInputStream(file), digest);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+        } finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    private static String getKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static String getGroovyVersion() {
+        return ReleaseInfo.getVersion();
+    }
+
+    private static Entry readEntry(DataInputStream in, String filePath) throws IOException {
+        long size = in.readLong();
+        long modified = in.readLong();
+        byte[] hash = new byte[in.readUnsignedByte()];
+        in.readFully(hash);
+        int options = in.readInt();
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= GroovyParseStatus.values().length) {
+            throw new IOException("Unknown parse status " + ordinal + " for " + filePath);
+        }
+        GroovyParseStatus status = GroovyParseStatus.values()[ordinal];
+        String packagePath = in.readBoolean() ? in.readUTF() : null;
+        String message = in.readBoolean() ? in.readUTF() : null;
+        String fileNameClassPath = in.readBoolean() ? in.readUTF() : null;
+        int count = readCount(in);
+        List<GroovyTypeDeclaration> types = new ArrayList<GroovyTypeDeclaration>(count);
+        for (int i = 0; i < count; i++) {
+            types.add(readTypeDeclaration(in, types, filePath));
+        }
+        int importCount = readCount(in);
+        List<GroovyImport> imports = new ArrayList<GroovyImport>(importCount);
+        for (int i = 0; i < importCount; i++) {
+            int flags = in.readUnsignedByte();
+            String name = in.readUTF();
+            String alias = readOptionalUTF(in);
+            imports.add(new GroovyImport(name, alias, (flags & IMPORT_STATIC) != 0, (flags & IMPORT_STAR) != 0));
+        }
+        List<String> typeReferences = readNames(in);
+        List<String> generatedClassPaths = readNames(in);
+        int errorCount = readCount(in);
+        List<GroovySyntaxError> syntaxErrors = new ArrayList<GroovySyntaxError>(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+            syntaxErrors.add(new GroovySyntaxError(in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    readOptionalUTF(in)));
+        }
+        GroovyFileResult result = new GroovyFileResult(filePath, packagePath, fileNameClassPath,
+                types, imports, new LinkedHashSet<String>(typeReferences), generatedClassPaths, status, message,
+                syntaxErrors);
+        return new Entry(size, modified, hash, options, result);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        GroovyFileResult result = entry.result;
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        out.writeByte(entry.hash.length);
+        out.write(entry.hash);
+        out.writeInt(entry.options);
+        out.writeByte(result.getStatus().ordinal());
+        writeOptionalUTF(out, result.getPackagePath());
+        writeOptionalUTF(out, result.getMessage());
+        writeOptionalUTF(out, result.getFileNameClassPath());
+        List<GroovyTypeDeclaration> types = result.getTypeDeclarations();
+        out.writeInt(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            writeTypeDeclaration(out, types, i);
+        }
+        List<GroovyImport> imports = result.getImports();
+        out.writeInt(imports.size());
+        for (GroovyImport groovyImport : imports) {
+            out.writeByte((groovyImport.isStatic() ? IMPORT_STATIC : 0) | (groovyImport.isStar() ? IMPORT_STAR : 0));
+            out.writeUTF(groovyImport.getName());
+            writeOptionalUTF(out, groovyImport.getAlias());
+        }
+        writeNames(out, result.getTypeReferences());
+        writeNames(out, result.getGeneratedClassPaths());
+        List<GroovySyntaxError> syntaxErrors = result.getSyntaxErrors();
+        out.writeInt(syntaxErrors.size());
+        for (GroovySyntaxError error : syntaxErrors) {
+            out.writeInt(error.getLine());
+            out.writeInt(error.getColumn());
+            out.writeInt(error.getEndLine());
+            out.writeInt(error.getEndColumn());
+            writeOptionalUTF(out, error.getMessage());
+        }
+    }
+
+    private static GroovyTypeDeclaration readTypeDeclaration(DataInputStream in, List<GroovyTypeDeclaration> previous,
+                                                             String filePath) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= GroovyTypeKind.values().length) {
+            throw new IOException("Unknown type kind " + ordinal + " for " + filePath);
+        }
+        int enclosing = in.readInt();
+        if (enclosing < -1 || enclosing >= previous.size()) {
+            throw new IOException("Invalid enclosing type " + enclosing + " for " + filePath);
+        }
+        String classPath = in.readUTF();
+        String name = in.readUTF();
+        String superclass = readOptionalUTF(in);
+        List<String> interfaces = readNames(in);
+        List<String> annotations = readNames(in);
+        String enclosingClassPath = null;
+        int depth = 0;
+        if (enclosing >= 0) {
+            GroovyTypeDeclaration outer = previous.get(enclosing);
+            enclosingClassPath = outer.getClassPath();
+            depth = outer.getDepth() + 1;
+        }
+        return new GroovyTypeDeclaration(classPath, name, GroovyTypeKind.values()[ordinal],
+                enclosingClassPath, depth, superclass, interfaces, annotations);
+    }
+
+    /**
+     * Reads an element count, rejecting one the remaining bytes could not
+     * hold as every element takes at least one byte.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) {
+            throw new IOException("Invalid element count " + count);
+        }
+        return count;
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream out, Collection<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    /**
+     * The enclosing type is stored as the index of an earlier declaration,
+     * which always exists as types are listed in the order they are opened.
+     */
+    private static void writeTypeDeclaration(DataOutputStream out, List<GroovyTypeDeclaration> types, int index)
+            throws IOException {
+        GroovyTypeDeclaration type = types.get(index);
+        out.writeByte(type.getKind().ordinal());
+        out.writeInt(getEnclosingIndex(types, index));
+        out.writeUTF(type.getClassPath());
+        out.writeUTF(type.getName());
+        writeOptionalUTF(out, type.getSuperclass());
+        writeNames(out, type.getInterfaces());
+        writeNames(out, type.getAnnotations());
+    }
+
+    private static int getEnclosingIndex(List<GroovyTypeDeclaration> types, int index) {
+        GroovyTypeDeclaration type = types.get(index);
+        String enclosingClassPath = type.getEnclosingClassPath();
+        if (enclosingClassPath == null) {
+            return -1;
+        }
+        for (int i = index - 1; i >= 0; i--) {
+            GroovyTypeDeclaration candidate = types.get(i);
+            if (candidate.getDepth() == type.getDepth() - 1 && candidate.getClassPath().equals(enclosingClassPath)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String readOptionalUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+        private final int options;
+        private final GroovyFileResult result;
+
+        private Entry(long size, long modified, byte[] hash, int options, GroovyFileResult result) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.options = options;
+            this.result = result;
+        }
+    }
+
+}
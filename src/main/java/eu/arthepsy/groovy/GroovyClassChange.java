@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Class paths gained and lost by one source file since it was last seen.
+ */
+public final class GroovyClassChange {
+    private final Path filePath;
+    private final Set<String> addedClassPaths;
+    private final Set<String> removedClassPaths;
+    private final GroovyFileResult result;
+
+    GroovyClassChange(Path filePath, Set<String> addedClassPaths, Set<String> removedClassPaths,
+                      GroovyFileResult result) {
+        this.filePath = filePath;
+        this.addedClassPaths = Collections.unmodifiableSet(new LinkedHashSet<String>(addedClassPaths));
+        this.removedClassPaths = Collections.unmodifiableSet(new LinkedHashSet<String>(removedClassPaths));
+        this.result = result;
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    public Set<String> getAddedClassPaths() {
+        return addedClassPaths;
+    }
+
+    public Set<String> getRemovedClassPaths() {
+        return removedClassPaths;
+    }
+
+    /** Current result for the file, or null if the file was deleted. */
+    public GroovyFileResult getResult() {
+        return result;
+    }
+
+    public boolean isDeleted() {
+        return result == null;
+    }
+
+}
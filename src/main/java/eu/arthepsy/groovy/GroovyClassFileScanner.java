@@ -0,0 +1,240 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps compiler output back to source class paths, see
+ * {@link GroovyClassHelper#getClassPathForClass(String)}. Classes
+ * directories are walked with one fork/join task per directory, and JAR
+ * files are read from their central directory only, so no entry is ever
+ * inflated. Several roots are scanned in parallel.
+ * <p>
+ * Class files under {@code META-INF/} in a JAR, such as multi-release
+ * variants, are skipped as they duplicate classes found elsewhere. So are
+ * {@code package-info} and {@code module-info}, which no source class path
+ * can match.
+ */
+public class GroovyClassFileScanner {
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final String META_INF_PREFIX = "META-INF/";
+    private static final String PACKAGE_INFO = "package-info";
+    private static final String MODULE_INFO = "module-info";
+
+    private final GroovyClassPathSet classPaths;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    public GroovyClassFileScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GroovyClassFileScanner(int parallelism) {
+        this(null, parallelism);
+    }
+
+    public GroovyClassFileScanner(ForkJoinPool pool) {
+        this(pool, 0);
+    }
+
+    private GroovyClassFileScanner(ForkJoinPool pool, int parallelism) {
+        if (pool == null && parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+        classPaths = new GroovyClassPathSet();
+    }
+
+    public GroovyClassPathSet getClassPaths() {
+        return classPaths;
+    }
+
+    /**
+     * Scans a classes directory, or a JAR (or any other ZIP) file.
+     */
+    public void scan(Path path) throws IOException {
+        scanAll(Collections.singletonList(path));
+    }
+
+    public void scanAll(Collection<Path> paths) throws IOException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        ForkJoinPool service = pool;
+        if (service == null) {
+            service = new ForkJoinPool(parallelism);
+        }
+        try {
+            service.invoke(new RootsScan(paths));
+        } catch (ScanFailure e) {
+            throw getIOException(e);
+        } finally {
+            if (service != pool) {
+                service.shutdown();
+            }
+        }
+    }
+
+    private static IOException getIOException(Throwable t) {
+        Throwable cause = t;
+        while (cause != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        return (cause != null ? (IOException) cause : new IOException(t));
+    }
+
+    private void addClass(String binaryName, String[] lastClassPath) {
+        String classPath = GroovyClassHelper.getClassPathForClass(binaryName);
+        // closures and inner classes of one source class tend to be listed together
+        if (!classPath.equals(lastClassPath[0])) {
+            classPaths.add(classPath);
+            lastClassPath[0] = classPath;
+        }
+    }
+
+    private static boolean isDescriptor(String className) {
+        return className.equals(PACKAGE_INFO) || className.equals(MODULE_INFO);
+    }
+
+    private final class RootsScan extends RecursiveAction {
+        private final Collection<Path> roots;
+
+        private RootsScan(Collection<Path> roots) {
+            this.roots = roots;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> scans = new ArrayList<RecursiveAction>(roots.size());
+            for (Path root : roots) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    throw new ScanFailure(e);
+                }
+                if (attributes.isDirectory()) {
+                    scans.add(new DirectoryScan(root, ""));
+                } else {
+                    scans.add(new JarScan(root));
+                }
+            }
+            invokeAll(scans);
+        }
+    }
+
+    private final class DirectoryScan extends RecursiveAction {
+        private final Path directory;
+        private final String packagePrefix;
+
+        private DirectoryScan(Path directory, String packagePrefix) {
+            this.directory = directory;
+            this.packagePrefix = packagePrefix;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryScan> subdirectories = new ArrayList<DirectoryScan>();
+            String[] lastClassPath = new String[1];
+            try {
+                DirectoryStream<Path> entries = Files.newDirectoryStream(directory);
+                try {
+                    for (Path entry : entries) {
+                        BasicFileAttributes attributes = Files.readAttributes(entry,
+                                BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        String name = entry.getFileName().toString();
+                        if (attributes.isDirectory()) {
+                            subdirectories.add(new DirectoryScan(entry, packagePrefix + name + "."));
+                        } else if (attributes.isRegularFile() && name.endsWith(CLASS_FILE_EXTENSION)) {
+                            String className = name.substring(0, name.length() - CLASS_FILE_EXTENSION.length());
+                            if (!isDescriptor(className)) {
+                                addClass(packagePrefix + className, lastClassPath);
+                            }
+                        }
+                    }
+                } finally {
+                    entries.close();
+                }
+            } catch (IOException e) {
+                throw new ScanFailure(e);
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    private final class JarScan extends RecursiveAction {
+        private final Path jarFile;
+
+        private JarScan(Path jarFile) {
+            this.jarFile = jarFile;
+        }
+
+        @Override
+        protected void compute() {
+            String[] lastClassPath = new String[1];
+            try {
+                ZipFile zip = new ZipFile(jarFile.toFile());
+                try {
+                    Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(CLASS_FILE_EXTENSION) && !name.startsWith(META_INF_PREFIX)) {
+                            String binaryName = name.substring(0, name.length() - CLASS_FILE_EXTENSION.length());
+                            if (!isDescriptor(binaryName.substring(binaryName.lastIndexOf('/') + 1))) {
+                                addClass(binaryName.replace('/', '.'), lastClassPath);
+                            }
+                        }
+                    }
+                } finally {
+                    zip.close();
+                }
+            } catch (IOException e) {
+                throw new ScanFailure(e);
+            }
+        }
+    }
+
+    private static final class ScanFailure extends RuntimeException {
+        private ScanFailure(IOException cause) {
+            super(cause);
+        }
+    }
+
+}
@@ -25,15 +25,19 @@ package eu.arthepsy.groovy;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public final class GroovyClassHelper {
-    private static Set<String> removableClassPathTails = getRemovableClassPathTails();
+    private static final String[] removableClassPathTails = getRemovableClassPathTails();
 
     private GroovyClassHelper() {}
 
     private static String expandPath(String filePath) {
-        File file = new File(filePath.replaceFirst("^~", System.getProperty("user.home")));
+        if (filePath.startsWith("~")) {
+            filePath = System.getProperty("user.home") + filePath.substring(1);
+        }
+        File file = new File(filePath);
         return (file.isAbsolute() ? file.getAbsolutePath() : file.getPath());
     }
     public static String getClassPathFromFilePath(String filePath) {
@@ -54,29 +58,75 @@ public final class GroovyClassHelper {
             classPath = classPath.substring(0, pos);
         }
         classPath = classPath.replace('/', '.');
-        classPath = classPath.replaceAll("^\\.+", "");
-        return classPath;
+        int start = 0;
+        while (start < classPath.length() && classPath.charAt(start) == '.') {
+            start++;
+        }
+        return classPath.substring(start);
     }
 
     public static String getClassPathForClass(String classPath) {
-        int pos = classPath.indexOf("$_");
-        if (pos > -1) {
-            classPath = classPath.substring(0, pos);
+        if (classPath.indexOf('$') < 0) {
+            return classPath;
+        }
+        int end = classPath.indexOf("$_");
+        if (end < 0) {
+            end = classPath.length();
         }
-        classPath = classPath.replaceFirst("\\$[0-9]+$", "");
+        end = stripNumericTail(classPath, end);
         for (String removableTail: removableClassPathTails) {
-            if (classPath.endsWith(removableTail)) {
-                classPath = classPath.substring(0, classPath.length() - removableTail.length());
+            if (classPath.startsWith(removableTail, end - removableTail.length())) {
+                end -= removableTail.length();
             }
         }
-        return classPath;
+        return classPath.substring(0, end);
+    }
+
+    /**
+     * Maps many compiled class names to their source class paths at once.
+     * Names sharing a source class, such as its closures and anonymous
+     * classes, are reported once, in the order first seen.
+     */
+    public static Set<String> getClassPathsForClasses(Iterable<String> classPaths) {
+        Set<String> sourceClassPaths = new LinkedHashSet<String>();
+        for (String classPath: classPaths) {
+            sourceClassPaths.add(getClassPathForClass(classPath));
+        }
+        return sourceClassPaths;
+    }
+
+    /**
+     * Class name implied by a source file name, i.e. the name without its
+     * last extension.
+     */
+    static String getClassNameForFileName(String fileName) {
+        int pos = fileName.lastIndexOf('.');
+        if (pos > -1 && pos < fileName.length() - 1) {
+            return fileName.substring(0, pos);
+        }
+        return fileName;
+    }
+
+    private static int stripNumericTail(String classPath, int end) {
+        int pos = end;
+        while (pos > 0 && isDigit(classPath.charAt(pos - 1))) {
+            pos--;
+        }
+        if (pos < end && pos > 0 && classPath.charAt(pos - 1) == '$') {
+            return pos - 1;
+        }
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
-    private static Set<String> getRemovableClassPathTails() {
+    private static String[] getRemovableClassPathTails() {
         Set<String> tails = new HashSet<String>();
         tails.add("$Trait$Helper");
         tails.add("$Trait$FieldHelper");
-        return tails;
+        return tails.toArray(new String[tails.size()]);
     }
 
 }
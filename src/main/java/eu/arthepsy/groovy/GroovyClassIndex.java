@@ -0,0 +1,394 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable reverse index from class path to the source file declaring it.
+ * <p>
+ * Everything lives in one {@link ByteBuffer}: a header, the offsets of the
+ * UTF-8 encoded file paths, the offsets and int file ids of the UTF-8
+ * encoded class paths, then the file path and class path bytes. Class paths
+ * are sorted by their bytes, so exact and prefix lookups are binary searches
+ * over the buffer and no per-entry objects exist. {@link #save(Path)} writes
+ * the buffer as it is and {@link #load(Path)} memory-maps it again.
+ */
+public final class GroovyClassIndex {
+    private static final int MAGIC = 0x47434958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INT_SIZE = 4;
+
+    private final ByteBuffer buffer;
+    private final int fileCount;
+    private final int classCount;
+    private final int fileOffsetsPosition;
+    private final int classOffsetsPosition;
+    private final int classFilesPosition;
+    private final int fileDataPosition;
+    private final int classDataPosition;
+
+    private GroovyClassIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a class index");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported class index version " + buffer.getInt(4));
+        }
+        fileCount = buffer.getInt(8);
+        classCount = buffer.getInt(12);
+        if (fileCount < 0 || classCount < 0) {
+            throw new IOException("Corrupt class index");
+        }
+        fileOffsetsPosition = HEADER_SIZE;
+        classOffsetsPosition = fileOffsetsPosition + (fileCount + 1) * INT_SIZE;
+        classFilesPosition = classOffsetsPosition + (classCount + 1) * INT_SIZE;
+        fileDataPosition = classFilesPosition + classCount * INT_SIZE;
+        if (fileDataPosition > buffer.limit()) {
+            throw new IOException("Corrupt class index");
+        }
+        classDataPosition = fileDataPosition + buffer.getInt(fileOffsetsPosition + fileCount * INT_SIZE);
+        if (classDataPosition > buffer.limit()
+                || classDataPosition + buffer.getInt(classOffsetsPosition + classCount * INT_SIZE) != buffer.limit()) {
+            throw new IOException("Corrupt class index");
+        }
+    }
+
+    /**
+     * Memory-maps an index written by {@link #save(Path)}. Only the header and
+     * section sizes are checked, so opening is independent of the index size.
+     */
+    public static GroovyClassIndex load(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new GroovyClassIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer contents = buffer.duplicate();
+                contents.clear();
+                while (contents.hasRemaining()) {
+                    channel.write(contents);
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /** Number of indexed class paths. */
+    public int size() {
+        return classCount;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public String getFilePath(int fileId) {
+        if (fileId < 0 || fileId >= fileCount) {
+            throw new IndexOutOfBoundsException("file id " + fileId);
+        }
+        int start = buffer.getInt(fileOffsetsPosition + fileId * INT_SIZE);
+        int end = buffer.getInt(fileOffsetsPosition + (fileId + 1) * INT_SIZE);
+        return decode(fileDataPosition + start, end - start);
+    }
+
+    /**
+     * Source file declaring the given class path, or null if none does. If
+     * several files declare it, the first one added wins.
+     */
+    public String getFilePathForClass(String classPath) {
+        byte[] key = encode(classPath);
+        int index = lowerBound(key);
+        if (index < classCount && compareClassPath(index, key) == 0) {
+            return getFilePath(getFileId(index));
+        }
+        return null;
+    }
+
+    public List<String> getFilePathsForClass(String classPath) {
+        byte[] key = encode(classPath);
+        List<String> filePaths = new ArrayList<String>(1);
+        for (int index = lowerBound(key); index < classCount && compareClassPath(index, key) == 0; index++) {
+            filePaths.add(getFilePath(getFileId(index)));
+        }
+        return filePaths;
+    }
+
+    /**
+     * Source file for a compiled class name. Closures, anonymous classes and
+     * trait helpers are mapped to their source class first, see
+     * {@link GroovyClassHelper#getClassPathForClass(String)}, and classes
+     * that are still unknown are looked up through their enclosing classes.
+     */
+    public String findFilePathForClass(String className) {
+        String classPath = GroovyClassHelper.getClassPathForClass(className);
+        while (true) {
+            String filePath = getFilePathForClass(classPath);
+            if (filePath != null) {
+                return filePath;
+            }
+            int pos = classPath.lastIndexOf('$');
+            if (pos < 1) {
+                return null;
+            }
+            classPath = classPath.substring(0, pos);
+        }
+    }
+
+    /** Indexed class paths starting with the given prefix, in byte order. */
+    public List<String> getClassPathsWithPrefix(String prefix) {
+        byte[] key = encode(prefix);
+        List<String> classPaths = new ArrayList<String>();
+        String last = null;
+        for (int index = lowerBound(key); index < classCount && hasPrefix(index, key); index++) {
+            String classPath = getClassPath(index);
+            if (!classPath.equals(last)) {
+                classPaths.add(classPath);
+                last = classPath;
+            }
+        }
+        return classPaths;
+    }
+
+    /**
+     * Class paths declared directly in the given package, including nested
+     * classes but not sub-packages. An empty path is the default package.
+     */
+    public List<String> getPackageClassPaths(String packagePath) {
+        String prefix = (packagePath.isEmpty() ? "" : packagePath + ".");
+        List<String> classPaths = new ArrayList<String>();
+        for (String classPath : getClassPathsWithPrefix(prefix)) {
+            if (classPath.indexOf('.', prefix.length()) < 0) {
+                classPaths.add(classPath);
+            }
+        }
+        return classPaths;
+    }
+
+    /** Class paths nested, at any depth, in the given class. */
+    public List<String> getNestedClassPaths(String classPath) {
+        return getClassPathsWithPrefix(classPath + "$");
+    }
+
+    private String getClassPath(int index) {
+        int start = buffer.getInt(classOffsetsPosition + index * INT_SIZE);
+        int end = buffer.getInt(classOffsetsPosition + (index + 1) * INT_SIZE);
+        return decode(classDataPosition + start, end - start);
+    }
+
+    private int getFileId(int index) {
+        return buffer.getInt(classFilesPosition + index * INT_SIZE);
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = classCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareClassPath(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareClassPath(int index, byte[] key) {
+        int start = classDataPosition + buffer.getInt(classOffsetsPosition + index * INT_SIZE);
+        int length = classDataPosition + buffer.getInt(classOffsetsPosition + (index + 1) * INT_SIZE) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean hasPrefix(int index, byte[] prefix) {
+        int start = classDataPosition + buffer.getInt(classOffsetsPosition + index * INT_SIZE);
+        int length = classDataPosition + buffer.getInt(classOffsetsPosition + (index + 1) * INT_SIZE) - start;
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, GroovySourceInput.UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        return value.getBytes(GroovySourceInput.UTF_8);
+    }
+
+    /**
+     * Collects per-file results into a new index. Adding a result for a file
+     * that is already present replaces its class paths. Can be used directly
+     * as the listener of a {@link GroovyClassParser}.
+     */
+    public static final class Builder implements GroovyFileListener {
+        private final Map<String, Set<String>> classPathsByFile = new LinkedHashMap<String, Set<String>>();
+
+        @Override
+        public void fileParsed(GroovyFileResult result) {
+            add(result);
+        }
+
+        public synchronized Builder add(GroovyFileResult result) {
+            classPathsByFile.put(result.getFilePath(), result.getClassPaths());
+            return this;
+        }
+
+        public synchronized Builder remove(String filePath) {
+            classPathsByFile.remove(filePath);
+            return this;
+        }
+
+        public synchronized GroovyClassIndex build() {
+            List<byte[]> files = new ArrayList<byte[]>(classPathsByFile.size());
+            List<ClassEntry> classes = new ArrayList<ClassEntry>();
+            int fileBytes = 0;
+            int classBytes = 0;
+            for (Map.Entry<String, Set<String>> file : classPathsByFile.entrySet()) {
+                int fileId = files.size();
+                byte[] filePath = encode(file.getKey());
+                files.add(filePath);
+                fileBytes += filePath.length;
+                for (String classPath : file.getValue()) {
+                    ClassEntry entry = new ClassEntry(encode(classPath), fileId);
+                    classes.add(entry);
+                    classBytes += entry.name.length;
+                }
+            }
+            Collections.sort(classes, CLASS_ENTRY_ORDER);
+
+            int size = HEADER_SIZE + (files.size() + 1) * INT_SIZE + (classes.size() * 2 + 1) * INT_SIZE
+                    + fileBytes + classBytes;
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(files.size()).putInt(classes.size());
+            int offset = 0;
+            for (byte[] filePath : files) {
+                buffer.putInt(offset);
+                offset += filePath.length;
+            }
+            buffer.putInt(offset);
+            offset = 0;
+            for (ClassEntry entry : classes) {
+                buffer.putInt(offset);
+                offset += entry.name.length;
+            }
+            buffer.putInt(offset);
+            for (ClassEntry entry : classes) {
+                buffer.putInt(entry.fileId);
+            }
+            for (byte[] filePath : files) {
+                buffer.put(filePath);
+            }
+            for (ClassEntry entry : classes) {
+                buffer.put(entry.name);
+            }
+            buffer.flip();
+            try {
+                return new GroovyClassIndex(buffer);
+            } catch (IOException e) {
+                throw new IllegalStateException("built an invalid class index", e);
+            }
+        }
+    }
+
+    private static final Comparator<ClassEntry> CLASS_ENTRY_ORDER = new Comparator<ClassEntry>() {
+        @Override
+        public int compare(ClassEntry a, ClassEntry b) {
+            int common = Math.min(a.name.length, b.name.length);
+            for (int i = 0; i < common; i++) {
+                int diff = (a.name[i] & 0xff) - (b.name[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            if (a.name.length != b.name.length) {
+                return a.name.length - b.name.length;
+            }
+            return a.fileId - b.fileId;
+        }
+    };
+
+    private static final class ClassEntry {
+        private final byte[] name;
+        private final int fileId;
+
+        private ClassEntry(byte[] name, int fileId) {
+            this.name = name;
+            this.fileId = fileId;
+        }
+    }
+
+}
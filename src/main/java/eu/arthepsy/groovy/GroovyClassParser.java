@@ -26,94 +26,909 @@ package eu.arthepsy.groovy;
 import groovyjarjarantlr.RecognitionException;
 import groovyjarjarantlr.TokenStreamException;
 import groovyjarjarantlr.collections.AST;
-import org.codehaus.groovy.antlr.SourceBuffer;
-import org.codehaus.groovy.antlr.UnicodeEscapingReader;
-import org.codehaus.groovy.antlr.parser.GroovyLexer;
 import org.codehaus.groovy.antlr.parser.GroovyRecognizer;
-import org.codehaus.groovy.antlr.treewalker.SourceCodeTraversal;
-import org.codehaus.groovy.antlr.treewalker.Visitor;
-import org.codehaus.groovy.tools.shell.util.Logger;
 
 import java.io.*;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 public class GroovyClassParser {
-    private final Logger log = Logger.create(GroovyClassParser.class);
-    private final Set<String> classPaths;
+    /** Bump whenever a change alters the results produced for the same source. */
+    static final int PARSER_VERSION = 3;
+
+    private static final String GROOVY_FILE_EXTENSION = ".groovy";
+    private static final int OPTION_DECLARATION_SCAN = 1;
+    private static final int OPTION_LOCAL_CLASS_SCAN = 2;
+    private static final int OPTION_COLLECT_IMPORTS = 4;
+    private static final int OPTION_COLLECT_SUPERTYPES = 8;
+    private static final int OPTION_COLLECT_ANNOTATIONS = 16;
+    private static final int OPTION_COLLECT_TYPE_REFERENCES = 32;
+    private static final int OPTION_COLLECT_GENERATED_CLASS_PATHS = 64;
+    private static final int OPTION_ERROR_RECOVERY = 128;
+
+    private final GroovyClassPathSet classPaths;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private boolean declarationScan;
+    private boolean localClassScan;
+    private boolean collectImports;
+    private boolean collectSupertypes;
+    private boolean collectAnnotations;
+    private boolean collectTypeReferences;
+    private boolean collectGeneratedClassPaths;
+    private boolean errorRecovery;
+    private boolean collectClassPaths = true;
+    private GroovyFileListener listener;
+    private GroovyParseLimits limits;
+    private GroovyClassCache cache;
+    private GroovyParseInstrumentation instrumentation = GroovyParseInstrumentation.NOOP;
+    private GroovyDiagnostics diagnostics = new GroovyStreamDiagnostics();
+    private final Map<String, GroovyFileResult> blobResults = new ConcurrentHashMap<String, GroovyFileResult>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong measuredFiles = new AtomicLong();
 
     public GroovyClassParser() {
-        classPaths = new HashSet<String>();
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GroovyClassParser(int parallelism) {
+        this(null, parallelism);
+    }
+
+    public GroovyClassParser(ExecutorService executor) {
+        this(executor, 0);
+    }
+
+    private GroovyClassParser(ExecutorService executor, int parallelism) {
+        if (executor == null && parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        classPaths = new GroovyClassPathSet();
     }
 
-    public Set<String> getClassPaths() {
+    public GroovyClassPathSet getClassPaths() {
         return classPaths;
     }
 
-    public void parseGroovyFile(String filePath) throws IOException {
-        String fileName = new File(filePath).getName();
+    /**
+     * Average number of bytes allocated per file handled so far, or -1 if the
+     * JVM does not report per-thread allocations.
+     */
+    public long getAllocatedBytesPerFile() {
+        long files = measuredFiles.get();
+        if (files == 0) {
+            return -1;
+        }
+        return allocatedBytes.get() / files;
+    }
+
+    public GroovyFileListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Receives the result of every file as soon as it is done, including
+     * failed files and files answered from the cache.
+     */
+    public void setListener(GroovyFileListener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isCollectClassPaths() {
+        return collectClassPaths;
+    }
+
+    /**
+     * When disabled, {@link #getClassPaths()} stays empty and results are only
+     * handed to the listener, so memory does not grow with the project size.
+     */
+    public void setCollectClassPaths(boolean collectClassPaths) {
+        this.collectClassPaths = collectClassPaths;
+    }
+
+    public GroovyDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Receives failed and degraded files. Defaults to warnings and errors on
+     * standard error; passing null turns diagnostics off.
+     */
+    public void setDiagnostics(GroovyDiagnostics diagnostics) {
+        this.diagnostics = (diagnostics != null ? diagnostics : GroovyDiagnostics.NONE);
+    }
+
+    public GroovyParseInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Receives phase timings and counters of every file handled, see
+     * {@link GroovyParseStatistics} for an aggregating implementation.
+     * Passing null restores {@link GroovyParseInstrumentation#NOOP}, which
+     * takes no measurements at all.
+     */
+    public void setInstrumentation(GroovyParseInstrumentation instrumentation) {
+        this.instrumentation = (instrumentation != null ? instrumentation : GroovyParseInstrumentation.NOOP);
+    }
+
+    public GroovyParseLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Bounds the work spent on a single file. Files over a limit are reported
+     * as {@link GroovyParseStatus#DEGRADED} with only their file name class
+     * path, and are not cached.
+     */
+    public void setLimits(GroovyParseLimits limits) {
+        this.limits = limits;
+    }
+
+    public GroovyClassCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Answers unchanged files from the given cache and records fresh results
+     * in it. Loading and saving the cache is left to the caller.
+     */
+    public void setCache(GroovyClassCache cache) {
+        this.cache = cache;
+    }
+
+    public boolean isLocalClassScan() {
+        return localClassScan;
+    }
+
+    /**
+     * When enabled, method bodies, initializers and script statements are
+     * also searched for local class declarations. Off by default, as only
+     * type bodies need to be visited otherwise.
+     */
+    public void setLocalClassScan(boolean localClassScan) {
+        this.localClassScan = localClassScan;
+    }
+
+    public boolean isCollectImports() {
+        return collectImports;
+    }
+
+    /**
+     * When enabled, results list the file's imports, see
+     * {@link GroovyFileResult#getImports()}. Like the other collect options
+     * this needs the full parser, so the declaration scan is not used.
+     */
+    public void setCollectImports(boolean collectImports) {
+        this.collectImports = collectImports;
+    }
+
+    public boolean isCollectSupertypes() {
+        return collectSupertypes;
+    }
+
+    /**
+     * When enabled, type declarations list their extends and implements
+     * clauses.
+     */
+    public void setCollectSupertypes(boolean collectSupertypes) {
+        this.collectSupertypes = collectSupertypes;
+    }
+
+    public boolean isCollectAnnotations() {
+        return collectAnnotations;
+    }
+
+    /**
+     * When enabled, type declarations list the annotations placed on them.
+     */
+    public void setCollectAnnotations(boolean collectAnnotations) {
+        this.collectAnnotations = collectAnnotations;
+    }
+
+    public boolean isCollectTypeReferences() {
+        return collectTypeReferences;
+    }
+
+    /**
+     * When enabled, results list the type names used anywhere in the file,
+     * see {@link GroovyFileResult#getTypeReferences()}. This walks the whole
+     * AST, method bodies included.
+     */
+    public void setCollectTypeReferences(boolean collectTypeReferences) {
+        this.collectTypeReferences = collectTypeReferences;
+    }
+
+    public boolean isCollectGeneratedClassPaths() {
+        return collectGeneratedClassPaths;
+    }
+
+    /**
+     * When enabled, results also list the binary names the compiler will
+     * give to anonymous classes, closures and trait helpers, see
+     * {@link GroovyFileResult#getGeneratedClassPaths()}, so compiled classes
+     * can be matched to sources by exact name.
+     */
+    public void setCollectGeneratedClassPaths(boolean collectGeneratedClassPaths) {
+        this.collectGeneratedClassPaths = collectGeneratedClassPaths;
+    }
+
+    public boolean isErrorRecovery() {
+        return errorRecovery;
+    }
+
+    /**
+     * When enabled, a file the parser rejects is scanned again for type
+     * declarations, resynchronizing at each one, instead of being dropped
+     * whole. It is reported as {@link GroovyParseStatus#RECOVERED} with the
+     * class paths found before and after the error and the spans that could
+     * not be read, see {@link GroovyFileResult#getSyntaxErrors()}. Recovered
+     * results carry no imports, supertypes, annotations or references.
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+    public boolean isDeclarationScan() {
+        return declarationScan;
+    }
+
+    /**
+     * When enabled, class paths are taken from the lexer token stream and the
+     * full parser only runs for files the token scan cannot decide. Syntax
+     * errors that do not upset the token stream then go unreported.
+     */
+    public void setDeclarationScan(boolean declarationScan) {
+        this.declarationScan = declarationScan;
+    }
+
+    public void parseDirectory(Path root) throws IOException {
+        final List<Path> filePaths = new ArrayList<Path>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(GROOVY_FILE_EXTENSION)) {
+                    filePaths.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        parseAll(filePaths);
+    }
+
+    public void parseAll(final Collection<Path> filePaths) throws IOException {
+        if (filePaths.isEmpty()) {
+            return;
+        }
+        runParseTasks(Math.min(parallelism, filePaths.size()), new ParseTasks() {
+            @Override
+            void submitAll() {
+                for (final Path filePath : filePaths) {
+                    submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            parseGroovyFile(filePath.toString());
+                            return null;
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Parses every {@code .groovy} entry of a zip archive, such as a sources
+     * JAR, straight from the archive stream without extracting it. Results
+     * are named {@code <archive>!/<entry>}.
+     */
+    public void parseArchive(Path archivePath) throws IOException {
+        InputStream in = Files.newInputStream(archivePath);
+        try {
+            parseArchive(archivePath + "!/", in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses the {@code .groovy} entries of a zip stream, naming results by
+     * entry name. The stream is read to its end but not closed.
+     */
+    public void parseArchive(InputStream archive) throws IOException {
+        parseArchive("", archive);
+    }
+
+    /**
+     * Entries are read one after another by the calling thread and parsed
+     * by the workers, with at most two entries per worker held in memory.
+     * With a caller supplied executor, whose size is not known, one worker
+     * per processor is assumed.
+     */
+    private void parseArchive(final String pathPrefix, InputStream archive) throws IOException {
+        final ZipInputStream zip = new ZipInputStream(
+                new BufferedInputStream(archive, GroovySourceInput.BUFFER_SIZE));
+        int workers = (executor == null ? parallelism : Runtime.getRuntime().availableProcessors());
+        final Semaphore pending = new Semaphore(workers * 2);
+        runParseTasks(parallelism, new ParseTasks() {
+            @Override
+            void submitAll() throws IOException {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (entry.isDirectory() || !entry.getName().endsWith(GROOVY_FILE_EXTENSION)) {
+                        continue;
+                    }
+                    final String filePath = pathPrefix + entry.getName();
+                    final GroovySource source = GroovySource.of(zip, GroovySourceInput.UTF_8);
+                    acquire(pending);
+                    submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            try {
+                                parse(filePath, source, false, null);
+                            } finally {
+                                pending.release();
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Parses the {@code .groovy} files of a revision straight from the git
+     * object database, naming results by their path in the tree. Results are
+     * kept by blob id and file name, so each blob is parsed once however
+     * many revisions and directories hold it; with a cache set they are
+     * stored in the cache and outlive the parser.
+     */
+    public void parseGitRevision(final GroovyGitRepository repository, String revision) throws IOException {
+        final Map<String, List<String>> pathsByBlob = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, String> file : repository.listFiles(revision, GROOVY_FILE_EXTENSION).entrySet()) {
+            String blobKey = file.getValue() + ":" + new File(file.getKey()).getName();
+            List<String> paths = pathsByBlob.get(blobKey);
+            if (paths == null) {
+                paths = new ArrayList<String>(1);
+                pathsByBlob.put(blobKey, paths);
+            }
+            paths.add(file.getKey());
+        }
+        if (pathsByBlob.isEmpty()) {
+            return;
+        }
+        runParseTasks(Math.min(parallelism, pathsByBlob.size()), new ParseTasks() {
+            @Override
+            void submitAll() {
+                for (final Map.Entry<String, List<String>> blob : pathsByBlob.entrySet()) {
+                    submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            String blobKey = blob.getKey();
+                            GroovySource source = repository.getBlobSource(
+                                    blobKey.substring(0, blobKey.indexOf(':')));
+                            for (String filePath : blob.getValue()) {
+                                parse(filePath, source, false, blobKey);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a batch of parse tasks on the parser's executor, or on a pool of
+     * the given size that lives as long as the batch. Returns once every
+     * task is done; the first failure is rethrown and the tasks not yet
+     * started are cancelled.
+     */
+    private void runParseTasks(int poolSize, ParseTasks tasks) throws IOException {
+        ExecutorService service = executor;
+        if (service == null) {
+            service = new ForkJoinPool(poolSize);
+        }
+        tasks.service = service;
         try {
-            String source = readFileAsString(filePath);
-            GroovyClassVisitor visitor = new GroovyClassVisitor();
-            this.parseGroovySource(source, visitor);
+            tasks.submitAll();
+            for (Future<Void> future : tasks.futures) {
+                awaitParse(future);
+            }
+        } finally {
+            for (Future<Void> future : tasks.futures) {
+                future.cancel(false);
+            }
+            if (service != executor) {
+                service.shutdown();
+            }
+        }
+    }
 
-            for (String classPath : visitor.getClassPaths()) {
-                classPaths.add(classPath);
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("interrupted while parsing");
+            ie.initCause(e);
+            throw ie;
+        }
+    }
+
+    private static void awaitParse(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("interrupted while parsing");
+            ie.initCause(e);
+            throw ie;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-            String packagePath = visitor.getPackagePath();
-            String classPathByFileName = fileName.replaceFirst("[.][^.]+$", "");
-            if (packagePath != null && ! packagePath.isEmpty()) {
-                classPathByFileName = packagePath + "." + classPathByFileName;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
-            classPaths.add(classPathByFileName);
+            throw new IOException(cause);
+        }
+    }
+
+    public GroovyFileResult parseGroovyFile(String filePath) throws IOException {
+        return parse(filePath, GroovySource.of(Paths.get(filePath)), true, null);
+    }
+
+    /**
+     * Parses a source held in memory. The file path names the source in the
+     * result and gives the file name class path; nothing is read from it,
+     * and the cache is not consulted.
+     */
+    public GroovyFileResult parseGroovySource(String filePath, CharSequence source) throws IOException {
+        return parse(filePath, GroovySource.of(source), false, null);
+    }
+
+    public GroovyFileResult parseGroovySource(String filePath, byte[] source, Charset charset) throws IOException {
+        return parse(filePath, GroovySource.of(ByteBuffer.wrap(source), charset), false, null);
+    }
+
+    /** Parses the remaining bytes of the buffer, leaving its position as is. */
+    public GroovyFileResult parseGroovySource(String filePath, ByteBuffer source, Charset charset)
+            throws IOException {
+        return parse(filePath, GroovySource.of(source, charset), false, null);
+    }
+
+    /** Reads the stream to its end, but does not close it. */
+    public GroovyFileResult parseGroovySource(String filePath, InputStream source, Charset charset)
+            throws IOException {
+        return parse(filePath, GroovySource.of(source, charset), false, null);
+    }
+
+    private GroovyFileResult parse(String filePath, GroovySource source, boolean cacheable, String blobKey)
+            throws IOException {
+        GroovyFileResult result = process(filePath, source, (cacheable ? Paths.get(filePath) : null), null, blobKey);
+        publish(result);
+        return result;
+    }
+
+    /** Adds a result to the collected class paths and hands it to the listener. */
+    void publish(GroovyFileResult result) {
+        if (collectClassPaths) {
+            classPaths.addAll(result.getClassPaths());
+        }
+        GroovyFileListener listener = this.listener;
+        if (listener != null) {
+            listener.fileParsed(result);
+        }
+    }
+
+    /**
+     * Produces the result of one source, looking it up in the cache by file
+     * path when a cache path is given, or by content when a blob key is
+     * given. File attributes read before the content was may be passed in.
+     * Without a source only the cache is consulted, and a miss returns null.
+     */
+    GroovyFileResult process(String filePath, GroovySource source, Path cachePath, BasicFileAttributes attributes,
+                             String blobKey) throws IOException {
+        long allocatedBefore = GroovyParsingContext.getAllocatedBytes();
+        GroovyParsingContext context = GroovyParsingContext.acquire();
+        GroovyParseInstrumentation instrumentation = this.instrumentation;
+        GroovyParseRecorder recorder = null;
+        if (instrumentation != GroovyParseInstrumentation.NOOP) {
+            recorder = context.startRecording();
+        }
+        GroovyFileResult result = null;
+        boolean cached = false;
+        try {
+            int options = getOptions();
+            GroovyClassCache cache = (cachePath != null ? this.cache : null);
+            if (cache != null) {
+                if (attributes == null) {
+                    attributes = Files.readAttributes(cachePath, BasicFileAttributes.class);
+                }
+                result = cache.get(cachePath, attributes, options);
+                if (result != null) {
+                    result = result.withFilePath(filePath);
+                    cached = true;
+                    reportFailure(result, null);
+                }
+            }
+            if (blobKey != null) {
+                result = getBlobResult(blobKey, options);
+                if (result != null) {
+                    result = result.withFilePath(filePath);
+                    cached = true;
+                    reportFailure(result, null);
+                }
+            }
+            if (result == null && source != null) {
+                MessageDigest digest = (cache != null ? context.getDigest() : null);
+                result = parseGroovySource(context, filePath, source, digest);
+                if (cache != null && result.getStatus() != GroovyParseStatus.DEGRADED) {
+                    cache.put(cachePath, attributes, digest.digest(), options, result);
+                }
+                if (blobKey != null && result.getStatus() != GroovyParseStatus.DEGRADED) {
+                    putBlobResult(blobKey, options, result);
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            if (recorder != null) {
+                recorder.setFailure(e);
+            }
+            throw e;
         } catch (OutOfMemoryError e) {
-            log.error("Out of memory while processing: " + filePath);
+            GroovyDiagnostics diagnostics = this.diagnostics;
+            if (diagnostics.isEnabled(GroovyDiagnosticLevel.ERROR)) {
+                diagnostics.report(new GroovyDiagnostic(GroovyDiagnosticLevel.ERROR, filePath, null,
+                        "Out of memory while processing", null));
+            }
             throw e;
+        } finally {
+            context.release();
+            recordAllocation(allocatedBefore);
+            if (recorder != null && (result != null || source != null)) {
+                GroovyParseStatus status = (result != null ? result.getStatus() : null);
+                instrumentation.fileParsed(recorder.finish(filePath, status, cached));
+            }
+        }
+    }
+
+    private GroovyFileResult getBlobResult(String blobKey, int options) {
+        GroovyClassCache cache = this.cache;
+        if (cache != null) {
+            return cache.getBlob(blobKey, options);
+        }
+        return blobResults.get(options + ":" + blobKey);
+    }
+
+    private void putBlobResult(String blobKey, int options, GroovyFileResult result) {
+        GroovyClassCache cache = this.cache;
+        if (cache != null) {
+            cache.putBlob(blobKey, options, result);
+        } else {
+            blobResults.put(options + ":" + blobKey, result);
+        }
+    }
+
+    private void recordAllocation(long allocatedBefore) {
+        if (allocatedBefore < 0) {
+            return;
+        }
+        long allocatedAfter = GroovyParsingContext.getAllocatedBytes();
+        if (allocatedAfter >= allocatedBefore) {
+            allocatedBytes.addAndGet(allocatedAfter - allocatedBefore);
+            measuredFiles.incrementAndGet();
+        }
+    }
+
+    private GroovyFileResult parseGroovySource(GroovyParsingContext context, String filePath, GroovySource source,
+                                               MessageDigest digest) throws IOException {
+        GroovyParseGuard guard = (limits != null && !limits.isUnlimited() ? new GroovyParseGuard(limits) : null);
+        GroovyParseRecorder recorder = context.getRecorder();
+        try {
+            GroovyClassDeclarations declarations = null;
+            if (declarationScan && !collectImports && !collectSupertypes && !collectAnnotations
+                    && !collectTypeReferences && !collectGeneratedClassPaths) {
+                GroovyDeclarationScanner scanner = context.getScanner(localClassScan);
+                Reader reader = openSource(context, source, digest, guard);
+                if (recorder != null) {
+                    recorder.beginPass();
+                }
+                try {
+                    if (scanner.scan(context.getLexer(reader, guard))) {
+                        declarations = scanner;
+                    }
+                } finally {
+                    if (recorder != null) {
+                        recorder.endPass(GroovyParsePhase.SCAN);
+                    }
+                    context.closeReader();
+                }
+            }
+            if (declarations == null) {
+                GroovyClassVisitor visitor = context.getVisitor(collectImports, collectSupertypes,
+                        collectAnnotations);
+                Reader reader = openSource(context, source, digest, guard);
+                try {
+                    this.parseGroovySource(context.getParser(reader, guard), visitor, recorder, filePath);
+                } finally {
+                    context.closeReader();
+                }
+                declarations = visitor;
+            }
+
+            long normalizeStart = (recorder != null ? System.nanoTime() : 0);
+            String packagePath = declarations.getPackagePath();
+            GroovyFileResult result = new GroovyFileResult(filePath, packagePath,
+                    getFileNameClassPath(filePath, packagePath), declarations.getTypeDeclarations(),
+                    declarations.getImports(), declarations.getTypeReferences(),
+                    declarations.getGeneratedClassPaths(), GroovyParseStatus.PARSED, null);
+            if (recorder != null) {
+                recorder.addPhase(GroovyParsePhase.NORMALIZE, System.nanoTime() - normalizeStart);
+            }
+            return result;
+        } catch (GroovyParseLimitException e) {
+            recordFailure(recorder, e);
+            return degraded(context, filePath, source, e.getMessage());
+        } catch (StackOverflowError e) {
+            recordFailure(recorder, e);
+            return degraded(context, filePath, source, "nesting too deep");
         } catch (RecognitionException e) {
-            String msg = "ignored due to RecognitionException: " + fileName + " [" + e.getMessage() + "]";
-            log.error(msg);
-            log.debug(msg, e);
+            recordFailure(recorder, e);
+            if (errorRecovery) {
+                return recovered(context, filePath, source, guard, e);
+            }
+            return failed(filePath, GroovyParseStatus.RECOGNITION_ERROR, e);
         } catch (TokenStreamException e) {
-            String msg = "ignored due to TokenStreamException: " + fileName + " [" + e.getMessage() + "]";
-            log.error(msg);
-            log.debug(msg, e);
+            recordFailure(recorder, e);
+            if (errorRecovery) {
+                return recovered(context, filePath, source, guard, e);
+            }
+            return failed(filePath, GroovyParseStatus.TOKEN_STREAM_ERROR, e);
         }
     }
 
-    private void parseGroovySource(String source, Visitor visitor)
-            throws RecognitionException, TokenStreamException {
-        SourceBuffer sourceBuffer = new SourceBuffer();
-        GroovyRecognizer parser = getGroovyParser(source, sourceBuffer);
-        parser.compilationUnit();
-        AST ast = parser.getAST();
-        SourceCodeTraversal traverser = new SourceCodeTraversal(visitor);
-        traverser.process(ast);
+    private static void recordFailure(GroovyParseRecorder recorder, Throwable t) {
+        if (recorder != null) {
+            recorder.setFailure(t);
+        }
     }
 
-    private GroovyRecognizer getGroovyParser(String source, SourceBuffer sourceBuffer) {
-        return getGroovyParser(new StringReader(source), sourceBuffer);
-    }
-    private GroovyRecognizer getGroovyParser(Reader reader, SourceBuffer sourceBuffer) {
-        UnicodeEscapingReader unicodeReader = new UnicodeEscapingReader(reader, sourceBuffer);
-        GroovyLexer lexer = new GroovyLexer(unicodeReader);
-        unicodeReader.setLexer(lexer);
-        GroovyRecognizer parser = GroovyRecognizer.make(lexer);
-        parser.setSourceBuffer(sourceBuffer);
-        return parser;
+    /**
+     * Result for a file that hit a limit: only the package clause at the top
+     * of the file is read, to qualify the file name class path.
+     */
+    private GroovyFileResult degraded(GroovyParsingContext context, String filePath, GroovySource source,
+                                      String reason) throws IOException {
+        String packagePath;
+        Reader reader = source.open(context, null);
+        try {
+            packagePath = GroovyDeclarationScanner.scanPackagePath(context.getLexer(reader, null));
+        } finally {
+            context.closeReader();
+        }
+        List<GroovyTypeDeclaration> noTypes = Collections.emptyList();
+        GroovyFileResult result = new GroovyFileResult(filePath, packagePath,
+                getFileNameClassPath(filePath, packagePath), noTypes, GroovyParseStatus.DEGRADED, reason);
+        reportFailure(result, null);
+        return result;
     }
 
-    private static String readFileAsString(String filePath) throws IOException {
-        DataInputStream dis = new DataInputStream(new FileInputStream(filePath));
+    /**
+     * Result for a file the parser rejected, when recovering: declarations
+     * come from a recovery scan, which is restarted on the next line
+     * whenever the lexer fails. The scan has a token budget of its own.
+     */
+    private GroovyFileResult recovered(GroovyParsingContext context, String filePath, GroovySource source,
+                                       GroovyParseGuard guard, Exception failure) throws IOException {
+        if (guard != null) {
+            guard.startRecovery();
+        }
+        GroovyDeclarationScanner scanner = context.getScanner(localClassScan);
+        GroovyParseRecorder recorder = context.getRecorder();
+        if (recorder != null) {
+            recorder.beginPass();
+        }
         try {
-            long length = new File(filePath).length();
-            if (length > Integer.MAX_VALUE) {
-                throw new IOException("File " + filePath + " too large (" + length+ " bytes).");
+            int line = 1;
+            while (line > 0) {
+                PushbackReader reader = new PushbackReader(source.open(context, null));
+                try {
+                    skipLines(reader, line - 1);
+                    line = scanner.recover(context.getLexer(reader, guard), line);
+                } finally {
+                    context.closeReader();
+                }
+            }
+        } catch (GroovyParseLimitException e) {
+            return degraded(context, filePath, source, e.getMessage());
+        } finally {
+            if (recorder != null) {
+                recorder.endPass(GroovyParsePhase.SCAN);
             }
-            byte[] bytes = new byte[(int)length];
-            dis.readFully(bytes);
-            return new String(bytes, "UTF-8");
+        }
+        scanner.addFailure(failure);
+        String packagePath = scanner.getPackagePath();
+        GroovyFileResult result = new GroovyFileResult(filePath, packagePath,
+                getFileNameClassPath(filePath, packagePath), scanner.getTypeDeclarations(),
+                Collections.<GroovyImport>emptyList(), Collections.<String>emptySet(),
+                Collections.<String>emptyList(), GroovyParseStatus.RECOVERED, failure.getMessage(),
+                scanner.getSyntaxErrors());
+        reportFailure(result, failure);
+        return result;
+    }
+
+    /** Skips lines the way the lexer counts them, a CR LF pair being one line break. */
+    private static void skipLines(PushbackReader reader, int lines) throws IOException {
+        while (lines > 0) {
+            int c = reader.read();
+            if (c < 0) {
+                return;
+            }
+            if (c == '\n') {
+                lines--;
+            } else if (c == '\r') {
+                lines--;
+                c = reader.read();
+                if (c >= 0 && c != '\n') {
+                    reader.unread(c);
+                }
+            }
+        }
+    }
+
+    private static String getFileNameClassPath(String filePath, String packagePath) {
+        String classPathByFileName = GroovyClassHelper.getClassNameForFileName(new File(filePath).getName());
+        if (packagePath != null && ! packagePath.isEmpty()) {
+            classPathByFileName = packagePath + "." + classPathByFileName;
+        }
+        return classPathByFileName;
+    }
+
+    private GroovyFileResult failed(String filePath, GroovyParseStatus status, Exception e) {
+        List<GroovyTypeDeclaration> noTypes = Collections.emptyList();
+        GroovyFileResult result = new GroovyFileResult(filePath, null, null, noTypes, status, e.getMessage());
+        reportFailure(result, e);
+        return result;
+    }
+
+    private void reportFailure(GroovyFileResult result, Exception e) {
+        GroovyDiagnosticLevel level;
+        switch (result.getStatus()) {
+            case DEGRADED:
+            case RECOVERED:
+                level = GroovyDiagnosticLevel.WARN;
+                break;
+            case RECOGNITION_ERROR:
+            case TOKEN_STREAM_ERROR:
+                level = GroovyDiagnosticLevel.ERROR;
+                break;
+            default:
+                return;
+        }
+        GroovyDiagnostics diagnostics = this.diagnostics;
+        if (diagnostics.isEnabled(level)) {
+            diagnostics.report(new GroovyDiagnostic(level, result.getFilePath(), result.getStatus(),
+                    result.getMessage(), e));
+        }
+    }
+
+    private int getOptions() {
+        int options = 0;
+        if (declarationScan) {
+            options |= OPTION_DECLARATION_SCAN;
+        }
+        if (localClassScan) {
+            options |= OPTION_LOCAL_CLASS_SCAN;
+        }
+        if (collectImports) {
+            options |= OPTION_COLLECT_IMPORTS;
+        }
+        if (collectSupertypes) {
+            options |= OPTION_COLLECT_SUPERTYPES;
+        }
+        if (collectAnnotations) {
+            options |= OPTION_COLLECT_ANNOTATIONS;
+        }
+        if (collectTypeReferences) {
+            options |= OPTION_COLLECT_TYPE_REFERENCES;
+        }
+        if (collectGeneratedClassPaths) {
+            options |= OPTION_COLLECT_GENERATED_CLASS_PATHS;
+        }
+        if (errorRecovery) {
+            options |= OPTION_ERROR_RECOVERY;
+        }
+        return options;
+    }
+
+    private void parseGroovySource(GroovyRecognizer parser, GroovyClassVisitor visitor, GroovyParseRecorder recorder,
+                                   String filePath) throws RecognitionException, TokenStreamException {
+        if (recorder != null) {
+            recorder.beginPass();
+        }
+        try {
+            parser.compilationUnit();
         } finally {
-            dis.close();
+            if (recorder != null) {
+                recorder.endPass(GroovyParsePhase.PARSE);
+            }
+        }
+        AST ast = parser.getAST();
+        long traverseStart = (recorder != null ? System.nanoTime() : 0);
+        GroovyDeclarationTraversal traverser = new GroovyDeclarationTraversal(visitor, localClassScan,
+                collectImports);
+        traverser.process(ast);
+        if (collectTypeReferences) {
+            GroovyTypeReferences.collect(ast, visitor.getTypeReferences());
+        }
+        if (collectGeneratedClassPaths) {
+            String packagePath = visitor.getPackagePath();
+            GroovyGeneratedClasses.collect(ast, packagePath, getFileNameClassPath(filePath, packagePath),
+                    visitor.getGeneratedClassPaths());
+        }
+        if (recorder != null) {
+            recorder.addPhase(GroovyParsePhase.TRAVERSE, System.nanoTime() - traverseStart);
+            recorder.countAstNodes(ast);
+        }
+    }
+
+    /**
+     * Opens the source for one pass. With a digest, every pass covers the
+     * whole source, so the digest ends up describing exactly the bytes
+     * parsed.
+     */
+    private static Reader openSource(GroovyParsingContext context, GroovySource source, MessageDigest digest,
+                                     GroovyParseGuard guard) throws IOException, GroovyParseLimitException {
+        if (guard != null) {
+            guard.checkFileSize(source.size());
+        }
+        if (digest != null) {
+            digest.reset();
+        }
+        return source.open(context, digest);
+    }
+
+    /** The tasks of one batch, see {@link #runParseTasks(int, ParseTasks)}. */
+    private abstract static class ParseTasks {
+        private final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        private ExecutorService service;
+
+        abstract void submitAll() throws IOException;
+
+        void submit(Callable<Void> task) {
+            futures.add(service.submit(task));
         }
     }
 
@@ -0,0 +1,471 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command line batch tool: parses source roots and scans class output
+ * directories or JARs, writing one record per source file and per class
+ * root. Results go to standard output or a file, diagnostics and the timing
+ * summary to standard error.
+ * <p>
+ * The binary format is a {@link DataOutputStream} holding {@link #MAGIC},
+ * {@link #FORMAT_VERSION}, then records each starting with a type byte: for
+ * {@link #RECORD_FILE} the file path, the status ordinal as a byte and the
+ * package path (empty if none); for {@link #RECORD_CLASSES} the root path.
+ * Both end with an int count of UTF class paths. A zero byte ends the
+ * stream.
+ */
+public final class GroovyClassParserCli {
+    static final int MAGIC = 0x47435052;
+    static final int FORMAT_VERSION = 1;
+    static final int RECORD_END = 0;
+    static final int RECORD_FILE = 1;
+    static final int RECORD_CLASSES = 2;
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String CACHE_FILE_NAME = "groovy-class-parser.cache";
+    private static final String GROOVY_FILE_EXTENSION = ".groovy";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String USAGE = "usage: groovy-class-parser [options] [source-root...]\n"
+            + "  --classes <dir|jar>    scan a class output directory or JAR (repeatable)\n"
+            + "  --threads <n>          number of parser threads (default: available processors)\n"
+            + "  --readers <n>          read sources on n threads ahead of the parser threads and report per stage\n"
+            + "  --cache <dir>          keep parse results in the given directory between runs\n"
+            + "  --include <glob>       only parse sources matching the glob, relative to their root (repeatable)\n"
+            + "  --exclude <glob>       skip sources matching the glob, relative to their root (repeatable)\n"
+            + "  --format <jsonl|binary> output format (default: jsonl)\n"
+            + "  --output <file>        write results to the file instead of standard output\n"
+            + "  --declaration-scan     take class paths from the token stream where possible\n"
+            + "  --local-classes        also find classes declared in method bodies\n"
+            + "  --generated-classes    also list anonymous class, closure and trait helper names\n"
+            + "  --recover              keep the classes around syntax errors and list the errors\n"
+            + "  --quiet                print neither diagnostics nor the timing summary\n"
+            + "  --help                 show this help\n";
+
+    private GroovyClassParserCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (options.help) {
+            out.print(USAGE);
+            return EXIT_OK;
+        }
+        try {
+            return execute(options, out, err);
+        } catch (IOException e) {
+            err.println("groovy-class-parser: " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static int execute(Options options, PrintStream out, PrintStream err) throws IOException {
+        long startNanos = System.nanoTime();
+        List<Path> sourceFiles = new ArrayList<Path>();
+        for (Path root : options.sourceRoots) {
+            collectSources(root, options, sourceFiles);
+        }
+
+        GroovyClassCache cache = null;
+        if (options.cacheDirectory != null) {
+            cache = new GroovyClassCache(options.cacheDirectory.resolve(CACHE_FILE_NAME));
+            cache.load();
+        }
+
+        OutputStream stream = (options.output != null ? Files.newOutputStream(options.output) : out);
+        final AtomicInteger[] statusCounts = new AtomicInteger[GroovyParseStatus.values().length];
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new AtomicInteger();
+        }
+        final AtomicInteger classCount = new AtomicInteger();
+        final IOException[] writeFailure = new IOException[1];
+        GroovyParseStatistics statistics = new GroovyParseStatistics(0);
+        GroovyParsePipeline pipeline = null;
+        try {
+            final ResultWriter writer = (options.binary ? new BinaryResultWriter(stream) : new JsonResultWriter(stream));
+            GroovyClassParser parser = new GroovyClassParser(options.threads);
+            parser.setCollectClassPaths(false);
+            parser.setDeclarationScan(options.declarationScan);
+            parser.setLocalClassScan(options.localClassScan);
+            parser.setCollectGeneratedClassPaths(options.generatedClasses);
+            parser.setErrorRecovery(options.errorRecovery);
+            parser.setCache(cache);
+            parser.setInstrumentation(statistics);
+            parser.setDiagnostics(options.quiet ? null : new GroovyStreamDiagnostics(err, GroovyDiagnosticLevel.WARN));
+            parser.setListener(new GroovyFileListener() {
+                @Override
+                public void fileParsed(GroovyFileResult result) {
+                    statusCounts[result.getStatus().ordinal()].incrementAndGet();
+                    classCount.addAndGet(result.getClassPaths().size());
+                    synchronized (writer) {
+                        if (writeFailure[0] != null) {
+                            return;
+                        }
+                        try {
+                            writer.writeFile(result);
+                        } catch (IOException e) {
+                            writeFailure[0] = e;
+                        }
+                    }
+                }
+            });
+            if (options.readers > 0) {
+                pipeline = new GroovyParsePipeline(parser);
+                pipeline.setReaderThreads(options.readers);
+                pipeline.setParserThreads(options.threads);
+                pipeline.parseAll(sourceFiles);
+            } else {
+                parser.parseAll(sourceFiles);
+            }
+            if (writeFailure[0] != null) {
+                throw writeFailure[0];
+            }
+
+            for (Path root : options.classRoots) {
+                GroovyClassFileScanner scanner = new GroovyClassFileScanner(options.threads);
+                scanner.scan(root);
+                Set<String> classPaths = new TreeSet<String>(scanner.getClassPaths());
+                classCount.addAndGet(classPaths.size());
+                writer.writeClasses(root, classPaths);
+            }
+            writer.finish();
+        } finally {
+            if (stream != out) {
+                stream.close();
+            }
+        }
+
+        if (cache != null) {
+            cache.save();
+        }
+        if (!options.quiet) {
+            printSummary(err, statistics, statusCounts, classCount.get(), options.classRoots.size(),
+                    System.nanoTime() - startNanos);
+            if (pipeline != null) {
+                for (GroovyPipelineStageMetrics stage : pipeline.getStageMetrics()) {
+                    err.println(stage);
+                }
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private static void collectSources(final Path root, final Options options, final List<Path> sourceFiles)
+            throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(GROOVY_FILE_EXTENSION)
+                        && options.accepts(root.relativize(file))) {
+                    sourceFiles.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Prints one summary line plus phase totals, in a fixed layout so that
+     * runs can be compared with simple text tools.
+     */
+    private static void printSummary(PrintStream err, GroovyParseStatistics statistics, AtomicInteger[] statusCounts,
+                                     int classCount, int classRootCount, long elapsedNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        long files = statistics.getFileCount();
+        double filesPerSecond = (elapsedNanos > 0 ? files * 1e9 / elapsedNanos : 0);
+        StringBuilder summary = new StringBuilder("files=").append(files);
+        for (GroovyParseStatus status : GroovyParseStatus.values()) {
+            summary.append(' ').append(status.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(statusCounts[status.ordinal()].get());
+        }
+        summary.append(" cached=").append(statistics.getCachedFileCount());
+        summary.append(" classRoots=").append(classRootCount);
+        summary.append(" classes=").append(classCount);
+        summary.append(" millis=").append(millis);
+        summary.append(" filesPerSecond=").append(String.format(Locale.ROOT, "%.1f", filesPerSecond));
+        err.println(summary);
+        StringBuilder phases = new StringBuilder("phaseMillis");
+        for (Map.Entry<String, Long> entry : statistics.getPhaseMillis().entrySet()) {
+            phases.append(' ').append(entry.getKey().toLowerCase(Locale.ROOT)).append('=').append(entry.getValue());
+        }
+        err.println(phases);
+    }
+
+    private static final class Options {
+        private final List<Path> sourceRoots = new ArrayList<Path>();
+        private final List<Path> classRoots = new ArrayList<Path>();
+        private final List<PathMatcher> includes = new ArrayList<PathMatcher>();
+        private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int readers;
+        private Path cacheDirectory;
+        private Path output;
+        private boolean binary;
+        private boolean declarationScan;
+        private boolean localClassScan;
+        private boolean generatedClasses;
+        private boolean errorRecovery;
+        private boolean quiet;
+        private boolean help;
+
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                String value = null;
+                int equals = arg.indexOf('=');
+                if (arg.startsWith("--") && equals > 0) {
+                    value = arg.substring(equals + 1);
+                    arg = arg.substring(0, equals);
+                }
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    options.help = true;
+                } else if (arg.equals("--declaration-scan")) {
+                    options.declarationScan = true;
+                } else if (arg.equals("--local-classes")) {
+                    options.localClassScan = true;
+                } else if (arg.equals("--generated-classes")) {
+                    options.generatedClasses = true;
+                } else if (arg.equals("--recover")) {
+                    options.errorRecovery = true;
+                } else if (arg.equals("--quiet")) {
+                    options.quiet = true;
+                } else if (arg.startsWith("--")) {
+                    if (value == null) {
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("missing value for " + arg);
+                        }
+                        value = args[++i];
+                    }
+                    options.set(arg, value);
+                } else {
+                    options.sourceRoots.add(Paths.get(arg));
+                }
+            }
+            if (!options.help && options.sourceRoots.isEmpty() && options.classRoots.isEmpty()) {
+                throw new IllegalArgumentException("no source roots or class roots given");
+            }
+            return options;
+        }
+
+        private void set(String option, String value) {
+            if (option.equals("--classes")) {
+                classRoots.add(Paths.get(value));
+            } else if (option.equals("--threads")) {
+                try {
+                    threads = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    throw new IllegalArgumentException("thread count must be positive: " + value);
+                }
+            } else if (option.equals("--readers")) {
+                try {
+                    readers = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    readers = 0;
+                }
+                if (readers < 1) {
+                    throw new IllegalArgumentException("reader count must be positive: " + value);
+                }
+            } else if (option.equals("--cache")) {
+                cacheDirectory = Paths.get(value);
+            } else if (option.equals("--include")) {
+                includes.add(FileSystems.getDefault().getPathMatcher("glob:" + value));
+            } else if (option.equals("--exclude")) {
+                excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + value));
+            } else if (option.equals("--format")) {
+                if (value.equals("binary")) {
+                    binary = true;
+                } else if (value.equals("jsonl")) {
+                    binary = false;
+                } else {
+                    throw new IllegalArgumentException("unknown format: " + value);
+                }
+            } else if (option.equals("--output")) {
+                output = Paths.get(value);
+            } else {
+                throw new IllegalArgumentException("unknown option: " + option);
+            }
+        }
+
+        private boolean accepts(Path relativePath) {
+            if (!includes.isEmpty() && !matches(includes, relativePath)) {
+                return false;
+            }
+            return !matches(excludes, relativePath);
+        }
+
+        private static boolean matches(List<PathMatcher> matchers, Path path) {
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private interface ResultWriter {
+        void writeFile(GroovyFileResult result) throws IOException;
+
+        void writeClasses(Path root, Set<String> classPaths) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class JsonResultWriter implements ResultWriter {
+        private final Writer writer;
+
+        private JsonResultWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        }
+
+        @Override
+        public void writeFile(GroovyFileResult result) throws IOException {
+            StringBuilder json = new StringBuilder("{\"file\":");
+            GroovyJson.appendString(json, result.getFilePath());
+            json.append(",\"status\":");
+            GroovyJson.appendString(json, result.getStatus().name());
+            json.append(",\"package\":");
+            GroovyJson.appendString(json, result.getPackagePath());
+            json.append(",\"classPaths\":");
+            GroovyJson.appendStrings(json, new TreeSet<String>(result.getClassPaths()));
+            if (result.getMessage() != null) {
+                json.append(",\"message\":");
+                GroovyJson.appendString(json, result.getMessage());
+            }
+            if (!result.getSyntaxErrors().isEmpty()) {
+                json.append(",\"syntaxErrors\":[");
+                for (GroovySyntaxError error : result.getSyntaxErrors()) {
+                    json.append("{\"line\":").append(error.getLine())
+                            .append(",\"column\":").append(error.getColumn())
+                            .append(",\"endLine\":").append(error.getEndLine())
+                            .append(",\"endColumn\":").append(error.getEndColumn())
+                            .append(",\"message\":");
+                    GroovyJson.appendString(json, error.getMessage());
+                    json.append("},");
+                }
+                json.setCharAt(json.length() - 1, ']');
+            }
+            writer.write(json.append("}\n").toString());
+        }
+
+        @Override
+        public void writeClasses(Path root, Set<String> classPaths) throws IOException {
+            StringBuilder json = new StringBuilder("{\"classes\":");
+            GroovyJson.appendString(json, root.toString());
+            json.append(",\"classPaths\":");
+            GroovyJson.appendStrings(json, classPaths);
+            writer.write(json.append("}\n").toString());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class BinaryResultWriter implements ResultWriter {
+        private final DataOutputStream out;
+
+        private BinaryResultWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(FORMAT_VERSION);
+        }
+
+        @Override
+        public void writeFile(GroovyFileResult result) throws IOException {
+            out.writeByte(RECORD_FILE);
+            out.writeUTF(result.getFilePath());
+            out.writeByte(result.getStatus().ordinal());
+            out.writeUTF(result.getPackagePath() != null ? result.getPackagePath() : "");
+            writeClassPaths(result.getClassPaths());
+        }
+
+        @Override
+        public void writeClasses(Path root, Set<String> classPaths) throws IOException {
+            out.writeByte(RECORD_CLASSES);
+            out.writeUTF(root.toString());
+            writeClassPaths(classPaths);
+        }
+
+        private void writeClassPaths(Set<String> classPaths) throws IOException {
+            out.writeInt(classPaths.size());
+            for (String classPath : classPaths) {
+                out.writeUTF(classPath);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.writeByte(RECORD_END);
+            out.flush();
+        }
+    }
+
+}
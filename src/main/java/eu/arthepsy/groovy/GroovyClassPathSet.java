@@ -0,0 +1,508 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of class paths stored as a trie of name segments, split at package
+ * separators and at the {@code $} of nested classes. Every distinct segment
+ * is kept once and numbered, and trie nodes are rows in plain {@code int}
+ * arrays, so a package prefix shared by thousands of classes costs one node
+ * instead of one copy per name. Names are only built as strings while
+ * iterating.
+ * <p>
+ * Lookups walk the trie without allocating. {@link #iterator(String)} lists
+ * the classes in or nested below a package or class, and
+ * {@link #writeTo(DataOutput)} stores the trie as it is, without expanding
+ * the names.
+ * <p>
+ * The set is safe for concurrent use. Iterators are weakly consistent, like
+ * those of the concurrent collections: they never fail, and may or may not
+ * see names added after they were created, and end once the set is
+ * cleared. Removed names keep their nodes until {@link #clear()}. Null
+ * names are not permitted.
+ */
+public final class GroovyClassPathSet extends AbstractSet<String> {
+    private static final int MAGIC = 0x47435053;
+    private static final int FORMAT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 16;
+    /** Never anyone's child or sibling, so it also marks missing links and failed lookups. */
+    private static final int ROOT = 0;
+    private static final byte TERMINAL = 1;
+    private static final byte NESTED = 2;
+
+    private String[] segments;
+    private int segmentCount;
+    /** Open addressing table of segment id + 1, 0 for a free slot. */
+    private int[] segmentTable;
+
+    private int[] parents;
+    private int[] nodeSegments;
+    private byte[] nodeFlags;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int nodeCount;
+    /** Open addressing table of child nodes keyed by parent, segment and separator. */
+    private long[] childKeys;
+    private int[] childNodes;
+    private int size;
+    /** Bumped by {@link #clear()}, which drops the nodes live iterators point at. */
+    private int generation;
+
+    public GroovyClassPathSet() {
+        init();
+    }
+
+    public GroovyClassPathSet(Collection<String> classPaths) {
+        this();
+        addAll(classPaths);
+    }
+
+    private void init() {
+        segments = new String[INITIAL_CAPACITY];
+        segmentCount = 0;
+        segmentTable = new int[INITIAL_CAPACITY * 2];
+        parents = new int[INITIAL_CAPACITY];
+        nodeSegments = new int[INITIAL_CAPACITY];
+        nodeFlags = new byte[INITIAL_CAPACITY];
+        firstChildren = new int[INITIAL_CAPACITY];
+        nextSiblings = new int[INITIAL_CAPACITY];
+        nodeCount = 1;
+        childKeys = new long[INITIAL_CAPACITY * 2];
+        childNodes = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int node = find((String) o);
+        return (node != ROOT && (nodeFlags[node] & TERMINAL) != 0);
+    }
+
+    @Override
+    public synchronized boolean add(String classPath) {
+        int node = ROOT;
+        boolean nested = false;
+        int start = 0;
+        int length = classPath.length();
+        for (int i = 0; i <= length; i++) {
+            char c = (i < length ? classPath.charAt(i) : '.');
+            if (c == '.' || c == '$') {
+                node = addChild(node, addSegment(classPath, start, i), nested);
+                nested = (c == '$');
+                start = i + 1;
+            }
+        }
+        return mark(node);
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends String> classPaths) {
+        boolean changed = false;
+        for (String classPath : classPaths) {
+            changed |= add(classPath);
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        return (o instanceof String && unmark(find((String) o)));
+    }
+
+    @Override
+    public synchronized void clear() {
+        init();
+        generation++;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new ClassPathIterator(ROOT);
+    }
+
+    /**
+     * Iterates over the class paths equal to the given package or class path,
+     * or nested below it: {@code "a.b"} covers {@code a.b.C} and
+     * {@code a.b.c.D}, {@code "a.b.C"} covers {@code a.b.C} and
+     * {@code a.b.C$Inner}. Only whole segments match, so {@code "a.b"} does
+     * not cover {@code a.bc.D}. An empty prefix covers the whole set.
+     */
+    public Iterator<String> iterator(String prefix) {
+        if (prefix.isEmpty()) {
+            return iterator();
+        }
+        synchronized (this) {
+            int node = find(prefix);
+            if (node == ROOT) {
+                return Collections.<String>emptyIterator();
+            }
+            return new ClassPathIterator(node);
+        }
+    }
+
+    /** Number of distinct name segments, a measure of how much the set shares. */
+    public synchronized int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Writes the segments and the trie. Names are not expanded, so the size
+     * is about that of the set in memory.
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            out.writeUTF(segments[i]);
+        }
+        out.writeInt(nodeCount - 1);
+        for (int node = 1; node < nodeCount; node++) {
+            out.writeInt(parents[node]);
+            out.writeInt(nodeSegments[node]);
+            out.writeByte(nodeFlags[node]);
+        }
+    }
+
+    /** Reads a set written by {@link #writeTo(DataOutput)}. */
+    public static GroovyClassPathSet readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class path set");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported class path set version " + version);
+        }
+        GroovyClassPathSet set = new GroovyClassPathSet();
+        int segmentCount = in.readInt();
+        if (segmentCount < 0) {
+            throw new IOException("Corrupt class path set");
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            String segment = in.readUTF();
+            if (set.addSegment(segment, 0, segment.length()) != i) {
+                throw new IOException("Corrupt class path set");
+            }
+        }
+        int nodeCount = in.readInt();
+        if (nodeCount < 0) {
+            throw new IOException("Corrupt class path set");
+        }
+        for (int node = 1; node <= nodeCount; node++) {
+            int parent = in.readInt();
+            int segment = in.readInt();
+            byte flags = in.readByte();
+            if (parent < 0 || parent >= node || segment < 0 || segment >= segmentCount
+                    || set.addChild(parent, segment, (flags & NESTED) != 0) != node) {
+                throw new IOException("Corrupt class path set");
+            }
+            if ((flags & TERMINAL) != 0) {
+                set.mark(node);
+            }
+        }
+        return set;
+    }
+
+    /** Node of a class path, or {@link #ROOT} if some segment is not in the set. */
+    private int find(String classPath) {
+        int node = ROOT;
+        boolean nested = false;
+        int start = 0;
+        int length = classPath.length();
+        while (true) {
+            int end = start;
+            while (end < length && classPath.charAt(end) != '.' && classPath.charAt(end) != '$') {
+                end++;
+            }
+            int segment = findSegment(classPath, start, end);
+            if (segment < 0) {
+                return ROOT;
+            }
+            node = findChild(node, segment, nested);
+            if (node == ROOT || end == length) {
+                return node;
+            }
+            nested = (classPath.charAt(end) == '$');
+            start = end + 1;
+        }
+    }
+
+    private boolean mark(int node) {
+        if ((nodeFlags[node] & TERMINAL) != 0) {
+            return false;
+        }
+        nodeFlags[node] |= TERMINAL;
+        size++;
+        return true;
+    }
+
+    private boolean unmark(int node) {
+        if (node == ROOT || (nodeFlags[node] & TERMINAL) == 0) {
+            return false;
+        }
+        nodeFlags[node] &= ~TERMINAL;
+        size--;
+        return true;
+    }
+
+    private int findSegment(String s, int start, int end) {
+        int length = end - start;
+        int mask = segmentTable.length - 1;
+        for (int slot = hashSegment(s, start, end) & mask; ; slot = (slot + 1) & mask) {
+            int id = segmentTable[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            String segment = segments[id];
+            if (segment.length() == length && s.regionMatches(start, segment, 0, length)) {
+                return id;
+            }
+        }
+    }
+
+    private int addSegment(String s, int start, int end) {
+        int id = findSegment(s, start, end);
+        if (id >= 0) {
+            return id;
+        }
+        if (segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, segmentCount * 2);
+        }
+        id = segmentCount++;
+        segments[id] = s.substring(start, end);
+        if (segmentCount * 2 > segmentTable.length) {
+            segmentTable = new int[segmentTable.length * 2];
+            for (int i = 0; i < segmentCount; i++) {
+                insertSegment(i);
+            }
+        } else {
+            insertSegment(id);
+        }
+        return id;
+    }
+
+    private void insertSegment(int id) {
+        String segment = segments[id];
+        int mask = segmentTable.length - 1;
+        int slot = hashSegment(segment, 0, segment.length()) & mask;
+        while (segmentTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        segmentTable[slot] = id + 1;
+    }
+
+    private int findChild(int parent, int segment, boolean nested) {
+        long key = childKey(parent, segment, nested);
+        int mask = childNodes.length - 1;
+        for (int slot = hashChild(key) & mask; ; slot = (slot + 1) & mask) {
+            int node = childNodes[slot];
+            if (node == ROOT || childKeys[slot] == key) {
+                return node;
+            }
+        }
+    }
+
+    private int addChild(int parent, int segment, boolean nested) {
+        int node = findChild(parent, segment, nested);
+        if (node != ROOT) {
+            return node;
+        }
+        if (nodeCount == parents.length) {
+            int capacity = nodeCount * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            nodeSegments = Arrays.copyOf(nodeSegments, capacity);
+            nodeFlags = Arrays.copyOf(nodeFlags, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        node = nodeCount++;
+        parents[node] = parent;
+        nodeSegments[node] = segment;
+        nodeFlags[node] = (nested ? NESTED : 0);
+        nextSiblings[node] = firstChildren[parent];
+        firstChildren[parent] = node;
+        if (nodeCount * 2 > childNodes.length) {
+            childKeys = new long[childKeys.length * 2];
+            childNodes = new int[childNodes.length * 2];
+            for (int i = 1; i < nodeCount; i++) {
+                insertChild(i);
+            }
+        } else {
+            insertChild(node);
+        }
+        return node;
+    }
+
+    private void insertChild(int node) {
+        long key = childKey(parents[node], nodeSegments[node], (nodeFlags[node] & NESTED) != 0);
+        int mask = childNodes.length - 1;
+        int slot = hashChild(key) & mask;
+        while (childNodes[slot] != ROOT) {
+            slot = (slot + 1) & mask;
+        }
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+    }
+
+    private static long childKey(int parent, int segment, boolean nested) {
+        return ((long) parent << 32) | ((long) segment << 1) | (nested ? 1 : 0);
+    }
+
+    private static int hashChild(long key) {
+        return mix((int) (key ^ (key >>> 32)));
+    }
+
+    private static int hashSegment(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private String getClassPath(int node) {
+        int length = -1;
+        for (int n = node; n != ROOT; n = parents[n]) {
+            length += segments[nodeSegments[n]].length() + 1;
+        }
+        char[] chars = new char[length];
+        int end = length;
+        for (int n = node; n != ROOT; n = parents[n]) {
+            String segment = segments[nodeSegments[n]];
+            int start = end - segment.length();
+            segment.getChars(0, segment.length(), chars, start);
+            if (start > 0) {
+                chars[start - 1] = ((nodeFlags[n] & NESTED) != 0 ? '$' : '.');
+            }
+            end = start - 1;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Node after the given one in depth-first order within the subtree of
+     * top, or {@link #ROOT} past its end. Links are only ever added, in front
+     * of existing ones, so a walk never repeats a node while the set grows.
+     */
+    private int nextNode(int node, int top) {
+        if (firstChildren[node] != ROOT) {
+            return firstChildren[node];
+        }
+        while (node != top) {
+            if (nextSiblings[node] != ROOT) {
+                return nextSiblings[node];
+            }
+            node = parents[node];
+        }
+        return ROOT;
+    }
+
+    private int nextTerminal(int node, int top) {
+        while (node != ROOT && (nodeFlags[node] & TERMINAL) == 0) {
+            node = nextNode(node, top);
+        }
+        return node;
+    }
+
+    private final class ClassPathIterator implements Iterator<String> {
+        private final int top;
+        private final int iteratedGeneration;
+        private int next;
+        private int last = ROOT;
+
+        ClassPathIterator(int top) {
+            this.top = top;
+            synchronized (GroovyClassPathSet.this) {
+                iteratedGeneration = generation;
+                next = nextTerminal(top == ROOT ? firstChildren[ROOT] : top, top);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (GroovyClassPathSet.this) {
+                return isCurrent() && next != ROOT;
+            }
+        }
+
+        @Override
+        public String next() {
+            synchronized (GroovyClassPathSet.this) {
+                if (!isCurrent() || next == ROOT) {
+                    throw new NoSuchElementException();
+                }
+                String classPath = getClassPath(next);
+                last = next;
+                next = nextTerminal(nextNode(next, top), top);
+                return classPath;
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (last == ROOT) {
+                throw new IllegalStateException();
+            }
+            synchronized (GroovyClassPathSet.this) {
+                if (isCurrent()) {
+                    unmark(last);
+                }
+            }
+            last = ROOT;
+        }
+
+        /** Node numbers only hold until the set is cleared. */
+        private boolean isCurrent() {
+            if (iteratedGeneration != generation) {
+                next = ROOT;
+                return false;
+            }
+            return true;
+        }
+    }
+
+}
@@ -23,45 +23,107 @@
  */
 package eu.arthepsy.groovy;
 
+import groovyjarjarantlr.collections.AST;
 import org.codehaus.groovy.antlr.GroovySourceAST;
 import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
 import org.codehaus.groovy.antlr.treewalker.VisitorAdapter;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
-class GroovyClassVisitor extends VisitorAdapter {
+/**
+ * Collects the binary names of declared types. Expects a traversal that
+ * closes a type definition only after its children, such as
+ * {@link GroovyDeclarationTraversal}, so the innermost open type is always
+ * on top of the scope stack.
+ * <p>
+ * Imports, supertypes and type annotations are read in the same pass when
+ * requested through {@link #reset(boolean, boolean, boolean)}; imports also
+ * need a traversal that visits them.
+ */
+class GroovyClassVisitor extends VisitorAdapter implements GroovyClassDeclarations {
     private final Set<String> classPaths;
+    private final List<GroovyTypeDeclaration> typeDeclarations;
+    private final List<GroovyImport> imports;
+    private final Set<String> typeReferences;
+    private final List<String> generatedClassPaths;
     private String packagePath;
+    private boolean collectImports;
+    private boolean collectSupertypes;
+    private boolean collectAnnotations;
 
-    private final Map<String, String> classCache;
-    private final Stack<GroovySourceAST> stack;
+    private final List<String> typeScopes;
 
     public GroovyClassVisitor() {
         packagePath = null;
         classPaths = new HashSet<String>();
-        classCache = new HashMap<String, String>();
-        stack = new Stack<GroovySourceAST>();
+        typeDeclarations = new ArrayList<GroovyTypeDeclaration>();
+        imports = new ArrayList<GroovyImport>();
+        typeReferences = new LinkedHashSet<String>();
+        generatedClassPaths = new ArrayList<String>();
+        typeScopes = new ArrayList<String>();
+    }
+
+    /**
+     * Clears everything collected from a previous source so the instance can
+     * be used for the next one.
+     */
+    public void reset() {
+        reset(false, false, false);
     }
 
+    public void reset(boolean collectImports, boolean collectSupertypes, boolean collectAnnotations) {
+        packagePath = null;
+        classPaths.clear();
+        typeDeclarations.clear();
+        imports.clear();
+        typeReferences.clear();
+        generatedClassPaths.clear();
+        typeScopes.clear();
+        this.collectImports = collectImports;
+        this.collectSupertypes = collectSupertypes;
+        this.collectAnnotations = collectAnnotations;
+    }
+
+    @Override
     public String getPackagePath() {
         return packagePath;
     }
 
+    @Override
     public Set<String> getClassPaths() {
         return classPaths;
     }
 
     @Override
-    public void push(GroovySourceAST t) {
-        stack.push(t);
+    public List<GroovyTypeDeclaration> getTypeDeclarations() {
+        return typeDeclarations;
     }
 
     @Override
-    public GroovySourceAST pop() {
-        if (! stack.empty()) {
-            return stack.pop();
-        }
-        return null;
+    public List<GroovyImport> getImports() {
+        return imports;
+    }
+
+    /**
+     * Type names referred to anywhere in the source, filled in by
+     * {@link GroovyTypeReferences} as that needs the whole AST.
+     */
+    @Override
+    public Set<String> getTypeReferences() {
+        return typeReferences;
+    }
+
+    /**
+     * Binary names of anonymous classes, closures and trait helpers,
+     * filled in by {@link GroovyGeneratedClasses}.
+     */
+    @Override
+    public List<String> getGeneratedClassPaths() {
+        return generatedClassPaths;
     }
 
     @Override
@@ -72,88 +134,150 @@ class GroovyClassVisitor extends VisitorAdapter {
         super.visitPackageDef(t, visit);
     }
 
+    @Override
+    public void visitImport(GroovySourceAST t, int visit) {
+        if (visit == OPENING_VISIT && collectImports) {
+            addImport(t, false);
+        }
+        super.visitImport(t, visit);
+    }
+
+    @Override
+    public void visitStaticImport(GroovySourceAST t, int visit) {
+        if (visit == OPENING_VISIT && collectImports) {
+            addImport(t, true);
+        }
+        super.visitStaticImport(t, visit);
+    }
+
+    /**
+     * The imported name follows the annotations child, wrapped in an
+     * {@code as} node when aliased. A star import ends in a {@code *}.
+     */
+    private void addImport(GroovySourceAST t, boolean staticImport) {
+        GroovySourceAST name = (GroovySourceAST) t.getFirstChild();
+        if (name != null && name.getType() == GroovyTokenTypes.ANNOTATIONS) {
+            name = (GroovySourceAST) name.getNextSibling();
+        }
+        if (name == null) {
+            return;
+        }
+        String alias = null;
+        if (name.getType() == GroovyTokenTypes.LITERAL_as) {
+            GroovySourceAST aliasAST = (GroovySourceAST) name.getFirstChild().getNextSibling();
+            alias = (aliasAST != null ? aliasAST.getText() : null);
+            name = (GroovySourceAST) name.getFirstChild();
+        }
+        boolean star = false;
+        if (name.getType() == GroovyTokenTypes.DOT) {
+            GroovySourceAST last = (GroovySourceAST) name.getFirstChild().getNextSibling();
+            if (last != null && last.getType() == GroovyTokenTypes.STAR) {
+                star = true;
+                name = (GroovySourceAST) name.getFirstChild();
+            }
+        }
+        imports.add(new GroovyImport(getQualifiedName(name), alias, staticImport, star));
+    }
+
     @Override
     public void visitInterfaceDef(GroovySourceAST t, int visit) {
-        visitClassDef(t, visit);
+        visitTypeDef(t, visit, GroovyTypeKind.INTERFACE);
+        super.visitInterfaceDef(t, visit);
     }
 
     @Override
     public void visitTraitDef(GroovySourceAST t, int visit) {
-        visitClassDef(t, visit);
+        visitTypeDef(t, visit, GroovyTypeKind.TRAIT);
+        super.visitTraitDef(t, visit);
     }
 
     @Override
     public void visitEnumDef(GroovySourceAST t, int visit) {
-        visitClassDef(t, visit);
+        visitTypeDef(t, visit, GroovyTypeKind.ENUM);
+        super.visitEnumDef(t, visit);
     }
 
     @Override
     public void visitAnnotationDef(GroovySourceAST t, int visit) {
-        visitClassDef(t, visit);
+        visitTypeDef(t, visit, GroovyTypeKind.ANNOTATION);
+        super.visitAnnotationDef(t, visit);
     }
 
     @Override
     public void visitClassDef(GroovySourceAST t, int visit) {
+        visitTypeDef(t, visit, GroovyTypeKind.CLASS);
+        super.visitClassDef(t, visit);
+    }
+
+    private void visitTypeDef(GroovySourceAST t, int visit, GroovyTypeKind kind) {
         if (visit == OPENING_VISIT) {
             String className = getIdentFor(t);
-            String classPath = className;
-            String parentClassPath = getParentClassPath();
-            if (parentClassPath != null) {
-                classPath = parentClassPath + "$" + className;
-                this.classCache.put(className, classPath);
+            String classPath;
+            String enclosingClassPath = null;
+            int last = typeScopes.size() - 1;
+            if (last >= 0) {
+                enclosingClassPath = typeScopes.get(last);
+                classPath = enclosingClassPath + "$" + className;
+            } else {
+                classPath = getPackagePrefix() + className;
             }
-            classPath = getPackagePrefix() + classPath;
+            typeScopes.add(classPath);
             classPaths.add(classPath);
+            if (collectSupertypes || collectAnnotations) {
+                typeDeclarations.add(newTypeDeclaration(t, classPath, className, kind, enclosingClassPath, last + 1));
+            } else {
+                typeDeclarations.add(new GroovyTypeDeclaration(classPath, className, kind, enclosingClassPath, last + 1));
+            }
+        } else if (visit == CLOSING_VISIT) {
+            typeScopes.remove(typeScopes.size() - 1);
         }
-        super.visitClassDef(t, visit);
     }
 
-    private GroovySourceAST getParentNode() {
-        if (stack.empty()) {
-            return null;
+    private GroovyTypeDeclaration newTypeDeclaration(GroovySourceAST t, String classPath, String className,
+                                                     GroovyTypeKind kind, String enclosingClassPath, int depth) {
+        String superclass = null;
+        List<String> interfaces = new ArrayList<String>();
+        List<String> annotations = new ArrayList<String>();
+        if (collectSupertypes) {
+            List<String> extendsNames = getTypeNames(t.childOfType(GroovyTokenTypes.EXTENDS_CLAUSE));
+            if (kind == GroovyTypeKind.CLASS) {
+                superclass = (extendsNames.isEmpty() ? null : extendsNames.get(0));
+            } else {
+                interfaces.addAll(extendsNames);
+            }
+            interfaces.addAll(getTypeNames(t.childOfType(GroovyTokenTypes.IMPLEMENTS_CLAUSE)));
         }
-        GroovySourceAST parentNode = null;
-        GroovySourceAST currentNode = stack.pop();
-        if (! stack.empty()) {
-            parentNode = stack.peek();
+        if (collectAnnotations) {
+            GroovySourceAST modifiers = t.childOfType(GroovyTokenTypes.MODIFIERS);
+            if (modifiers != null) {
+                for (AST child = modifiers.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getType() == GroovyTokenTypes.ANNOTATION) {
+                        annotations.add(getQualifiedName((GroovySourceAST) child.getFirstChild()));
+                    }
+                }
+            }
         }
-        stack.push(currentNode);
-        return parentNode;
+        return new GroovyTypeDeclaration(classPath, className, kind, enclosingClassPath, depth,
+                superclass, interfaces, annotations);
     }
 
-    private boolean isTopLevelConstruct(GroovySourceAST node) {
-        if (node == null) return false;
-        int type = node.getType();
-        return type == GroovyTokenTypes.CLASS_DEF
-                || type == GroovyTokenTypes.INTERFACE_DEF
-                || type == GroovyTokenTypes.TRAIT_DEF
-                || type == GroovyTokenTypes.ANNOTATION_DEF
-                || type == GroovyTokenTypes.ENUM_DEF;
-    }
-
-    private String getParentClassName() {
-        if (stack.isEmpty()) {
-            return null;
-        }
-        GroovySourceAST node = getParentNode();
-        if (isTopLevelConstruct(node)) {
-            return getIdentFor(node);
+    /**
+     * Names listed in an extends or implements clause. Entries are either
+     * {@code TYPE} nodes or, with type arguments, the bare name node.
+     */
+    private List<String> getTypeNames(GroovySourceAST clause) {
+        List<String> names = new ArrayList<String>();
+        if (clause == null) {
+            return names;
         }
-        GroovySourceAST saved = stack.pop();
-        String result = getParentClassName();
-        stack.push(saved);
-        return result;
-    }
-
-    private String getParentClassPath() {
-        String className = getParentClassName();
-        if (className != null) {
-            String classPath = classCache.get(className);
-            if (classPath != null) {
-                className = classPath;
+        for (AST child = clause.getFirstChild(); child != null; child = child.getNextSibling()) {
+            AST name = (child.getType() == GroovyTokenTypes.TYPE ? child.getFirstChild() : child);
+            String qualifiedName = getQualifiedName((GroovySourceAST) name);
+            if (!qualifiedName.isEmpty()) {
+                names.add(qualifiedName);
             }
         }
-        return className;
+        return names;
     }
 
     private String getPackagePrefix() {
@@ -173,15 +297,15 @@ class GroovyClassVisitor extends VisitorAdapter {
         if (child == null) {
             child = t.childOfType(GroovyTokenTypes.IDENT);
         }
-        return recursePackageAST(child);
+        return getQualifiedName(child);
     }
 
-    private String recursePackageAST(GroovySourceAST t) {
+    private String getQualifiedName(GroovySourceAST t) {
         if (t != null) {
             if (t.getType() == GroovyTokenTypes.DOT) {
                 GroovySourceAST first = (GroovySourceAST) t.getFirstChild();
                 GroovySourceAST second = (GroovySourceAST) first.getNextSibling();
-                return (recursePackageAST(first) + "." + recursePackageAST(second));
+                return (getQualifiedName(first) + "." + getQualifiedName(second));
             }
             if (t.getType() == GroovyTokenTypes.IDENT) {
                 return t.getText();
@@ -0,0 +1,334 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps per-file results of source roots current while the files are
+ * edited. Every directory below a registered root is watched; bursts of
+ * events are collected until no new event arrives for the debounce delay,
+ * then only the touched files are parsed again and the resulting class path
+ * differences are published per file.
+ * <p>
+ * Results are taken from {@link GroovyClassParser#parseGroovyFile(String)},
+ * so the parser's cache and scan options apply. The parser's own class path
+ * set is never pruned; turn it off with
+ * {@link GroovyClassParser#setCollectClassPaths(boolean)} and use
+ * {@link #getClassPaths()} instead.
+ * <p>
+ * A file or directory that cannot be read is reported to the parser's
+ * {@link GroovyDiagnostics} and skipped; watching goes on with the rest.
+ */
+public class GroovyClassWatcher implements Closeable {
+    private static final String GROOVY_FILE_EXTENSION = ".groovy";
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+    private static final int MAX_DEBOUNCE_ROUNDS = 20;
+
+    private final GroovyClassParser parser;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories;
+    private final Set<Path> roots;
+    private final Map<Path, GroovyFileResult> results;
+    private final List<GroovyClassChangeListener> listeners;
+
+    public GroovyClassWatcher(GroovyClassParser parser) throws IOException {
+        this(parser, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public GroovyClassWatcher(GroovyClassParser parser, long debounceMillis) throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("debounce must not be negative: " + debounceMillis);
+        }
+        this.parser = parser;
+        this.debounceMillis = debounceMillis;
+        watchService = FileSystems.getDefault().newWatchService();
+        directories = new HashMap<WatchKey, Path>();
+        roots = new LinkedHashSet<Path>();
+        results = new ConcurrentHashMap<Path, GroovyFileResult>();
+        listeners = new CopyOnWriteArrayList<GroovyClassChangeListener>();
+    }
+
+    public void addListener(GroovyClassChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GroovyClassChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Current result of every known source file, keyed by absolute path. */
+    public Map<Path, GroovyFileResult> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /** Snapshot of the class paths of all known source files. */
+    public Set<String> getClassPaths() {
+        Set<String> classPaths = new GroovyClassPathSet();
+        for (GroovyFileResult result : results.values()) {
+            classPaths.addAll(result.getClassPaths());
+        }
+        return classPaths;
+    }
+
+    /**
+     * Starts watching a source root and parses the files already in it,
+     * publishing them as added.
+     */
+    public synchronized void register(Path root) throws IOException {
+        root = root.toAbsolutePath().normalize();
+        roots.add(root);
+        addTree(root);
+    }
+
+    /**
+     * Processes file system events until {@link #close()} is called. Meant
+     * to be run on a dedicated thread.
+     */
+    public void watch() throws IOException, InterruptedException {
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<Path>();
+                boolean overflow = collect(watchService.take(), changed);
+                for (int round = 0; round < MAX_DEBOUNCE_ROUNDS; round++) {
+                    WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    overflow |= collect(key, changed);
+                }
+                process(changed, overflow);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private synchronized boolean collect(WatchKey key, Set<Path> changed) {
+        boolean overflow = false;
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (directory != null) {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    private synchronized void process(Set<Path> changed, boolean overflow) {
+        if (overflow) {
+            rescan();
+            return;
+        }
+        for (Path path : changed) {
+            try {
+                process(path);
+            } catch (IOException e) {
+                report(path, e);
+            }
+        }
+    }
+
+    private void process(Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            removeTree(path);
+            return;
+        }
+        if (attributes.isDirectory()) {
+            addTree(path);
+        } else if (attributes.isRegularFile() && isGroovyFile(path)) {
+            update(path);
+        }
+    }
+
+    /**
+     * Events were lost, so every root is walked again and files that are
+     * gone are dropped.
+     */
+    private void rescan() {
+        Set<Path> known = new HashSet<Path>(results.keySet());
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                known.removeAll(addTree(root));
+            }
+        }
+        for (Path path : known) {
+            remove(path);
+        }
+    }
+
+    /**
+     * Watches a directory tree and parses its files. Entries that cannot be
+     * read are reported and left out, so the returned files are the ones
+     * seen, whether or not they could be parsed.
+     */
+    private List<Path> addTree(Path directory) {
+        final List<Path> files = new ArrayList<Path>();
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    try {
+                        directories.put(dir.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE,
+                                StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                    } catch (IOException e) {
+                        report(dir, e);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isGroovyFile(file)) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (!(e instanceof NoSuchFileException)) {
+                        report(file, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (e != null) {
+                        report(dir, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            report(directory, e);
+        }
+        for (Path file : files) {
+            try {
+                update(file);
+            } catch (IOException e) {
+                report(file, e);
+            }
+        }
+        return files;
+    }
+
+    private void report(Path path, IOException e) {
+        GroovyDiagnostics diagnostics = parser.getDiagnostics();
+        if (diagnostics.isEnabled(GroovyDiagnosticLevel.ERROR)) {
+            diagnostics.report(new GroovyDiagnostic(GroovyDiagnosticLevel.ERROR, path.toString(), null,
+                    "Skipped due to " + e.getClass().getSimpleName(), e));
+        }
+    }
+
+    private void removeTree(Path path) {
+        for (Path file : new ArrayList<Path>(results.keySet())) {
+            if (file.startsWith(path)) {
+                remove(file);
+            }
+        }
+    }
+
+    private void update(Path file) throws IOException {
+        GroovyFileResult result;
+        try {
+            result = parser.parseGroovyFile(file.toString());
+        } catch (NoSuchFileException e) {
+            remove(file);
+            return;
+        }
+        publish(file, results.put(file, result), result);
+    }
+
+    private void remove(Path file) {
+        GroovyFileResult previous = results.remove(file);
+        if (previous != null) {
+            publish(file, previous, null);
+        }
+    }
+
+    private void publish(Path file, GroovyFileResult previous, GroovyFileResult current) {
+        Set<String> before = (previous != null ? previous.getClassPaths() : Collections.<String>emptySet());
+        Set<String> after = (current != null ? current.getClassPaths() : Collections.<String>emptySet());
+        Set<String> added = new LinkedHashSet<String>(after);
+        added.removeAll(before);
+        Set<String> removed = new LinkedHashSet<String>(before);
+        removed.removeAll(after);
+        if (added.isEmpty() && removed.isEmpty() && previous != null && current != null) {
+            return;
+        }
+        GroovyClassChange change = new GroovyClassChange(file, added, removed, current);
+        for (GroovyClassChangeListener listener : listeners) {
+            listener.classesChanged(change);
+        }
+    }
+
+    private static boolean isGroovyFile(Path file) {
+        return file.getFileName().toString().endsWith(GROOVY_FILE_EXTENSION);
+    }
+
+}
@@ -0,0 +1,544 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.RecognitionException;
+import groovyjarjarantlr.Token;
+import groovyjarjarantlr.TokenStream;
+import groovyjarjarantlr.TokenStreamException;
+import groovyjarjarantlr.TokenStreamRecognitionException;
+import org.codehaus.groovy.antlr.parser.GroovyLexer;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds package and type declarations from the lexer token stream alone,
+ * without building an AST. Only brace depth and declaration keywords are
+ * tracked, so anything that does not look like a plain declaration makes
+ * {@link #scan(Reader)} give up and the caller should run the full parser.
+ * Declarations that are neither top level nor directly inside a type body
+ * are local classes and are only reported when asked for, matching
+ * {@link GroovyDeclarationTraversal}.
+ * <p>
+ * {@link #recover(GroovyLexer, int)} scans a source the parser rejected and
+ * never gives up: a type declaration that starts a line at column 1 closes
+ * whatever braces are still open, stray braces are skipped, and the lexer is
+ * restarted on the next line after it fails. Each of these is kept as a
+ * {@link GroovySyntaxError}.
+ */
+final class GroovyDeclarationScanner implements GroovyClassDeclarations {
+    /** Recovery stops looking at a source after this many errors, as it is unlikely to be Groovy. */
+    static final int MAX_SYNTAX_ERRORS = 100;
+
+    private boolean localClassScan;
+    private final Set<String> classPaths;
+    private final List<GroovyTypeDeclaration> typeDeclarations;
+    private String packagePath;
+
+    private final List<String> typeNames;
+    private final List<Integer> typeDepths;
+    private String pendingTypeName;
+    private GroovyTypeKind pendingTypeKind;
+    private Token pushedBack;
+    private int depth;
+    private int previousType;
+
+    private final List<GroovySyntaxError> syntaxErrors;
+    /** Line and column of the open braces by depth, while recovering. */
+    private long[] braces;
+    /** Line and column where top level type declarations start, while recovering. */
+    private long[] boundaries;
+    private int boundaryCount;
+    private int currentLine;
+    private boolean lineStartsDeclaration;
+    private long end;
+
+    public GroovyDeclarationScanner() {
+        this(false);
+    }
+
+    public GroovyDeclarationScanner(boolean localClassScan) {
+        this.localClassScan = localClassScan;
+        classPaths = new HashSet<String>();
+        typeDeclarations = new ArrayList<GroovyTypeDeclaration>();
+        typeNames = new ArrayList<String>();
+        typeDepths = new ArrayList<Integer>();
+        syntaxErrors = new ArrayList<GroovySyntaxError>();
+        braces = new long[16];
+        boundaries = new long[16];
+        end = toPosition(1, 1);
+    }
+
+    /**
+     * Clears everything found by a previous scan so the instance can be used
+     * for the next source.
+     */
+    public void reset(boolean localClassScan) {
+        this.localClassScan = localClassScan;
+        classPaths.clear();
+        typeDeclarations.clear();
+        packagePath = null;
+        typeNames.clear();
+        typeDepths.clear();
+        pendingTypeName = null;
+        pushedBack = null;
+        depth = 0;
+        syntaxErrors.clear();
+        boundaryCount = 0;
+        currentLine = 0;
+        end = toPosition(1, 1);
+    }
+
+    @Override
+    public String getPackagePath() {
+        return packagePath;
+    }
+
+    @Override
+    public Set<String> getClassPaths() {
+        return classPaths;
+    }
+
+    @Override
+    public List<GroovyTypeDeclaration> getTypeDeclarations() {
+        return typeDeclarations;
+    }
+
+    /** Imports are not scanned for, see {@link GroovyClassVisitor}. */
+    @Override
+    public List<GroovyImport> getImports() {
+        return Collections.emptyList();
+    }
+
+    /** Type references are not scanned for, see {@link GroovyTypeReferences}. */
+    @Override
+    public Set<String> getTypeReferences() {
+        return Collections.emptySet();
+    }
+
+    /** Generated classes need the full AST, see {@link GroovyGeneratedClasses}. */
+    @Override
+    public List<String> getGeneratedClassPaths() {
+        return Collections.emptyList();
+    }
+
+    public boolean scan(Reader reader) throws GroovyParseLimitException {
+        return scan(GroovySourceInput.newLexer(reader));
+    }
+
+    /**
+     * Scans the token stream of the given lexer. Returns false if the source
+     * needs the full parser, but a hit limit is rethrown as that is final.
+     */
+    public boolean scan(GroovyLexer lexer) throws GroovyParseLimitException {
+        try {
+            return scan(lexer.plumb());
+        } catch (GroovyParseLimitException e) {
+            throw e;
+        } catch (TokenStreamException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads just the package clause, if the source starts with one. Used
+     * where the rest of the file must not be looked at.
+     */
+    public static String scanPackagePath(GroovyLexer lexer) {
+        GroovyDeclarationScanner scanner = new GroovyDeclarationScanner();
+        try {
+            TokenStream tokens = lexer.plumb();
+            if (scanner.nextToken(tokens).getType() == GroovyTokenTypes.LITERAL_package) {
+                scanner.scanPackage(tokens);
+            }
+        } catch (TokenStreamException e) {
+            return null;
+        }
+        return scanner.packagePath;
+    }
+
+    private boolean scan(TokenStream tokens) throws TokenStreamException {
+        previousType = GroovyTokenTypes.EOF;
+        for (Token token = nextToken(tokens); ; token = nextToken(tokens)) {
+            int type = token.getType();
+            switch (type) {
+                case GroovyTokenTypes.EOF:
+                    return depth == 0 && pendingTypeName == null;
+                case GroovyTokenTypes.LITERAL_package:
+                    if (depth > 0 || packagePath != null || !classPaths.isEmpty()) {
+                        return false;
+                    }
+                    if (!scanPackage(tokens)) {
+                        return false;
+                    }
+                    break;
+                case GroovyTokenTypes.LITERAL_class:
+                case GroovyTokenTypes.LITERAL_interface:
+                case GroovyTokenTypes.LITERAL_trait:
+                case GroovyTokenTypes.LITERAL_enum:
+                    if (isMemberAccess(previousType) || (!localClassScan && isLocalPosition())) {
+                        break;
+                    }
+                    if (pendingTypeName != null) {
+                        return false;
+                    }
+                    token = nextToken(tokens);
+                    if (token.getType() != GroovyTokenTypes.IDENT) {
+                        return false;
+                    }
+                    pendingTypeName = token.getText();
+                    pendingTypeKind = getTypeKind(type, previousType);
+                    type = token.getType();
+                    break;
+                case GroovyTokenTypes.LCURLY:
+                    depth++;
+                    if (pendingTypeName != null) {
+                        openType(pendingTypeName, pendingTypeKind);
+                        pendingTypeName = null;
+                    }
+                    break;
+                case GroovyTokenTypes.RCURLY:
+                    if (depth == 0) {
+                        return false;
+                    }
+                    int last = typeDepths.size() - 1;
+                    if (last >= 0 && typeDepths.get(last) == depth) {
+                        typeNames.remove(last);
+                        typeDepths.remove(last);
+                    }
+                    depth--;
+                    break;
+                case GroovyTokenTypes.SEMI:
+                    if (pendingTypeName != null) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            previousType = type;
+        }
+    }
+
+    /**
+     * Scans in recovery mode, starting on the given line of the source, with
+     * what was found before that line kept. Returns the line to restart on
+     * after the lexer failed, or -1 once the scan is complete; a hit limit is
+     * rethrown.
+     */
+    public int recover(GroovyLexer lexer, int line) throws GroovyParseLimitException {
+        lexer.setLine(line);
+        if (line == 1) {
+            previousType = GroovyTokenTypes.EOF;
+        }
+        try {
+            recover(lexer.plumb());
+            return -1;
+        } catch (GroovyParseLimitException e) {
+            throw e;
+        } catch (TokenStreamException e) {
+            long position = getPosition(e, lexer.getLine(), lexer.getColumn());
+            int errorLine = getLine(position);
+            addSyntaxError(position, toPosition(errorLine + 1, 1), e.getMessage());
+            end = Math.max(end, toPosition(errorLine + 1, 1));
+            pushedBack = null;
+            pendingTypeName = null;
+            previousType = GroovyTokenTypes.EOF;
+            return (syntaxErrors.size() < MAX_SYNTAX_ERRORS ? errorLine + 1 : -1);
+        }
+    }
+
+    /**
+     * Adds the failure the parser stopped on, spanning up to the next top
+     * level type declaration found by {@link #recover(GroovyLexer, int)}. An
+     * error the scan found at the same place is replaced.
+     */
+    public void addFailure(Exception e) {
+        long position = getPosition(e, getLine(end), getColumn(end));
+        long next = end;
+        for (int i = 0; i < boundaryCount; i++) {
+            if (boundaries[i] > position) {
+                next = boundaries[i];
+                break;
+            }
+        }
+        GroovySyntaxError failure = new GroovySyntaxError(getLine(position), getColumn(position),
+                getLine(next), getColumn(next), e.getMessage());
+        int index = 0;
+        while (index < syntaxErrors.size() && toPosition(syntaxErrors.get(index)) < position) {
+            index++;
+        }
+        if (index < syntaxErrors.size() && syntaxErrors.get(index).startsAt(failure.getLine(), failure.getColumn())) {
+            syntaxErrors.set(index, failure);
+        } else {
+            syntaxErrors.add(index, failure);
+        }
+    }
+
+    /** Errors met while recovering, in source order. */
+    public List<GroovySyntaxError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+    private void recover(TokenStream tokens) throws TokenStreamException {
+        for (Token token = nextToken(tokens); ; token = nextToken(tokens)) {
+            int type = token.getType();
+            long position = toPosition(token.getLine(), token.getColumn());
+            end = Math.max(end, position);
+            if (token.getLine() != currentLine) {
+                currentLine = token.getLine();
+                lineStartsDeclaration = (token.getColumn() == 1 && isDeclarationStart(type));
+            }
+            switch (type) {
+                case GroovyTokenTypes.EOF:
+                    if (depth > 0) {
+                        addSyntaxError(braces[1], position, "missing '}' at end of file");
+                        closeAll();
+                    }
+                    return;
+                case GroovyTokenTypes.LITERAL_package:
+                    if (depth > 0 || packagePath != null || !classPaths.isEmpty() || !scanPackage(tokens)) {
+                        addSyntaxError(position, position + 1, "unexpected package clause");
+                    }
+                    break;
+                case GroovyTokenTypes.LITERAL_class:
+                case GroovyTokenTypes.LITERAL_interface:
+                case GroovyTokenTypes.LITERAL_trait:
+                case GroovyTokenTypes.LITERAL_enum:
+                    if (isMemberAccess(previousType)) {
+                        break;
+                    }
+                    long start = (lineStartsDeclaration ? toPosition(token.getLine(), 1) : position);
+                    if (depth > 0 && lineStartsDeclaration) {
+                        addSyntaxError(braces[1], start, "missing '}' before type declaration");
+                        closeAll();
+                    }
+                    if (!localClassScan && isLocalPosition()) {
+                        break;
+                    }
+                    Token name = nextToken(tokens);
+                    if (name.getType() != GroovyTokenTypes.IDENT) {
+                        addSyntaxError(position, toPosition(name.getLine(), name.getColumn()), "missing type name");
+                        pendingTypeName = null;
+                        pushedBack = name;
+                        break;
+                    }
+                    if (depth == 0) {
+                        addBoundary(start);
+                    }
+                    pendingTypeName = name.getText();
+                    pendingTypeKind = getTypeKind(type, previousType);
+                    type = name.getType();
+                    break;
+                case GroovyTokenTypes.LCURLY:
+                    depth++;
+                    if (depth == braces.length) {
+                        braces = Arrays.copyOf(braces, depth * 2);
+                    }
+                    braces[depth] = position;
+                    if (pendingTypeName != null) {
+                        openType(pendingTypeName, pendingTypeKind);
+                        pendingTypeName = null;
+                    }
+                    break;
+                case GroovyTokenTypes.RCURLY:
+                    if (depth == 0) {
+                        addSyntaxError(position, position + 1, "unmatched '}'");
+                        break;
+                    }
+                    int last = typeDepths.size() - 1;
+                    if (last >= 0 && typeDepths.get(last) == depth) {
+                        typeNames.remove(last);
+                        typeDepths.remove(last);
+                    }
+                    depth--;
+                    break;
+                case GroovyTokenTypes.SEMI:
+                    pendingTypeName = null;
+                    break;
+                default:
+                    break;
+            }
+            previousType = type;
+            if (syntaxErrors.size() >= MAX_SYNTAX_ERRORS) {
+                return;
+            }
+        }
+    }
+
+    private void closeAll() {
+        depth = 0;
+        typeNames.clear();
+        typeDepths.clear();
+        pendingTypeName = null;
+    }
+
+    private void addBoundary(long position) {
+        if (boundaryCount == boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, boundaryCount * 2);
+        }
+        boundaries[boundaryCount++] = position;
+    }
+
+    private void addSyntaxError(long position, long endPosition, String message) {
+        syntaxErrors.add(new GroovySyntaxError(getLine(position), getColumn(position), getLine(endPosition),
+                getColumn(endPosition), message));
+    }
+
+    private static boolean isDeclarationStart(int type) {
+        switch (type) {
+            case GroovyTokenTypes.LITERAL_class:
+            case GroovyTokenTypes.LITERAL_interface:
+            case GroovyTokenTypes.LITERAL_trait:
+            case GroovyTokenTypes.LITERAL_enum:
+            case GroovyTokenTypes.AT:
+            case GroovyTokenTypes.LITERAL_public:
+            case GroovyTokenTypes.LITERAL_protected:
+            case GroovyTokenTypes.LITERAL_private:
+            case GroovyTokenTypes.LITERAL_static:
+            case GroovyTokenTypes.FINAL:
+            case GroovyTokenTypes.ABSTRACT:
+            case GroovyTokenTypes.STRICTFP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Where an exception of the lexer or parser points to, or the given fallback if it does not say. */
+    private static long getPosition(Exception e, int line, int column) {
+        if (e instanceof TokenStreamRecognitionException) {
+            e = ((TokenStreamRecognitionException) e).recog;
+        }
+        if (e instanceof RecognitionException) {
+            RecognitionException recognition = (RecognitionException) e;
+            if (recognition.getLine() > 0) {
+                return toPosition(recognition.getLine(), Math.max(recognition.getColumn(), 1));
+            }
+        }
+        return toPosition(line, column);
+    }
+
+    private static long toPosition(int line, int column) {
+        return ((long) line << 32) | column;
+    }
+
+    private static long toPosition(GroovySyntaxError error) {
+        return toPosition(error.getLine(), error.getColumn());
+    }
+
+    private static int getLine(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int getColumn(long position) {
+        return (int) position;
+    }
+
+    private boolean scanPackage(TokenStream tokens) throws TokenStreamException {
+        StringBuilder path = new StringBuilder();
+        Token token = nextToken(tokens);
+        while (token.getType() == GroovyTokenTypes.IDENT) {
+            path.append(token.getText());
+            token = nextToken(tokens);
+            if (token.getType() != GroovyTokenTypes.DOT) {
+                packagePath = path.toString();
+                pushedBack = token;
+                return true;
+            }
+            path.append('.');
+            token = nextToken(tokens);
+        }
+        return false;
+    }
+
+    private boolean isLocalPosition() {
+        int last = typeDepths.size() - 1;
+        int bodyDepth = (last >= 0 ? typeDepths.get(last) : 0);
+        return depth != bodyDepth;
+    }
+
+    private void openType(String className, GroovyTypeKind kind) {
+        String classPath;
+        String enclosingClassPath = null;
+        int last = typeNames.size() - 1;
+        if (last >= 0) {
+            enclosingClassPath = typeNames.get(last);
+            classPath = enclosingClassPath + "$" + className;
+        } else {
+            classPath = getPackagePrefix() + className;
+        }
+        typeNames.add(classPath);
+        typeDepths.add(depth);
+        classPaths.add(classPath);
+        typeDeclarations.add(new GroovyTypeDeclaration(classPath, className, kind, enclosingClassPath, last + 1));
+    }
+
+    private String getPackagePrefix() {
+        if (packagePath != null && !packagePath.isEmpty()) {
+            return packagePath + ".";
+        }
+        return "";
+    }
+
+    private static GroovyTypeKind getTypeKind(int keywordType, int previousType) {
+        switch (keywordType) {
+            case GroovyTokenTypes.LITERAL_interface:
+                return (previousType == GroovyTokenTypes.AT ? GroovyTypeKind.ANNOTATION : GroovyTypeKind.INTERFACE);
+            case GroovyTokenTypes.LITERAL_trait:
+                return GroovyTypeKind.TRAIT;
+            case GroovyTokenTypes.LITERAL_enum:
+                return GroovyTypeKind.ENUM;
+            default:
+                return GroovyTypeKind.CLASS;
+        }
+    }
+
+    private Token nextToken(TokenStream tokens) throws TokenStreamException {
+        Token token = pushedBack;
+        if (token != null) {
+            pushedBack = null;
+            return token;
+        }
+        do {
+            token = tokens.nextToken();
+        } while (token.getType() == GroovyTokenTypes.NLS);
+        return token;
+    }
+
+    private static boolean isMemberAccess(int type) {
+        return type == GroovyTokenTypes.DOT
+                || type == GroovyTokenTypes.OPTIONAL_DOT
+                || type == GroovyTokenTypes.SPREAD_DOT
+                || type == GroovyTokenTypes.MEMBER_POINTER;
+    }
+
+}
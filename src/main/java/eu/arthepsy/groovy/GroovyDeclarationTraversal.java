@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import org.codehaus.groovy.antlr.GroovySourceAST;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+import org.codehaus.groovy.antlr.treewalker.TraversalHelper;
+import org.codehaus.groovy.antlr.treewalker.Visitor;
+
+/**
+ * Traversal that only walks the parts of the AST where type declarations can
+ * appear: the package definition, type definitions and their object blocks.
+ * Method bodies, field initializers and script statements are skipped unless
+ * local class scanning is requested, and imports unless asked for.
+ * <p>
+ * Unlike {@link org.codehaus.groovy.antlr.treewalker.SourceCodeTraversal} it
+ * does not track unvisited nodes, and every visited node gets its opening
+ * visit before and its closing visit after its children.
+ */
+class GroovyDeclarationTraversal extends TraversalHelper {
+    private final boolean localClassScan;
+    private final boolean visitImports;
+
+    public GroovyDeclarationTraversal(Visitor visitor, boolean localClassScan) {
+        this(visitor, localClassScan, false);
+    }
+
+    public GroovyDeclarationTraversal(Visitor visitor, boolean localClassScan, boolean visitImports) {
+        super(visitor);
+        this.localClassScan = localClassScan;
+        this.visitImports = visitImports;
+    }
+
+    @Override
+    protected void accept(GroovySourceAST t) {
+        if (t == null) {
+            return;
+        }
+        switch (t.getType()) {
+            case GroovyTokenTypes.PACKAGE_DEF:
+                visitLeaf(t);
+                break;
+            case GroovyTokenTypes.IMPORT:
+            case GroovyTokenTypes.STATIC_IMPORT:
+                if (visitImports) {
+                    visitLeaf(t);
+                }
+                break;
+            case GroovyTokenTypes.CLASS_DEF:
+            case GroovyTokenTypes.INTERFACE_DEF:
+            case GroovyTokenTypes.TRAIT_DEF:
+            case GroovyTokenTypes.ENUM_DEF:
+            case GroovyTokenTypes.ANNOTATION_DEF:
+                visitTypeDef(t);
+                break;
+            case GroovyTokenTypes.OBJBLOCK:
+                visitWithChildren(t);
+                break;
+            default:
+                if (localClassScan) {
+                    visitWithChildren(t);
+                }
+                break;
+        }
+    }
+
+    private void visitLeaf(GroovySourceAST t) {
+        push(t);
+        openingVisit(t);
+        closingVisit(t);
+        pop();
+    }
+
+    private void visitTypeDef(GroovySourceAST t) {
+        push(t);
+        openingVisit(t);
+        if (localClassScan) {
+            acceptChildren(t);
+        } else {
+            accept(t.childOfType(GroovyTokenTypes.OBJBLOCK));
+        }
+        closingVisit(t);
+        pop();
+    }
+
+    private void visitWithChildren(GroovySourceAST t) {
+        push(t);
+        openingVisit(t);
+        acceptChildren(t);
+        closingVisit(t);
+        pop();
+    }
+
+}
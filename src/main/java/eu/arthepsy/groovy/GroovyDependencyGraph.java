@@ -0,0 +1,518 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * File level dependency graph built from parse results that carry imports
+ * and type references, see {@link GroovyClassParser#setCollectImports(boolean)}
+ * and {@link GroovyClassParser#setCollectTypeReferences(boolean)}.
+ * <p>
+ * Files and class paths are numbered, and edges are kept in both directions
+ * as plain {@code int} arrays per file, so the files affected by a change
+ * are found by a breadth-first walk over dependents without allocating per
+ * visited file. Results can be fed one at a time, e.g. as the parser's
+ * listener; replacing one file only resolves that file again, plus the files
+ * whose references could bind to a class it added or removed.
+ * <p>
+ * Names are resolved the way the compiler would look them up, minus
+ * inheritance: explicit imports, the file's own package, star imports, then
+ * the name taken as fully qualified. A name that matches no source file, for
+ * example a JDK class, adds no edge.
+ */
+public final class GroovyDependencyGraph implements GroovyFileListener {
+    private static final int[] NO_IDS = new int[0];
+    private static final int NO_FILE = -1;
+    private static final int GROUP_END = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> fileIds = new HashMap<String, Integer>();
+    private final Map<String, Integer> classIds = new HashMap<String, Integer>();
+
+    private String[] filePaths = new String[INITIAL_CAPACITY];
+    private int[][] declaredClasses = new int[INITIAL_CAPACITY][];
+    /** Candidate class ids per reference, each group ending in {@link #GROUP_END}. */
+    private int[][] candidates = new int[INITIAL_CAPACITY][];
+    private int[][] dependencies = new int[INITIAL_CAPACITY][];
+    private int[][] dependents = new int[INITIAL_CAPACITY][];
+    private int[] dependentCounts = new int[INITIAL_CAPACITY];
+    private int[] fileMarks = new int[INITIAL_CAPACITY];
+    private int fileMark;
+    private int fileLimit;
+    private int[] freeFiles = new int[INITIAL_CAPACITY];
+    private int freeFileCount;
+
+    private String[] classPaths = new String[INITIAL_CAPACITY];
+    /** The declarer references bind to: the file that declared the class last and still does. */
+    private int[] classFiles = new int[INITIAL_CAPACITY];
+    /** Every file declaring the class, in the order they declared it. */
+    private int[][] declarers = new int[INITIAL_CAPACITY][];
+    private int[] declarerCounts = new int[INITIAL_CAPACITY];
+    /** Files with the class among their candidates, to resolve again when it appears or goes. */
+    private int[][] referrers = new int[INITIAL_CAPACITY][];
+    private int[] referrerCounts = new int[INITIAL_CAPACITY];
+    private int[] classMarks = new int[INITIAL_CAPACITY];
+    private int classMark;
+    private int classCount;
+
+    @Override
+    public void fileParsed(GroovyFileResult result) {
+        update(result);
+    }
+
+    /** Adds a file, or replaces what was known about it. */
+    public synchronized void update(GroovyFileResult result) {
+        Integer existing = fileIds.get(result.getFilePath());
+        int file = (existing != null ? existing : allocateFile(result.getFilePath()));
+        replace(file, getClassIds(result.getClassPaths()), getCandidates(result));
+    }
+
+    /**
+     * Drops a deleted file. Ask for the files it affects before, as its
+     * dependents no longer point to it afterwards.
+     */
+    public synchronized void remove(String filePath) {
+        Integer existing = fileIds.remove(filePath);
+        if (existing == null) {
+            return;
+        }
+        int file = existing;
+        replace(file, NO_IDS, NO_IDS);
+        filePaths[file] = null;
+        if (freeFileCount == freeFiles.length) {
+            freeFiles = Arrays.copyOf(freeFiles, freeFiles.length * 2);
+        }
+        freeFiles[freeFileCount++] = file;
+    }
+
+    public synchronized int size() {
+        return fileIds.size();
+    }
+
+    /** Files the given file refers to directly. */
+    public synchronized Set<String> getDependencies(String filePath) {
+        Integer file = fileIds.get(filePath);
+        Set<String> result = new LinkedHashSet<String>();
+        if (file != null) {
+            for (int dependency : dependencies[file]) {
+                result.add(filePaths[dependency]);
+            }
+        }
+        return result;
+    }
+
+    /** Files that refer to the given file directly. */
+    public synchronized Set<String> getDependents(String filePath) {
+        Integer file = fileIds.get(filePath);
+        Set<String> result = new LinkedHashSet<String>();
+        if (file != null) {
+            for (int i = 0; i < dependentCounts[file]; i++) {
+                result.add(filePaths[dependents[file][i]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The changed files and every file that depends on one of them,
+     * directly or transitively. Unknown paths are returned as given.
+     */
+    public synchronized Set<String> getAffectedFiles(Collection<String> changedFilePaths) {
+        Set<String> result = new LinkedHashSet<String>();
+        int[] queue = getAffected(changedFilePaths, result);
+        for (int file : queue) {
+            result.add(filePaths[file]);
+        }
+        return result;
+    }
+
+    /** Class paths declared by the files {@link #getAffectedFiles(Collection) affected}. */
+    public synchronized Set<String> getAffectedClassPaths(Collection<String> changedFilePaths) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (int file : getAffected(changedFilePaths, new LinkedHashSet<String>())) {
+            for (int classId : declaredClasses[file]) {
+                result.add(classPaths[classId]);
+            }
+        }
+        return result;
+    }
+
+    private int[] getAffected(Collection<String> changedFilePaths, Set<String> unknown) {
+        int[] queue = new int[fileLimit];
+        int tail = 0;
+        nextFileMark();
+        for (String filePath : changedFilePaths) {
+            Integer file = fileIds.get(filePath);
+            if (file == null) {
+                unknown.add(filePath);
+            } else if (fileMarks[file] != fileMark) {
+                fileMarks[file] = fileMark;
+                queue[tail++] = file;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int file = queue[head];
+            int[] fileDependents = dependents[file];
+            for (int i = 0; i < dependentCounts[file]; i++) {
+                int dependent = fileDependents[i];
+                if (fileMarks[dependent] != fileMark) {
+                    fileMarks[dependent] = fileMark;
+                    queue[tail++] = dependent;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    private void replace(int file, int[] declared, int[] fileCandidates) {
+        int[] oldDeclared = declaredClasses[file];
+        nextClassMark();
+        for (int classId : candidates[file]) {
+            if (classId != GROUP_END && classMarks[classId] != classMark) {
+                classMarks[classId] = classMark;
+                removeValue(referrers, referrerCounts, classId, file);
+            }
+        }
+        for (int classId : oldDeclared) {
+            removeValue(declarers, declarerCounts, classId, file);
+        }
+        for (int classId : declared) {
+            declarers[classId] = append(declarers[classId], declarerCounts[classId]++, file);
+        }
+        for (int classId : oldDeclared) {
+            if (classFiles[classId] == file) {
+                // another file declaring the same class takes over
+                int count = declarerCounts[classId];
+                classFiles[classId] = (count > 0 ? declarers[classId][count - 1] : NO_FILE);
+            }
+        }
+        for (int classId : declared) {
+            classFiles[classId] = file;
+        }
+        declaredClasses[file] = declared;
+        candidates[file] = fileCandidates;
+        nextClassMark();
+        for (int classId : fileCandidates) {
+            if (classId != GROUP_END && classMarks[classId] != classMark) {
+                classMarks[classId] = classMark;
+                referrers[classId] = append(referrers[classId], referrerCounts[classId]++, file);
+            }
+        }
+
+        // classes in only one of the old and new declarations may change how others resolve
+        int[] changed = symmetricDifference(oldDeclared, declared);
+        int[] toResolve = new int[] { file };
+        int resolveCount = 1;
+        nextFileMark();
+        fileMarks[file] = fileMark;
+        for (int classId : changed) {
+            for (int i = 0; i < referrerCounts[classId]; i++) {
+                int referrer = referrers[classId][i];
+                if (fileMarks[referrer] != fileMark) {
+                    fileMarks[referrer] = fileMark;
+                    toResolve = append(toResolve, resolveCount++, referrer);
+                }
+            }
+        }
+        for (int i = 0; i < resolveCount; i++) {
+            resolve(toResolve[i]);
+        }
+    }
+
+    private int[] symmetricDifference(int[] oldIds, int[] newIds) {
+        int[] result = NO_IDS;
+        int count = 0;
+        nextClassMark();
+        for (int classId : newIds) {
+            classMarks[classId] = classMark;
+        }
+        for (int classId : oldIds) {
+            if (classMarks[classId] != classMark) {
+                result = append(result, count++, classId);
+            }
+        }
+        nextClassMark();
+        for (int classId : oldIds) {
+            classMarks[classId] = classMark;
+        }
+        for (int classId : newIds) {
+            if (classMarks[classId] != classMark) {
+                result = append(result, count++, classId);
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Binds every reference of the file to the first candidate some file
+     * declares, and rewires the edges in both directions.
+     */
+    private void resolve(int file) {
+        int[] resolved = NO_IDS;
+        int count = 0;
+        nextFileMark();
+        fileMarks[file] = fileMark;
+        int[] fileCandidates = candidates[file];
+        boolean bound = false;
+        for (int classId : fileCandidates) {
+            if (classId == GROUP_END) {
+                bound = false;
+            } else if (!bound && classFiles[classId] != NO_FILE) {
+                bound = true;
+                int target = classFiles[classId];
+                if (fileMarks[target] != fileMark) {
+                    fileMarks[target] = fileMark;
+                    resolved = append(resolved, count++, target);
+                }
+            }
+        }
+        for (int dependency : dependencies[file]) {
+            removeValue(dependents, dependentCounts, dependency, file);
+        }
+        int[] fileDependencies = Arrays.copyOf(resolved, count);
+        for (int dependency : fileDependencies) {
+            dependents[dependency] = append(dependents[dependency], dependentCounts[dependency]++, file);
+        }
+        dependencies[file] = fileDependencies;
+    }
+
+    private int[] getCandidates(GroovyFileResult result) {
+        String packagePath = result.getPackagePath();
+        String packagePrefix = (packagePath != null && !packagePath.isEmpty() ? packagePath + "." : "");
+        Map<String, String> importedNames = new HashMap<String, String>();
+        List<String> starPrefixes = new ArrayList<String>();
+        Set<String> references = new LinkedHashSet<String>();
+        for (GroovyImport groovyImport : result.getImports()) {
+            String name = groovyImport.getName();
+            if (groovyImport.isStar()) {
+                if (!groovyImport.isStatic()) {
+                    starPrefixes.add(name + ".");
+                }
+                starPrefixes.add(name + "$");
+                continue;
+            }
+            int lastDot = name.lastIndexOf('.');
+            if (groovyImport.isStatic()) {
+                // the member's class is the dependency
+                references.add(lastDot > 0 ? name.substring(0, lastDot) : name);
+            } else {
+                String simpleName = (groovyImport.getAlias() != null ? groovyImport.getAlias()
+                        : name.substring(lastDot + 1));
+                importedNames.put(simpleName, name);
+                references.add(name);
+            }
+        }
+        references.addAll(result.getTypeReferences());
+
+        int[] ids = NO_IDS;
+        int count = 0;
+        List<String> names = new ArrayList<String>();
+        for (String reference : references) {
+            String[] segments = splitName(reference);
+            for (int length = segments.length; length > 0; length--) {
+                names.clear();
+                addCandidateNames(segments, length, packagePrefix, importedNames, starPrefixes, names);
+                for (String name : names) {
+                    ids = append(ids, count++, getClassId(name));
+                }
+            }
+            ids = append(ids, count++, GROUP_END);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Class paths the first {@code length} segments of a name could stand
+     * for, most likely first. Shorter prefixes are tried by the caller, so
+     * {@code Foo.CONSTANT} still binds to {@code Foo}.
+     */
+    private static void addCandidateNames(String[] segments, int length, String packagePrefix,
+                                          Map<String, String> importedNames, List<String> starPrefixes,
+                                          List<String> names) {
+        StringBuilder nested = new StringBuilder();
+        for (int i = 1; i < length; i++) {
+            nested.append('$').append(segments[i]);
+        }
+        String imported = importedNames.get(segments[0]);
+        if (imported != null) {
+            for (String classPath : getQualifiedClassPaths(splitName(imported), -1)) {
+                names.add(classPath + nested);
+            }
+            return;
+        }
+        names.add(packagePrefix + segments[0] + nested);
+        for (String starPrefix : starPrefixes) {
+            names.add(starPrefix + segments[0] + nested);
+        }
+        if (length > 1) {
+            names.addAll(getQualifiedClassPaths(segments, length));
+        }
+    }
+
+    private static String[] splitName(String name) {
+        int count = 1;
+        for (int dot = name.indexOf('.'); dot >= 0; dot = name.indexOf('.', dot + 1)) {
+            count++;
+        }
+        String[] segments = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int dot = name.indexOf('.', start);
+            segments[i] = name.substring(start, dot);
+            start = dot + 1;
+        }
+        segments[count - 1] = name.substring(start);
+        return segments;
+    }
+
+    /**
+     * Readings of a dotted name as a class path: all dots, then the last
+     * dots taken as nesting one at a time, e.g. {@code a.B.C} and
+     * {@code a.B$C}.
+     */
+    private static List<String> getQualifiedClassPaths(String[] segments, int length) {
+        if (length < 0) {
+            length = segments.length;
+        }
+        List<String> classPaths = new ArrayList<String>(length);
+        for (int nested = 0; nested < length; nested++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    sb.append(i < length - nested ? '.' : '$');
+                }
+                sb.append(segments[i]);
+            }
+            classPaths.add(sb.toString());
+        }
+        return classPaths;
+    }
+
+    private int[] getClassIds(Collection<String> names) {
+        int[] ids = new int[names.size()];
+        int count = 0;
+        for (String name : names) {
+            ids[count++] = getClassId(name);
+        }
+        return ids;
+    }
+
+    private int getClassId(String classPath) {
+        Integer existing = classIds.get(classPath);
+        if (existing != null) {
+            return existing;
+        }
+        int classId = classCount++;
+        if (classId == classPaths.length) {
+            int capacity = classPaths.length * 2;
+            classPaths = Arrays.copyOf(classPaths, capacity);
+            classFiles = Arrays.copyOf(classFiles, capacity);
+            declarers = Arrays.copyOf(declarers, capacity);
+            declarerCounts = Arrays.copyOf(declarerCounts, capacity);
+            referrers = Arrays.copyOf(referrers, capacity);
+            referrerCounts = Arrays.copyOf(referrerCounts, capacity);
+            classMarks = Arrays.copyOf(classMarks, capacity);
+        }
+        classPaths[classId] = classPath;
+        classFiles[classId] = NO_FILE;
+        declarers[classId] = NO_IDS;
+        referrers[classId] = NO_IDS;
+        classIds.put(classPath, classId);
+        return classId;
+    }
+
+    private int allocateFile(String filePath) {
+        int file;
+        if (freeFileCount > 0) {
+            file = freeFiles[--freeFileCount];
+        } else {
+            file = fileLimit++;
+            if (file == filePaths.length) {
+                int capacity = filePaths.length * 2;
+                filePaths = Arrays.copyOf(filePaths, capacity);
+                declaredClasses = Arrays.copyOf(declaredClasses, capacity);
+                candidates = Arrays.copyOf(candidates, capacity);
+                dependencies = Arrays.copyOf(dependencies, capacity);
+                dependents = Arrays.copyOf(dependents, capacity);
+                dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+                fileMarks = Arrays.copyOf(fileMarks, capacity);
+            }
+        }
+        filePaths[file] = filePath;
+        declaredClasses[file] = NO_IDS;
+        candidates[file] = NO_IDS;
+        dependencies[file] = NO_IDS;
+        dependents[file] = NO_IDS;
+        dependentCounts[file] = 0;
+        fileIds.put(filePath, file);
+        return file;
+    }
+
+    /**
+     * Marks replace visited sets: bumping the mark clears them all at once.
+     */
+    private void nextFileMark() {
+        if (++fileMark == 0) {
+            Arrays.fill(fileMarks, 0);
+            fileMark = 1;
+        }
+    }
+
+    private void nextClassMark() {
+        if (++classMark == 0) {
+            Arrays.fill(classMarks, 0);
+            classMark = 1;
+        }
+    }
+
+    private static int[] append(int[] values, int count, int value) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, count * 2));
+        }
+        values[count] = value;
+        return values;
+    }
+
+    /** Removes one occurrence by moving the last value into its place. */
+    private static void removeValue(int[][] lists, int[] counts, int index, int value) {
+        int[] values = lists[index];
+        int count = counts[index];
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                values[i] = values[count - 1];
+                counts[index] = count - 1;
+                return;
+            }
+        }
+    }
+
+}
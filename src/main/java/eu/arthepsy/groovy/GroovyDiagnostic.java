@@ -0,0 +1,94 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.File;
+
+/**
+ * A problem met while handling one file. The human readable text is only
+ * built when asked for.
+ */
+public final class GroovyDiagnostic {
+    private final GroovyDiagnosticLevel level;
+    private final String filePath;
+    private final GroovyParseStatus status;
+    private final String message;
+    private final Throwable cause;
+
+    public GroovyDiagnostic(GroovyDiagnosticLevel level, String filePath, GroovyParseStatus status,
+                            String message, Throwable cause) {
+        this.level = level;
+        this.filePath = filePath;
+        this.status = status;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    public GroovyDiagnosticLevel getLevel() {
+        return level;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /** Status of the file's result, or null if no result was produced. */
+    public GroovyParseStatus getStatus() {
+        return status;
+    }
+
+    /** The message of the failure or limit, without file name. */
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    public String getText() {
+        String fileName = new File(filePath).getName();
+        if (status == null) {
+            return message + ": " + fileName;
+        }
+        switch (status) {
+            case DEGRADED:
+                return "reduced to file name class path: " + fileName + " [" + message + "]";
+            case RECOGNITION_ERROR:
+                return "ignored due to RecognitionException: " + fileName + " [" + message + "]";
+            case TOKEN_STREAM_ERROR:
+                return "ignored due to TokenStreamException: " + fileName + " [" + message + "]";
+            case RECOVERED:
+                return "recovered from syntax errors: " + fileName + " [" + message + "]";
+            default:
+                return fileName + " [" + message + "]";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return level + " " + getText();
+    }
+
+}
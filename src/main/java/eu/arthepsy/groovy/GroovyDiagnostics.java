@@ -0,0 +1,48 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * Receives the problems {@link GroovyClassParser} runs into. Diagnostics
+ * are only created for levels the sink accepts, so a disabled sink costs
+ * nothing. Implementations must be thread-safe.
+ */
+public interface GroovyDiagnostics {
+
+    GroovyDiagnostics NONE = new GroovyDiagnostics() {
+        @Override
+        public boolean isEnabled(GroovyDiagnosticLevel level) {
+            return false;
+        }
+
+        @Override
+        public void report(GroovyDiagnostic diagnostic) {
+        }
+    };
+
+    boolean isEnabled(GroovyDiagnosticLevel level);
+
+    void report(GroovyDiagnostic diagnostic);
+
+}
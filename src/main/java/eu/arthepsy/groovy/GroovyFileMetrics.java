@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * Measurements taken while handling one file. Phase times of files answered
+ * from the cache are zero.
+ */
+public final class GroovyFileMetrics {
+    private final String filePath;
+    private final GroovyParseStatus status;
+    private final String failureType;
+    private final boolean cached;
+    private final long bytes;
+    private final long tokens;
+    private final long astNodes;
+    private final long[] phaseNanos;
+    private final long totalNanos;
+
+    GroovyFileMetrics(String filePath, GroovyParseStatus status, String failureType, boolean cached,
+                      long bytes, long tokens, long astNodes, long[] phaseNanos, long totalNanos) {
+        this.filePath = filePath;
+        this.status = status;
+        this.failureType = failureType;
+        this.cached = cached;
+        this.bytes = bytes;
+        this.tokens = tokens;
+        this.astNodes = astNodes;
+        this.phaseNanos = phaseNanos.clone();
+        this.totalNanos = totalNanos;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /** Status of the result, or null if the file could not be read. */
+    public GroovyParseStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Simple class name of the exception that made the file fail or degrade,
+     * or null if it did not.
+     */
+    public String getFailureType() {
+        return failureType;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /** Source bytes read, over all passes. */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Tokens read, over all passes. */
+    public long getTokens() {
+        return tokens;
+    }
+
+    /** Nodes of the AST, or 0 if no AST was built. */
+    public long getAstNodes() {
+        return astNodes;
+    }
+
+    public long getPhaseNanos(GroovyParsePhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+}
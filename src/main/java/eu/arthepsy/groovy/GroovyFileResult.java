@@ -0,0 +1,169 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable outcome of handling one source file. Files that could not be
+ * parsed have no type declarations and no file name class path, unless
+ * they were {@link GroovyParseStatus#RECOVERED}.
+ */
+public final class GroovyFileResult {
+    private final String filePath;
+    private final String packagePath;
+    private final String fileNameClassPath;
+    private final List<GroovyTypeDeclaration> typeDeclarations;
+    private final List<GroovyImport> imports;
+    private final Set<String> typeReferences;
+    private final List<String> generatedClassPaths;
+    private final Set<String> classPaths;
+    private final GroovyParseStatus status;
+    private final String message;
+    private final List<GroovySyntaxError> syntaxErrors;
+
+    GroovyFileResult(String filePath, String packagePath, String fileNameClassPath,
+                     List<GroovyTypeDeclaration> typeDeclarations, GroovyParseStatus status, String message) {
+        this(filePath, packagePath, fileNameClassPath, typeDeclarations, Collections.<GroovyImport>emptyList(),
+                Collections.<String>emptySet(), Collections.<String>emptyList(), status, message);
+    }
+
+    GroovyFileResult(String filePath, String packagePath, String fileNameClassPath,
+                     List<GroovyTypeDeclaration> typeDeclarations, List<GroovyImport> imports,
+                     Set<String> typeReferences, List<String> generatedClassPaths,
+                     GroovyParseStatus status, String message) {
+        this(filePath, packagePath, fileNameClassPath, typeDeclarations, imports, typeReferences,
+                generatedClassPaths, status, message, Collections.<GroovySyntaxError>emptyList());
+    }
+
+    GroovyFileResult(String filePath, String packagePath, String fileNameClassPath,
+                     List<GroovyTypeDeclaration> typeDeclarations, List<GroovyImport> imports,
+                     Set<String> typeReferences, List<String> generatedClassPaths,
+                     GroovyParseStatus status, String message, List<GroovySyntaxError> syntaxErrors) {
+        this.filePath = filePath;
+        this.packagePath = packagePath;
+        this.fileNameClassPath = fileNameClassPath;
+        this.typeDeclarations = Collections.unmodifiableList(
+                new ArrayList<GroovyTypeDeclaration>(typeDeclarations));
+        this.imports = (imports.isEmpty() ? Collections.<GroovyImport>emptyList()
+                : Collections.unmodifiableList(new ArrayList<GroovyImport>(imports)));
+        this.typeReferences = (typeReferences.isEmpty() ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<String>(typeReferences)));
+        this.generatedClassPaths = (generatedClassPaths.isEmpty() ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<String>(generatedClassPaths)));
+        Set<String> paths = new LinkedHashSet<String>();
+        for (GroovyTypeDeclaration type : typeDeclarations) {
+            paths.add(type.getClassPath());
+        }
+        if (fileNameClassPath != null) {
+            paths.add(fileNameClassPath);
+        }
+        paths.addAll(generatedClassPaths);
+        this.classPaths = Collections.unmodifiableSet(paths);
+        this.status = status;
+        this.message = message;
+        this.syntaxErrors = (syntaxErrors.isEmpty() ? Collections.<GroovySyntaxError>emptyList()
+                : Collections.unmodifiableList(new ArrayList<GroovySyntaxError>(syntaxErrors)));
+    }
+
+    /** The same result for another file with identical content and file name. */
+    GroovyFileResult withFilePath(String filePath) {
+        if (filePath.equals(this.filePath)) {
+            return this;
+        }
+        return new GroovyFileResult(filePath, packagePath, fileNameClassPath, typeDeclarations, imports,
+                typeReferences, generatedClassPaths, status, message, syntaxErrors);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getPackagePath() {
+        return packagePath;
+    }
+
+    /**
+     * Class path implied by the file name, which is the script class when the
+     * file has statements outside of type declarations.
+     */
+    public String getFileNameClassPath() {
+        return fileNameClassPath;
+    }
+
+    public List<GroovyTypeDeclaration> getTypeDeclarations() {
+        return typeDeclarations;
+    }
+
+    /** Imports in source order; empty unless the parser collects imports. */
+    public List<GroovyImport> getImports() {
+        return imports;
+    }
+
+    /**
+     * Type names the source refers to, as written and unresolved; empty
+     * unless the parser collects type references.
+     */
+    public Set<String> getTypeReferences() {
+        return typeReferences;
+    }
+
+    /**
+     * Predicted binary names of the anonymous classes, closures and trait
+     * helpers the compiler generates for the file; empty unless the parser
+     * collects them.
+     */
+    public List<String> getGeneratedClassPaths() {
+        return generatedClassPaths;
+    }
+
+    /**
+     * Class paths of all declared types followed by the file name class path
+     * and any generated class paths.
+     */
+    public Set<String> getClassPaths() {
+        return classPaths;
+    }
+
+    public GroovyParseStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Spans the parser could not read, in source order; empty unless the
+     * file was {@link GroovyParseStatus#RECOVERED}.
+     */
+    public List<GroovySyntaxError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+}
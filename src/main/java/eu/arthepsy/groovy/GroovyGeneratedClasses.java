@@ -0,0 +1,486 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.collections.AST;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Predicts the binary names of the classes the Groovy compiler generates
+ * besides declared types: anonymous classes, closures and trait helpers.
+ * <p>
+ * Anonymous classes are numbered in parse order with one counter per
+ * top-level class, which a named nested class borrows and gives back, so
+ * {@code Outer$1}, {@code Outer$1$2}, {@code Outer$Nested$3} and again
+ * {@code Outer$3}; enums keep what they take. Types declared inside
+ * anonymous classes are listed here too, as declaration scopes skip them.
+ * <p>
+ * Closures are numbered per generated class in code generation order:
+ * constructors (field initializers first), methods, with {@code <clinit>}
+ * at its first static block or after the methods, then the overloads for
+ * default arguments; closures nested in closures follow once their outer
+ * closure class is generated. Names follow the compiler's pattern, e.g.
+ * {@code Outer$_method_closure1} or
+ * {@code Outer$_Nested_method_closure1_closure4}.
+ * <p>
+ * The rules are those of the Groovy 2.x compiler without AST
+ * transformations; transformations that add or rename methods or classes,
+ * such as Spock's, are not accounted for.
+ */
+final class GroovyGeneratedClasses {
+    private static final String CLINIT = "<clinit>";
+    private static final String TRAIT_HELPER = "$Trait$Helper";
+    private static final String TRAIT_FIELD_HELPER = "$Trait$FieldHelper";
+
+    private final String packagePrefix;
+    private final String scriptClassPath;
+    private final Collection<String> classPaths;
+    private final List<Unit> units = new ArrayList<Unit>();
+    private int anonymousCounter = 1;
+    private int anonymousDepth;
+
+    /** A class whose closures share one counter. */
+    private static final class Unit {
+        final String classPath;
+        final String outermostClassPath;
+        final List<Region> regions = new ArrayList<Region>();
+
+        Unit(String classPath, String outermostClassPath) {
+            this.classPath = classPath;
+            this.outermostClassPath = outermostClassPath;
+        }
+    }
+
+    /** Code compiled into one method, {@code null} named for constructors. */
+    private static final class Region {
+        final String methodName;
+        final AST code;
+
+        Region(String methodName, AST code) {
+            this.methodName = methodName;
+            this.code = code;
+        }
+    }
+
+    private GroovyGeneratedClasses(String packagePath, String scriptClassPath, Collection<String> classPaths) {
+        this.packagePrefix = (packagePath != null && !packagePath.isEmpty() ? packagePath + "." : "");
+        this.scriptClassPath = scriptClassPath;
+        this.classPaths = classPaths;
+    }
+
+    /**
+     * Adds the predicted class paths in the order the compiler generates
+     * them within each class.
+     */
+    public static void collect(AST ast, String packagePath, String scriptClassPath, Collection<String> classPaths) {
+        GroovyGeneratedClasses generated = new GroovyGeneratedClasses(packagePath, scriptClassPath, classPaths);
+        Unit script = new Unit(scriptClassPath, scriptClassPath);
+        List<AST> statements = new ArrayList<AST>();
+        List<AST> methods = new ArrayList<AST>();
+        for (AST node = ast; node != null; node = node.getNextSibling()) {
+            switch (node.getType()) {
+                case GroovyTokenTypes.PACKAGE_DEF:
+                case GroovyTokenTypes.IMPORT:
+                case GroovyTokenTypes.STATIC_IMPORT:
+                    break;
+                case GroovyTokenTypes.METHOD_DEF:
+                    methods.add(node);
+                    generated.walk(node, null, scriptClassPath);
+                    break;
+                default:
+                    if (!isTypeDef(node)) {
+                        statements.add(node);
+                    }
+                    generated.walk(node, null, scriptClassPath);
+                    break;
+            }
+        }
+        if (scriptClassPath != null && (!statements.isEmpty() || !methods.isEmpty())) {
+            for (AST statement : statements) {
+                script.regions.add(new Region("run", statement));
+            }
+            addMethods(script, methods);
+            generated.units.add(0, script);
+        }
+        for (Unit unit : generated.units) {
+            generated.addClosures(unit);
+        }
+    }
+
+    /**
+     * Walks in parse order, numbering anonymous classes and registering a
+     * unit for every class body met.
+     */
+    private void walk(AST node, String classPath, String outermostClassPath) {
+        if (isTypeDef(node)) {
+            String name = getIdent(node);
+            if (name == null) {
+                return;
+            }
+            String typeClassPath = (classPath != null ? classPath + "$" + name : packagePrefix + name);
+            if (anonymousDepth > 0) {
+                // the declaration traversal does not enter anonymous classes
+                classPaths.add(typeClassPath);
+            }
+            int counter = anonymousCounter;
+            addBody(node, typeClassPath, (classPath != null ? outermostClassPath : typeClassPath));
+            if (node.getType() != GroovyTokenTypes.ENUM_DEF) {
+                anonymousCounter = counter;
+            }
+            return;
+        }
+        AST body = null;
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getType() == GroovyTokenTypes.OBJBLOCK && isAnonymousHolder(node)) {
+                body = child;
+            } else if (child.getType() != GroovyTokenTypes.MODIFIERS) {
+                walk(child, classPath, outermostClassPath);
+            }
+        }
+        if (body != null) {
+            String anonymousClassPath = (classPath != null ? classPath : scriptClassPath) + "$" + anonymousCounter++;
+            Unit unit = new Unit(anonymousClassPath, outermostClassPath);
+            units.add(unit);
+            classPaths.add(anonymousClassPath);
+            anonymousDepth++;
+            addMembers(unit, body, anonymousClassPath, outermostClassPath, false);
+            anonymousDepth--;
+        }
+    }
+
+    private void addBody(AST typeDef, String classPath, String outermostClassPath) {
+        AST body = getChild(typeDef, GroovyTokenTypes.OBJBLOCK);
+        if (body == null) {
+            return;
+        }
+        switch (typeDef.getType()) {
+            case GroovyTokenTypes.TRAIT_DEF:
+                Unit helper = new Unit(classPath + TRAIT_HELPER, outermostClassPath);
+                units.add(helper);
+                classPaths.add(helper.classPath);
+                if (getChild(body, GroovyTokenTypes.VARIABLE_DEF) != null) {
+                    classPaths.add(classPath + TRAIT_FIELD_HELPER);
+                }
+                addMembers(helper, body, classPath, outermostClassPath, true);
+                break;
+            case GroovyTokenTypes.INTERFACE_DEF:
+            case GroovyTokenTypes.ANNOTATION_DEF:
+                for (AST child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (isTypeDef(child)) {
+                        walk(child, classPath, outermostClassPath);
+                    }
+                }
+                break;
+            default:
+                Unit unit = new Unit(classPath, outermostClassPath);
+                units.add(unit);
+                addMembers(unit, body, classPath, outermostClassPath, false);
+                break;
+        }
+    }
+
+    /**
+     * Sorts the members of a class body into the methods they end up in,
+     * walking them in source order on the way.
+     */
+    private void addMembers(Unit unit, AST body, String classPath, String outermostClassPath, boolean trait) {
+        List<AST> constructors = new ArrayList<AST>();
+        List<AST> methods = new ArrayList<AST>();
+        List<AST> fieldInitializers = new ArrayList<AST>();
+        List<AST> staticInitializers = new ArrayList<AST>();
+        List<AST> staticBlocks = new ArrayList<AST>();
+        int clinitPosition = -1;
+        for (AST child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getType()) {
+                case GroovyTokenTypes.CTOR_IDENT:
+                    constructors.add(child);
+                    break;
+                case GroovyTokenTypes.METHOD_DEF:
+                    methods.add(child);
+                    break;
+                case GroovyTokenTypes.VARIABLE_DEF:
+                    AST initializer = getChild(child, GroovyTokenTypes.ASSIGN);
+                    if (initializer != null) {
+                        (isStatic(child) ? staticInitializers : fieldInitializers).add(initializer);
+                    }
+                    break;
+                case GroovyTokenTypes.INSTANCE_INIT:
+                    fieldInitializers.add(child);
+                    break;
+                case GroovyTokenTypes.STATIC_INIT:
+                    staticBlocks.add(child);
+                    if (clinitPosition < 0) {
+                        clinitPosition = methods.size();
+                    }
+                    break;
+                case GroovyTokenTypes.ENUM_CONSTANT_DEF:
+                    AST arguments = getChild(child, GroovyTokenTypes.ELIST);
+                    if (arguments != null) {
+                        staticInitializers.add(arguments);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            walk(child, classPath, outermostClassPath);
+        }
+        // field initializers run before instance initializer blocks
+        List<AST> instanceInitializers = new ArrayList<AST>();
+        for (AST initializer : fieldInitializers) {
+            if (initializer.getType() != GroovyTokenTypes.INSTANCE_INIT) {
+                instanceInitializers.add(initializer);
+            }
+        }
+        for (AST initializer : fieldInitializers) {
+            if (initializer.getType() == GroovyTokenTypes.INSTANCE_INIT) {
+                instanceInitializers.add(initializer);
+            }
+        }
+        staticInitializers.addAll(staticBlocks);
+
+        if (trait) {
+            addRegions(unit, "$init$", instanceInitializers);
+            addRegions(unit, "$static$init$", staticInitializers);
+            addMethods(unit, methods);
+            return;
+        }
+        addConstructors(unit, constructors, instanceInitializers);
+        if (clinitPosition >= 0) {
+            addMethods(unit, methods.subList(0, clinitPosition), false);
+            addRegions(unit, CLINIT, staticInitializers);
+            addMethods(unit, methods.subList(clinitPosition, methods.size()), false);
+            addDefaultArguments(unit, methods);
+        } else {
+            addMethods(unit, methods);
+            addRegions(unit, CLINIT, staticInitializers);
+        }
+    }
+
+    /**
+     * Field initializers are compiled into the first constructor that does
+     * not delegate to {@code this(...)}, after its {@code super(...)} call.
+     */
+    private static void addConstructors(Unit unit, List<AST> constructors, List<AST> instanceInitializers) {
+        boolean initialized = false;
+        if (constructors.isEmpty()) {
+            addRegions(unit, null, instanceInitializers);
+            return;
+        }
+        for (AST constructor : constructors) {
+            AST code = getChild(constructor, GroovyTokenTypes.SLIST);
+            AST first = (code != null ? code.getFirstChild() : null);
+            boolean delegates = (first != null && first.getType() == GroovyTokenTypes.CTOR_CALL);
+            if (delegates || initialized) {
+                addRegion(unit, null, code);
+                continue;
+            }
+            initialized = true;
+            AST statement = first;
+            if (first != null && first.getType() == GroovyTokenTypes.SUPER_CTOR_CALL) {
+                addRegion(unit, null, first);
+                statement = first.getNextSibling();
+            }
+            addRegions(unit, null, instanceInitializers);
+            for (; statement != null; statement = statement.getNextSibling()) {
+                addRegion(unit, null, statement);
+            }
+        }
+        addDefaultArguments(unit, constructors);
+    }
+
+    private static void addMethods(Unit unit, List<AST> methods) {
+        addMethods(unit, methods, true);
+    }
+
+    private static void addMethods(Unit unit, List<AST> methods, boolean defaultArguments) {
+        for (AST method : methods) {
+            addRegion(unit, getIdent(method), getChild(method, GroovyTokenTypes.SLIST));
+        }
+        if (defaultArguments) {
+            addDefaultArguments(unit, methods);
+        }
+    }
+
+    /**
+     * Default argument values are compiled into the generated overloads,
+     * which drop the last defaulted parameter first.
+     */
+    private static void addDefaultArguments(Unit unit, List<AST> methods) {
+        for (AST method : methods) {
+            AST parameters = getChild(method, GroovyTokenTypes.PARAMETERS);
+            if (parameters == null) {
+                continue;
+            }
+            List<AST> defaults = new ArrayList<AST>();
+            for (AST parameter = parameters.getFirstChild(); parameter != null;
+                 parameter = parameter.getNextSibling()) {
+                AST value = getChild(parameter, GroovyTokenTypes.ASSIGN);
+                if (value != null) {
+                    defaults.add(0, value);
+                }
+            }
+            String methodName = (method.getType() == GroovyTokenTypes.CTOR_IDENT ? null : getIdent(method));
+            addRegions(unit, methodName, defaults);
+        }
+    }
+
+    private static void addRegions(Unit unit, String methodName, List<AST> code) {
+        for (AST node : code) {
+            addRegion(unit, methodName, node);
+        }
+    }
+
+    private static void addRegion(Unit unit, String methodName, AST code) {
+        if (code != null) {
+            unit.regions.add(new Region(methodName, code));
+        }
+    }
+
+    private void addClosures(Unit unit) {
+        int[] counter = new int[] { 1 };
+        List<AST> closures = new ArrayList<AST>();
+        List<String> names = new ArrayList<String>();
+        for (Region region : unit.regions) {
+            int first = closures.size();
+            findClosures(region.code, closures);
+            for (int i = first; i < closures.size(); i++) {
+                names.add(getClosureClassPath(unit, unit.classPath, region.methodName, counter[0]++));
+            }
+        }
+        addClosures(unit, closures, names, counter);
+    }
+
+    /**
+     * Each closure class is generated before moving on to the next one, and
+     * names its own closures as it goes.
+     */
+    private void addClosures(Unit unit, List<AST> closures, List<String> names, int[] counter) {
+        for (int i = 0; i < closures.size(); i++) {
+            classPaths.add(names.get(i));
+        }
+        for (int i = 0; i < closures.size(); i++) {
+            List<AST> nested = new ArrayList<AST>();
+            for (AST child = closures.get(i).getFirstChild(); child != null; child = child.getNextSibling()) {
+                findClosures(child, nested);
+            }
+            List<String> nestedNames = new ArrayList<String>(nested.size());
+            for (int j = 0; j < nested.size(); j++) {
+                nestedNames.add(getClosureClassPath(unit, names.get(i), null, counter[0]++));
+            }
+            addClosures(unit, nested, nestedNames, counter);
+        }
+    }
+
+    /**
+     * Closures directly in the given code, leaving out those inside other
+     * closures and inside class bodies.
+     */
+    private static void findClosures(AST node, List<AST> closures) {
+        switch (node.getType()) {
+            case GroovyTokenTypes.CLOSABLE_BLOCK:
+                closures.add(node);
+                return;
+            case GroovyTokenTypes.OBJBLOCK:
+            case GroovyTokenTypes.MODIFIERS:
+            case GroovyTokenTypes.ANNOTATIONS:
+                return;
+            default:
+                if (isTypeDef(node)) {
+                    return;
+                }
+                break;
+        }
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            findClosures(child, closures);
+        }
+    }
+
+    /**
+     * The compiler's closure naming: the outermost class, then the class the
+     * closure is in unless that is the outermost one, then the method.
+     * Closures in closures take the name of the outer closure instead.
+     */
+    private String getClosureClassPath(Unit unit, String classPath, String methodName, int index) {
+        String className = classPath.substring(packagePrefix.length());
+        String outermostName = unit.outermostClassPath.substring(packagePrefix.length());
+        StringBuilder sb = new StringBuilder(unit.outermostClassPath).append("$_");
+        if (!className.equals(outermostName)) {
+            String classPart = className.substring(className.lastIndexOf('$') + 1);
+            if (classPart.startsWith("_")) {
+                classPart = classPart.substring(1);
+            }
+            sb.append(classPart).append('_');
+        }
+        if (methodName != null && classPath.equals(unit.classPath)) {
+            sb.append(methodName.replace('<', '_').replace('>', '_').replace(' ', '_')).append('_');
+        }
+        return sb.append("closure").append(index).toString();
+    }
+
+    private static boolean isTypeDef(AST node) {
+        switch (node.getType()) {
+            case GroovyTokenTypes.CLASS_DEF:
+            case GroovyTokenTypes.INTERFACE_DEF:
+            case GroovyTokenTypes.TRAIT_DEF:
+            case GroovyTokenTypes.ENUM_DEF:
+            case GroovyTokenTypes.ANNOTATION_DEF:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Anonymous class bodies hang off {@code new} and enum constants. */
+    private static boolean isAnonymousHolder(AST node) {
+        return node.getType() == GroovyTokenTypes.LITERAL_new
+                || node.getType() == GroovyTokenTypes.ENUM_CONSTANT_DEF;
+    }
+
+    private static boolean isStatic(AST variableDef) {
+        AST modifiers = getChild(variableDef, GroovyTokenTypes.MODIFIERS);
+        return modifiers != null && getChild(modifiers, GroovyTokenTypes.LITERAL_static) != null;
+    }
+
+    private static String getIdent(AST node) {
+        AST ident = getChild(node, GroovyTokenTypes.IDENT);
+        if (ident == null) {
+            ident = getChild(node, GroovyTokenTypes.STRING_LITERAL);
+        }
+        return (ident != null ? ident.getText() : null);
+    }
+
+    private static AST getChild(AST node, int type) {
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getType() == type) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,691 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read-only view of a local git object database: loose objects, packs with
+ * version 2 indexes and their deltas, loose and packed refs. Only the local
+ * files are read; nothing is written and nothing goes over the network.
+ * <p>
+ * A repository may be shared by parsers and threads, as pack files are read
+ * with positional reads only.
+ */
+public final class GroovyGitRepository implements Closeable {
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final int ID_LENGTH = 20;
+    private static final int MAX_SYMBOLIC_REFS = 5;
+    private static final int OBJ_COMMIT = 1;
+    private static final int OBJ_TREE = 2;
+    private static final int OBJ_BLOB = 3;
+    private static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+    private static final String[] OBJECT_TYPES = { null, "commit", "tree", "blob", "tag" };
+    private static final String[] REF_PREFIXES = { "", "refs/", "refs/tags/", "refs/heads/", "refs/remotes/" };
+
+    private final Path gitDir;
+    private final Path commonDir;
+    private final List<Path> objectDirs;
+    private final List<Pack> packs;
+
+    private GroovyGitRepository(Path gitDir, Path commonDir, List<Path> objectDirs, List<Pack> packs) {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.objectDirs = objectDirs;
+        this.packs = packs;
+    }
+
+    /**
+     * Opens the repository of a work tree, a linked work tree or a bare
+     * repository. Packs added after opening are not seen.
+     */
+    public static GroovyGitRepository open(Path path) throws IOException {
+        Path gitDir = path.resolve(".git");
+        if (Files.isRegularFile(gitDir)) {
+            gitDir = path.resolve(readFirstLine(gitDir, "gitdir: "));
+        } else if (!Files.isDirectory(gitDir)) {
+            gitDir = path;
+        }
+        if (!Files.isRegularFile(gitDir.resolve("HEAD"))) {
+            throw new IOException("Not a git repository: " + path);
+        }
+        Path commonDir = gitDir;
+        if (Files.isRegularFile(gitDir.resolve("commondir"))) {
+            commonDir = gitDir.resolve(readFirstLine(gitDir.resolve("commondir"), "")).normalize();
+        }
+        List<Path> objectDirs = new ArrayList<Path>();
+        objectDirs.add(commonDir.resolve("objects"));
+        Path alternates = commonDir.resolve("objects/info/alternates");
+        if (Files.isRegularFile(alternates)) {
+            for (String line : Files.readAllLines(alternates, GroovySourceInput.UTF_8)) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    objectDirs.add(commonDir.resolve("objects").resolve(line).normalize());
+                }
+            }
+        }
+        List<Pack> packs = new ArrayList<Pack>();
+        try {
+            for (Path objectDir : objectDirs) {
+                Path packDir = objectDir.resolve("pack");
+                if (!Files.isDirectory(packDir)) {
+                    continue;
+                }
+                DirectoryStream<Path> indexes = Files.newDirectoryStream(packDir, "pack-*.idx");
+                try {
+                    for (Path index : indexes) {
+                        String name = index.getFileName().toString();
+                        Path packFile = packDir.resolve(name.substring(0, name.length() - 4) + ".pack");
+                        if (Files.isRegularFile(packFile)) {
+                            packs.add(new Pack(index, packFile));
+                        }
+                    }
+                } finally {
+                    indexes.close();
+                }
+            }
+        } catch (IOException e) {
+            closePacks(packs);
+            throw e;
+        }
+        return new GroovyGitRepository(gitDir, commonDir, objectDirs, packs);
+    }
+
+    public Path getGitDir() {
+        return gitDir;
+    }
+
+    /**
+     * Resolves a full object id, {@code HEAD}, or a ref name such as
+     * {@code v1.0}, {@code master} or {@code refs/tags/v1.0} to an object id.
+     * Abbreviated ids and revision expressions are not supported.
+     */
+    public String resolve(String revision) throws IOException {
+        if (isObjectId(revision)) {
+            return revision.toLowerCase();
+        }
+        if (!revision.contains("..") && !revision.startsWith("/")) {
+            for (String prefix : REF_PREFIXES) {
+                String id = readRef(prefix + revision, 0);
+                if (id != null) {
+                    return id;
+                }
+            }
+        }
+        throw new IOException("Unknown revision: " + revision);
+    }
+
+    /**
+     * Lists the regular files of a revision whose names end with the given
+     * suffix, as paths within the tree mapped to blob ids, in tree order.
+     * Tags and commits are peeled to their tree.
+     */
+    public Map<String, String> listFiles(String revision, String suffix) throws IOException {
+        String id = resolve(revision);
+        GitObject object = readObject(id);
+        while (object.type != OBJ_TREE) {
+            if (object.type == OBJ_COMMIT) {
+                id = getHeader(object, "tree ");
+            } else if (object.type == OBJ_TAG) {
+                id = getHeader(object, "object ");
+            } else {
+                throw new IOException(revision + " does not name a tree");
+            }
+            object = readObject(id);
+        }
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        listFiles(object, "", suffix, files);
+        return files;
+    }
+
+    /** Reads the content of a blob. */
+    public byte[] readBlob(String id) throws IOException {
+        GitObject object = readObject(id);
+        if (object.type != OBJ_BLOB) {
+            throw new IOException(id + " is a " + OBJECT_TYPES[object.type] + ", not a blob");
+        }
+        return object.data;
+    }
+
+    /** A source that reads the blob when first opened and keeps it for further passes. */
+    GroovySource getBlobSource(final String id) {
+        return new GroovySource() {
+            private GroovySource bytes;
+
+            private GroovySource load() throws IOException {
+                if (bytes == null) {
+                    bytes = GroovySource.of(ByteBuffer.wrap(readBlob(id)), GroovySourceInput.UTF_8);
+                }
+                return bytes;
+            }
+
+            @Override
+            long size() throws IOException {
+                return load().size();
+            }
+
+            @Override
+            Reader open(GroovyParsingContext context, MessageDigest digest) throws IOException {
+                return load().open(context, digest);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        closePacks(packs);
+    }
+
+    private static void closePacks(List<Pack> packs) throws IOException {
+        IOException failure = null;
+        for (Pack pack : packs) {
+            try {
+                pack.channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void listFiles(GitObject tree, String prefix, String suffix, Map<String, String> files)
+            throws IOException {
+        byte[] data = tree.data;
+        int position = 0;
+        while (position < data.length) {
+            int space = indexOf(data, (byte) ' ', position);
+            int nul = indexOf(data, (byte) 0, space);
+            if (space < 0 || nul < 0 || nul + 1 + ID_LENGTH > data.length) {
+                throw new IOException("Corrupt tree object");
+            }
+            String mode = new String(data, position, space - position, US_ASCII);
+            String name = new String(data, space + 1, nul - space - 1, GroovySourceInput.UTF_8);
+            String id = toHex(data, nul + 1);
+            position = nul + 1 + ID_LENGTH;
+            if (mode.equals("40000")) {
+                GitObject subtree = readObject(id);
+                if (subtree.type != OBJ_TREE) {
+                    throw new IOException("Corrupt tree entry " + prefix + name);
+                }
+                listFiles(subtree, prefix + name + "/", suffix, files);
+            } else if (mode.startsWith("100") && name.endsWith(suffix)) {
+                files.put(prefix + name, id);
+            }
+        }
+    }
+
+    private String readRef(String name, int depth) throws IOException {
+        Path file = (name.startsWith("refs/") ? commonDir : gitDir).resolve(name);
+        List<String> lines = (Files.isRegularFile(file) ? Files.readAllLines(file, GroovySourceInput.UTF_8)
+                : Collections.<String>emptyList());
+        if (!lines.isEmpty()) {
+            String value = lines.get(0).trim();
+            if (value.startsWith("ref: ")) {
+                if (depth >= MAX_SYMBOLIC_REFS) {
+                    throw new IOException("Too many levels of symbolic refs: " + name);
+                }
+                return readRef(value.substring(5).trim(), depth + 1);
+            }
+            if (isObjectId(value)) {
+                return value.toLowerCase();
+            }
+        }
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (name.startsWith("refs/") && Files.isRegularFile(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs, GroovySourceInput.UTF_8)) {
+                if (line.length() == 2 * ID_LENGTH + 1 + name.length() && line.endsWith(name)
+                        && line.charAt(2 * ID_LENGTH) == ' ' && isObjectId(line.substring(0, 2 * ID_LENGTH))) {
+                    return line.substring(0, 2 * ID_LENGTH).toLowerCase();
+                }
+            }
+        }
+        return null;
+    }
+
+    private GitObject readObject(String id) throws IOException {
+        if (!isObjectId(id)) {
+            throw new IOException("Invalid object id: " + id);
+        }
+        byte[] rawId = fromHex(id);
+        for (Pack pack : packs) {
+            long offset = pack.find(rawId);
+            if (offset >= 0) {
+                return readPacked(pack, offset);
+            }
+        }
+        for (Path objectDir : objectDirs) {
+            Path file = objectDir.resolve(id.substring(0, 2)).resolve(id.substring(2));
+            if (Files.isRegularFile(file)) {
+                return readLoose(file);
+            }
+        }
+        throw new IOException("Missing object " + id);
+    }
+
+    private static GitObject readLoose(Path file) throws IOException {
+        byte[] data;
+        InputStream in = new InflaterInputStream(Files.newInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[GroovySourceInput.BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+            data = out.toByteArray();
+        } finally {
+            in.close();
+        }
+        int space = indexOf(data, (byte) ' ', 0);
+        int nul = indexOf(data, (byte) 0, 0);
+        if (space < 0 || nul < space) {
+            throw new IOException("Corrupt loose object " + file);
+        }
+        String typeName = new String(data, 0, space, US_ASCII);
+        int type = 0;
+        for (int i = 1; i < OBJECT_TYPES.length; i++) {
+            if (OBJECT_TYPES[i].equals(typeName)) {
+                type = i;
+            }
+        }
+        long size = parseSize(data, space + 1, nul);
+        if (type == 0 || size != data.length - nul - 1) {
+            throw new IOException("Corrupt loose object " + file);
+        }
+        byte[] content = new byte[data.length - nul - 1];
+        System.arraycopy(data, nul + 1, content, 0, content.length);
+        return new GitObject(type, content);
+    }
+
+    /**
+     * Follows a delta chain down to its base, then applies the deltas back
+     * up. Every object rebuilt on the way is remembered, as neighbouring
+     * objects tend to share their bases.
+     */
+    private GitObject readPacked(Pack pack, long offset) throws IOException {
+        List<byte[]> deltas = new ArrayList<byte[]>();
+        List<Long> offsets = new ArrayList<Long>();
+        GitObject object;
+        long position = offset;
+        while (true) {
+            object = pack.getCached(position);
+            if (object != null) {
+                break;
+            }
+            byte[] header = pack.read(position, 32);
+            int index = 0;
+            int c = header[index++] & 0xff;
+            int type = (c >> 4) & 7;
+            long size = c & 15;
+            int shift = 4;
+            while ((c & 0x80) != 0) {
+                c = header[index++] & 0xff;
+                size += (long) (c & 0x7f) << shift;
+                shift += 7;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Object too large at offset " + position + " in " + pack.packFile);
+            }
+            if (type == OBJ_OFS_DELTA) {
+                c = header[index++] & 0xff;
+                long distance = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = header[index++] & 0xff;
+                    distance = ((distance + 1) << 7) | (c & 0x7f);
+                }
+                deltas.add(pack.inflate(position + index, (int) size));
+                offsets.add(position);
+                position -= distance;
+            } else if (type == OBJ_REF_DELTA) {
+                String baseId = toHex(header, index);
+                deltas.add(pack.inflate(position + index + ID_LENGTH, (int) size));
+                offsets.add(position);
+                object = readObject(baseId);
+                break;
+            } else if (type >= OBJ_COMMIT && type <= OBJ_TAG) {
+                object = new GitObject(type, pack.inflate(position + index, (int) size));
+                pack.putCached(position, object);
+                break;
+            } else {
+                throw new IOException("Unknown object type " + type + " at offset " + position + " in "
+                        + pack.packFile);
+            }
+        }
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            object = new GitObject(object.type, applyDelta(object.data, deltas.get(i)));
+            pack.putCached(offsets.get(i), object);
+        }
+        return object;
+    }
+
+    private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] position = { 0 };
+        long baseSize = readVarint(delta, position);
+        long resultSize = readVarint(delta, position);
+        if (baseSize != base.length || resultSize > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt delta");
+        }
+        byte[] result = new byte[(int) resultSize];
+        int length = 0;
+        int index = position[0];
+        try {
+            while (index < delta.length) {
+                int command = delta[index++] & 0xff;
+                if ((command & 0x80) != 0) {
+                    long copyOffset = 0;
+                    int copySize = 0;
+                    for (int bit = 0; bit < 4; bit++) {
+                        if ((command & (1 << bit)) != 0) {
+                            copyOffset |= (long) (delta[index++] & 0xff) << (8 * bit);
+                        }
+                    }
+                    for (int bit = 0; bit < 3; bit++) {
+                        if ((command & (0x10 << bit)) != 0) {
+                            copySize |= (delta[index++] & 0xff) << (8 * bit);
+                        }
+                    }
+                    if (copySize == 0) {
+                        copySize = 0x10000;
+                    }
+                    if (copyOffset + copySize > base.length) {
+                        throw new IOException("Corrupt delta");
+                    }
+                    System.arraycopy(base, (int) copyOffset, result, length, copySize);
+                    length += copySize;
+                } else if (command != 0) {
+                    System.arraycopy(delta, index, result, length, command);
+                    index += command;
+                    length += command;
+                } else {
+                    throw new IOException("Corrupt delta");
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt delta", e);
+        }
+        if (length != result.length) {
+            throw new IOException("Corrupt delta");
+        }
+        return result;
+    }
+
+    private static long readVarint(byte[] data, int[] position) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int c;
+        do {
+            if (position[0] >= data.length) {
+                throw new IOException("Corrupt delta");
+            }
+            c = data[position[0]++] & 0xff;
+            value |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return value;
+    }
+
+    private static String getHeader(GitObject object, String name) throws IOException {
+        byte[] data = object.data;
+        int position = 0;
+        while (position < data.length && data[position] != '\n') {
+            int end = indexOf(data, (byte) '\n', position);
+            if (end < 0) {
+                end = data.length;
+            }
+            String line = new String(data, position, end - position, GroovySourceInput.UTF_8);
+            if (line.startsWith(name)) {
+                return line.substring(name.length()).trim();
+            }
+            position = end + 1;
+        }
+        throw new IOException("Missing " + name.trim() + " in " + OBJECT_TYPES[object.type] + " object");
+    }
+
+    private static String readFirstLine(Path file, String prefix) throws IOException {
+        List<String> lines = Files.readAllLines(file, GroovySourceInput.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith(prefix)) {
+            throw new IOException("Unexpected content in " + file);
+        }
+        return lines.get(0).substring(prefix.length()).trim();
+    }
+
+    private static long parseSize(byte[] data, int start, int end) throws IOException {
+        if (start == end) {
+            throw new IOException("Missing object size");
+        }
+        long size = 0;
+        for (int i = start; i < end; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                throw new IOException("Invalid object size");
+            }
+            size = size * 10 + (data[i] - '0');
+        }
+        return size;
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) {
+        if (from < 0) {
+            return -1;
+        }
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isObjectId(String value) {
+        if (value.length() != 2 * ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] fromHex(String id) {
+        byte[] bytes = new byte[ID_LENGTH];
+        for (int i = 0; i < ID_LENGTH; i++) {
+            bytes[i] = (byte) ((Character.digit(id.charAt(2 * i), 16) << 4)
+                    | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] data, int offset) {
+        char[] chars = new char[2 * ID_LENGTH];
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int b = data[offset + i] & 0xff;
+            chars[2 * i] = Character.forDigit(b >> 4, 16);
+            chars[2 * i + 1] = Character.forDigit(b & 15, 16);
+        }
+        return new String(chars);
+    }
+
+    private static final class GitObject {
+        final int type;
+        final byte[] data;
+
+        GitObject(int type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * One pack and its index. The index is memory mapped and searched in
+     * place; objects are inflated from positional reads of the pack.
+     */
+    private static final class Pack {
+        private static final int INDEX_MAGIC = 0xff744f63;
+        private static final int FANOUT_OFFSET = 8;
+        private static final long CACHE_BYTES = 8L * 1024 * 1024;
+
+        final Path packFile;
+        final FileChannel channel;
+        private final MappedByteBuffer index;
+        private final int count;
+        private final Map<Long, GitObject> cache = new LinkedHashMap<Long, GitObject>(16, 0.75f, true);
+        private long cachedBytes;
+
+        Pack(Path indexFile, Path packFile) throws IOException {
+            this.packFile = packFile;
+            FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ);
+            try {
+                index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            } finally {
+                indexChannel.close();
+            }
+            if (index.capacity() < FANOUT_OFFSET + 256 * 4 || index.getInt(0) != INDEX_MAGIC
+                    || index.getInt(4) != 2) {
+                throw new IOException("Unsupported pack index " + indexFile);
+            }
+            count = index.getInt(FANOUT_OFFSET + 255 * 4);
+            channel = FileChannel.open(packFile, StandardOpenOption.READ);
+        }
+
+        /** Offset of the object in the pack, or -1 when it is not in this pack. */
+        long find(byte[] id) {
+            int first = id[0] & 0xff;
+            int low = (first == 0 ? 0 : index.getInt(FANOUT_OFFSET + (first - 1) * 4));
+            int high = index.getInt(FANOUT_OFFSET + first * 4) - 1;
+            int idsOffset = FANOUT_OFFSET + 256 * 4;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = compareId(idsOffset + middle * ID_LENGTH, id);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    int offsetsOffset = idsOffset + count * (ID_LENGTH + 4);
+                    int offset = index.getInt(offsetsOffset + middle * 4);
+                    if (offset >= 0) {
+                        return offset;
+                    }
+                    return index.getLong(offsetsOffset + count * 4 + (offset & 0x7fffffff) * 8);
+                }
+            }
+            return -1;
+        }
+
+        private int compareId(int position, byte[] id) {
+            for (int i = 0; i < ID_LENGTH; i++) {
+                int difference = (index.get(position + i) & 0xff) - (id[i] & 0xff);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return 0;
+        }
+
+        /** Reads up to the given number of bytes; fewer only at the end of the pack. */
+        byte[] read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            return buffer.array();
+        }
+
+        byte[] inflate(long position, int size) throws IOException {
+            byte[] data = new byte[size];
+            Inflater inflater = new Inflater();
+            try {
+                ByteBuffer input = ByteBuffer.allocate(GroovySourceInput.BUFFER_SIZE);
+                int length = 0;
+                while (length < size) {
+                    if (inflater.needsInput()) {
+                        input.clear();
+                        int count = channel.read(input, position);
+                        if (count < 0) {
+                            throw new IOException("Truncated pack " + packFile);
+                        }
+                        position += count;
+                        inflater.setInput(input.array(), 0, count);
+                    }
+                    int count = inflater.inflate(data, length, size - length);
+                    if (count == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                        throw new IOException("Corrupt object in " + packFile);
+                    }
+                    length += count;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt object in " + packFile, e);
+            } finally {
+                inflater.end();
+            }
+            return data;
+        }
+
+        synchronized GitObject getCached(long position) {
+            return cache.get(position);
+        }
+
+        synchronized void putCached(long position, GitObject object) {
+            if (object.data.length > CACHE_BYTES / 4 || cache.containsKey(position)) {
+                return;
+            }
+            cache.put(position, object);
+            cachedBytes += object.data.length;
+            Iterator<GitObject> eldest = cache.values().iterator();
+            while (cachedBytes > CACHE_BYTES && eldest.hasNext()) {
+                cachedBytes -= eldest.next().data.length;
+                eldest.remove();
+            }
+        }
+    }
+
+}
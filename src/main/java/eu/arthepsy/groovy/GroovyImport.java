@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * An import statement as written in the source. The name is the imported
+ * type or member, or for star imports the package or type imported from.
+ */
+public final class GroovyImport {
+    private final String name;
+    private final String alias;
+    private final boolean staticImport;
+    private final boolean star;
+
+    GroovyImport(String name, String alias, boolean staticImport, boolean star) {
+        this.name = name;
+        this.alias = alias;
+        this.staticImport = staticImport;
+        this.star = star;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The name given with {@code as}, or null. */
+    public String getAlias() {
+        return alias;
+    }
+
+    public boolean isStatic() {
+        return staticImport;
+    }
+
+    public boolean isStar() {
+        return star;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GroovyImport)) {
+            return false;
+        }
+        GroovyImport other = (GroovyImport) o;
+        return staticImport == other.staticImport
+                && star == other.star
+                && name.equals(other.name)
+                && (alias == null ? other.alias == null : alias.equals(other.alias));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + (staticImport ? 1 : 0) + (star ? 2 : 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (staticImport) {
+            sb.append("static ");
+        }
+        sb.append(name);
+        if (star) {
+            sb.append(".*");
+        }
+        if (alias != null) {
+            sb.append(" as ").append(alias);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.Token;
+import groovyjarjarantlr.TokenStream;
+import groovyjarjarantlr.TokenStreamException;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+
+/**
+ * Enforces {@link GroovyParseLimits} for one file by watching the tokens
+ * handed to the parser or the declaration scanner.
+ */
+final class GroovyParseGuard {
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final GroovyParseLimits limits;
+    private final long deadline;
+    private int tokens;
+    private int nesting;
+
+    public GroovyParseGuard(GroovyParseLimits limits) {
+        this.limits = limits;
+        long timeout = limits.getTimeoutMillis();
+        deadline = (timeout > 0 ? System.nanoTime() + timeout * 1000000L : 0);
+    }
+
+    public void checkFileSize(long size) throws GroovyParseLimitException {
+        long maxFileSize = limits.getMaxFileSize();
+        if (maxFileSize > 0 && size > maxFileSize) {
+            throw new GroovyParseLimitException("file size " + size + " exceeds " + maxFileSize);
+        }
+    }
+
+    /**
+     * Starts another pass over the same file. The token count and the
+     * deadline carry over, the nesting depth does not.
+     */
+    public void restart() {
+        nesting = 0;
+    }
+
+    /**
+     * Starts the recovery scan of a file the parser rejected. It gets a token
+     * budget of its own, as the parser may have used most of the first one,
+     * while the deadline still carries over.
+     */
+    public void startRecovery() {
+        tokens = 0;
+        nesting = 0;
+    }
+
+    public TokenStream guard(final TokenStream tokenStream) {
+        return new TokenStream() {
+            @Override
+            public Token nextToken() throws TokenStreamException {
+                Token token = tokenStream.nextToken();
+                check(token.getType());
+                return token;
+            }
+        };
+    }
+
+    private void check(int type) throws GroovyParseLimitException {
+        tokens++;
+        int maxTokens = limits.getMaxTokens();
+        if (maxTokens > 0 && tokens > maxTokens) {
+            throw new GroovyParseLimitException("token count exceeds " + maxTokens);
+        }
+        switch (type) {
+            case GroovyTokenTypes.LCURLY:
+            case GroovyTokenTypes.LBRACK:
+            case GroovyTokenTypes.LPAREN:
+                nesting++;
+                int maxNesting = limits.getMaxNesting();
+                if (maxNesting > 0 && nesting > maxNesting) {
+                    throw new GroovyParseLimitException("nesting exceeds " + maxNesting);
+                }
+                break;
+            case GroovyTokenTypes.RCURLY:
+            case GroovyTokenTypes.RBRACK:
+            case GroovyTokenTypes.RPAREN:
+                nesting--;
+                break;
+            default:
+                break;
+        }
+        if (deadline != 0 && tokens % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            throw new GroovyParseLimitException("timeout of " + limits.getTimeoutMillis() + " ms exceeded");
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * Per-file limits for {@link GroovyClassParser}. A file that exceeds any of
+ * them is not parsed further and only gets its file name class path, with
+ * status {@link GroovyParseStatus#DEGRADED}. Zero means unlimited, which is
+ * the default for every limit.
+ */
+public class GroovyParseLimits {
+    private long maxFileSize;
+    private int maxTokens;
+    private int maxNesting;
+    private long timeoutMillis;
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /** Largest file, in bytes, that is parsed at all. */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = requireNotNegative(maxFileSize, "maxFileSize");
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /** Most lexer tokens read from one file, counted over every pass. */
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = (int) requireNotNegative(maxTokens, "maxTokens");
+    }
+
+    public int getMaxNesting() {
+        return maxNesting;
+    }
+
+    /**
+     * Deepest nesting of braces, brackets and parentheses. This bounds the
+     * recursion of the parser, which otherwise ends in a stack overflow.
+     */
+    public void setMaxNesting(int maxNesting) {
+        this.maxNesting = (int) requireNotNegative(maxNesting, "maxNesting");
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Wall-clock time allowed per file. The clock is read once every 64
+     * tokens taken from the lexer, so a file is stopped within that many
+     * tokens after the deadline. Time the parser spends backtracking over
+     * tokens it has already read is not checked, and may overrun it.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = requireNotNegative(timeoutMillis, "timeoutMillis");
+    }
+
+    boolean isUnlimited() {
+        return maxFileSize == 0 && maxTokens == 0 && maxNesting == 0 && timeoutMillis == 0;
+    }
+
+    private static long requireNotNegative(long value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+        return value;
+    }
+
+}
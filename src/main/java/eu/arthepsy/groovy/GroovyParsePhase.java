@@ -0,0 +1,44 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * Phases a file goes through in {@link GroovyClassParser}. Reading and
+ * lexing happen on demand while scanning or parsing; their time is taken
+ * out of {@link #SCAN} and {@link #PARSE}.
+ */
+public enum GroovyParsePhase {
+    /** Reading source bytes from disk. */
+    READ,
+    /** Decoding and tokenizing the source, excluding reads. */
+    LEX,
+    /** Token based declaration scanning, excluding lexing. */
+    SCAN,
+    /** Building the AST, excluding lexing. */
+    PARSE,
+    /** Walking the AST for declarations. */
+    TRAVERSE,
+    /** Building the result, including class path normalization. */
+    NORMALIZE
+}
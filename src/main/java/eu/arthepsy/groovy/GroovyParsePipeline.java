@@ -0,0 +1,409 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses files in three stages joined by bounded queues: reader threads load
+ * sources into memory, parser threads parse them, and the calling thread
+ * publishes the results to the parser's class paths and listener. Reads
+ * that block, as on network file systems, then overlap with parsing instead
+ * of stalling it.
+ * <p>
+ * Full queues hold the stage before them back, so at most the capacity of
+ * the source queue plus one file per reader and parser thread is held in
+ * memory. Files over the parser's size limit are not loaded; they reach
+ * the parser unread and are handled there as usual. With a cache set,
+ * reader threads look files up first, and only misses are read and parsed.
+ * <p>
+ * The parser supplies the options, limits, cache, diagnostics and
+ * instrumentation. Its listener is called from the calling thread only.
+ */
+public class GroovyParsePipeline {
+    private static final int DEFAULT_READER_THREADS = 8;
+    private static final int DEFAULT_SOURCE_QUEUE_CAPACITY = 64;
+    private static final int DEFAULT_RESULT_QUEUE_CAPACITY = 256;
+    private static final LoadedSource END_OF_SOURCES = new LoadedSource(null, null, null, null, null);
+    private static final GroovyFileResult END_OF_RESULTS = new GroovyFileResult("", null, null,
+            Collections.<GroovyTypeDeclaration>emptyList(), GroovyParseStatus.PARSED, null);
+
+    private final GroovyClassParser parser;
+    private int readerThreads = DEFAULT_READER_THREADS;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int sourceQueueCapacity = DEFAULT_SOURCE_QUEUE_CAPACITY;
+    private int resultQueueCapacity = DEFAULT_RESULT_QUEUE_CAPACITY;
+    private volatile List<GroovyPipelineStageMetrics> stageMetrics = Collections.emptyList();
+
+    public GroovyParsePipeline(GroovyClassParser parser) {
+        this.parser = parser;
+    }
+
+    public GroovyClassParser getParser() {
+        return parser;
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    /**
+     * Number of threads reading files. Reads mostly wait on storage, so this
+     * may well exceed the processor count on network file systems.
+     */
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = requirePositive(readerThreads, "reader thread count");
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /** Number of threads parsing; defaults to the available processors. */
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = requirePositive(parserThreads, "parser thread count");
+    }
+
+    public int getSourceQueueCapacity() {
+        return sourceQueueCapacity;
+    }
+
+    /** Number of loaded sources that may wait for a parser thread. */
+    public void setSourceQueueCapacity(int sourceQueueCapacity) {
+        this.sourceQueueCapacity = requirePositive(sourceQueueCapacity, "source queue capacity");
+    }
+
+    public int getResultQueueCapacity() {
+        return resultQueueCapacity;
+    }
+
+    /** Number of results that may wait to be published. */
+    public void setResultQueueCapacity(int resultQueueCapacity) {
+        this.resultQueueCapacity = requirePositive(resultQueueCapacity, "result queue capacity");
+    }
+
+    /** Metrics of the read, parse and aggregate stages of the last run. */
+    public List<GroovyPipelineStageMetrics> getStageMetrics() {
+        return stageMetrics;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Parses the files and returns once every result has been published.
+     * The first failure, or an interrupt of the calling thread, stops
+     * reading and parsing; it is thrown once the stages have drained, which
+     * takes at most the file each thread is working on.
+     */
+    public void parseAll(Collection<Path> filePaths) throws IOException {
+        final List<Path> paths = new ArrayList<Path>(filePaths);
+        final int readers = Math.max(1, Math.min(readerThreads, paths.size()));
+        final int parsers = parserThreads;
+        final BlockingQueue<LoadedSource> sources = new ArrayBlockingQueue<LoadedSource>(sourceQueueCapacity);
+        final BlockingQueue<GroovyFileResult> results = new ArrayBlockingQueue<GroovyFileResult>(resultQueueCapacity);
+        final Stage read = new Stage("read", readers, 0);
+        final Stage parse = new Stage("parse", parsers, sourceQueueCapacity);
+        final Stage aggregate = new Stage("aggregate", 1, resultQueueCapacity);
+        final AtomicInteger nextPath = new AtomicInteger();
+        final AtomicInteger activeReaders = new AtomicInteger(readers);
+        final AtomicInteger activeParsers = new AtomicInteger(parsers);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        long startNanos = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<Thread>(readers + parsers);
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int index;
+                        while (failure.get() == null && (index = nextPath.getAndIncrement()) < paths.size()) {
+                            long itemStart = System.nanoTime();
+                            LoadedSource loaded = load(paths.get(index));
+                            read.addItem(System.nanoTime() - itemStart);
+                            if (loaded.result != null) {
+                                aggregate.put(results, loaded.result, read);
+                            } else {
+                                parse.put(sources, loaded, read);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        if (activeReaders.decrementAndGet() == 0) {
+                            for (int j = 0; j < parsers; j++) {
+                                putEnd(sources, END_OF_SOURCES);
+                            }
+                        }
+                    }
+                }
+            }, "groovy-read-" + i));
+        }
+        for (int i = 0; i < parsers; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            LoadedSource loaded;
+                            try {
+                                loaded = parse.take(sources);
+                            } catch (InterruptedException e) {
+                                failure.compareAndSet(null, e);
+                                continue;
+                            }
+                            if (loaded == END_OF_SOURCES) {
+                                break;
+                            }
+                            if (failure.get() != null) {
+                                continue;
+                            }
+                            long itemStart = System.nanoTime();
+                            try {
+                                GroovyFileResult result = parser.process(loaded.filePath, loaded.source,
+                                        loaded.cachePath, loaded.attributes, null);
+                                parse.addItem(System.nanoTime() - itemStart);
+                                aggregate.put(results, result, parse);
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            }
+                        }
+                    } finally {
+                        if (activeParsers.decrementAndGet() == 0) {
+                            putEnd(results, END_OF_RESULTS);
+                        }
+                    }
+                }
+            }, "groovy-parse-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            while (true) {
+                GroovyFileResult result;
+                try {
+                    result = aggregate.take(results);
+                } catch (InterruptedException e) {
+                    failure.compareAndSet(null, e);
+                    continue;
+                }
+                if (result == END_OF_RESULTS) {
+                    break;
+                }
+                if (failure.get() != null) {
+                    continue;
+                }
+                long itemStart = System.nanoTime();
+                try {
+                    parser.publish(result);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    aggregate.addItem(System.nanoTime() - itemStart);
+                }
+            }
+        } finally {
+            joinAll(threads);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            stageMetrics = Collections.unmodifiableList(Arrays.asList(read.toMetrics(elapsedNanos),
+                    parse.toMetrics(elapsedNanos), aggregate.toMetrics(elapsedNanos)));
+        }
+        rethrow(failure.get());
+    }
+
+    private LoadedSource load(Path path) throws IOException {
+        String filePath = path.toString();
+        GroovyClassCache cache = parser.getCache();
+        GroovyParseLimits limits = parser.getLimits();
+        BasicFileAttributes attributes = null;
+        if (cache != null || (limits != null && limits.getMaxFileSize() > 0)) {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        Path cachePath = (cache != null ? path : null);
+        if (cache != null) {
+            GroovyFileResult cached = parser.process(filePath, null, cachePath, attributes, null);
+            if (cached != null) {
+                return new LoadedSource(filePath, null, cachePath, attributes, cached);
+            }
+        }
+        GroovySource source;
+        if (limits != null && limits.getMaxFileSize() > 0 && attributes.size() > limits.getMaxFileSize()) {
+            source = GroovySource.of(path);
+        } else {
+            source = GroovySource.of(ByteBuffer.wrap(Files.readAllBytes(path)), GroovySourceInput.UTF_8);
+        }
+        return new LoadedSource(filePath, source, cachePath, attributes, null);
+    }
+
+    /**
+     * Ends a queue for its consumers. Consumers drain their queue until they
+     * see the end, even after a failure or an interrupt, so this cannot
+     * block for long and must not give up.
+     */
+    private static <T> void putEnd(BlockingQueue<T> queue, T end) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(end);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinAll(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("interrupted while parsing");
+            ie.initCause(failure);
+            throw ie;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+
+    private static final class LoadedSource {
+        final String filePath;
+        final GroovySource source;
+        final Path cachePath;
+        final BasicFileAttributes attributes;
+        final GroovyFileResult result;
+
+        LoadedSource(String filePath, GroovySource source, Path cachePath, BasicFileAttributes attributes,
+                     GroovyFileResult result) {
+            this.filePath = filePath;
+            this.source = source;
+            this.cachePath = cachePath;
+            this.attributes = attributes;
+            this.result = result;
+        }
+    }
+
+    private static final class Stage {
+        private final String name;
+        private final int threads;
+        private final int queueCapacity;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong blockedNanos = new AtomicLong();
+        private final AtomicLong depthSum = new AtomicLong();
+        private final AtomicLong depthSamples = new AtomicLong();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+
+        Stage(String name, int threads, int queueCapacity) {
+            this.name = name;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+
+        void addItem(long nanos) {
+            items.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+        }
+
+        /** Queues an item for this stage, charging the wait for room to the producing stage. */
+        <T> void put(BlockingQueue<T> queue, T item, Stage producer) throws InterruptedException {
+            long start = System.nanoTime();
+            queue.put(item);
+            producer.blockedNanos.addAndGet(System.nanoTime() - start);
+            int depth = queue.size();
+            depthSum.addAndGet(depth);
+            depthSamples.incrementAndGet();
+            int max;
+            while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) {
+                // another producer raised the maximum meanwhile
+            }
+        }
+
+        <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            long start = System.nanoTime();
+            T item = queue.take();
+            waitNanos.addAndGet(System.nanoTime() - start);
+            return item;
+        }
+
+        GroovyPipelineStageMetrics toMetrics(long elapsedNanos) {
+            long samples = depthSamples.get();
+            double averageDepth = (samples > 0 ? (double) depthSum.get() / samples : 0);
+            return new GroovyPipelineStageMetrics(name, threads, items.get(), busyNanos.get(), waitNanos.get(),
+                    blockedNanos.get(), queueCapacity, maxDepth.get(), averageDepth, elapsedNanos);
+        }
+    }
+
+}
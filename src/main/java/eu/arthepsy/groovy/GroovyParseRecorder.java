@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.Token;
+import groovyjarjarantlr.TokenStream;
+import groovyjarjarantlr.TokenStreamException;
+import groovyjarjarantlr.collections.AST;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the measurements of the file currently handled on one thread.
+ * Passes over the source are timed as a whole; the time spent inside the
+ * token stream, and in turn inside reads, is moved to the lex and read
+ * phases.
+ */
+final class GroovyParseRecorder {
+    private final long[] phaseNanos = new long[GroovyParsePhase.values().length];
+    private long startNanos;
+    private long bytes;
+    private long tokens;
+    private long astNodes;
+    private long tokenNanos;
+    private long readNanos;
+    private long passStartNanos;
+    private long passTokenNanos;
+    private long passReadNanos;
+    private String failureType;
+
+    public void start() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = 0;
+        }
+        bytes = 0;
+        tokens = 0;
+        astNodes = 0;
+        tokenNanos = 0;
+        readNanos = 0;
+        failureType = null;
+        startNanos = System.nanoTime();
+    }
+
+    public void addRead(long count, long nanos) {
+        bytes += count;
+        readNanos += nanos;
+        phaseNanos[GroovyParsePhase.READ.ordinal()] += nanos;
+    }
+
+    public TokenStream record(final TokenStream tokenStream) {
+        return new TokenStream() {
+            @Override
+            public Token nextToken() throws TokenStreamException {
+                long startNanos = System.nanoTime();
+                try {
+                    return tokenStream.nextToken();
+                } finally {
+                    tokens++;
+                    tokenNanos += System.nanoTime() - startNanos;
+                }
+            }
+        };
+    }
+
+    public void beginPass() {
+        passTokenNanos = tokenNanos;
+        passStartNanos = System.nanoTime();
+        passReadNanos = readNanos;
+    }
+
+    public void endPass(GroovyParsePhase phase) {
+        long elapsed = System.nanoTime() - passStartNanos;
+        long inTokens = tokenNanos - passTokenNanos;
+        long inReads = readNanos - passReadNanos;
+        phaseNanos[GroovyParsePhase.LEX.ordinal()] += Math.max(0, inTokens - inReads);
+        phaseNanos[phase.ordinal()] += Math.max(0, elapsed - inTokens);
+    }
+
+    public void addPhase(GroovyParsePhase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public void countAstNodes(AST ast) {
+        List<AST> pending = new ArrayList<AST>();
+        if (ast != null) {
+            pending.add(ast);
+        }
+        while (!pending.isEmpty()) {
+            for (AST node = pending.remove(pending.size() - 1); node != null; node = node.getNextSibling()) {
+                astNodes++;
+                if (node.getFirstChild() != null) {
+                    pending.add(node.getFirstChild());
+                }
+            }
+        }
+    }
+
+    public void setFailure(Throwable t) {
+        failureType = t.getClass().getSimpleName();
+    }
+
+    public GroovyFileMetrics finish(String filePath, GroovyParseStatus status, boolean cached) {
+        long totalNanos = System.nanoTime() - startNanos;
+        return new GroovyFileMetrics(filePath, status, failureType, cached, bytes, tokens, astNodes,
+                phaseNanos, totalNanos);
+    }
+
+}
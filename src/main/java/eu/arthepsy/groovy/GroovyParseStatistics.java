@@ -0,0 +1,334 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates {@link GroovyFileMetrics} of any number of parsers and threads.
+ * The totals can be registered as an MXBean, or written out as a JSON
+ * summary on demand or periodically.
+ */
+public class GroovyParseStatistics implements GroovyParseInstrumentation, GroovyParseStatisticsMXBean {
+    public static final String DEFAULT_OBJECT_NAME = "eu.arthepsy.groovy:type=GroovyParseStatistics";
+
+    private static final int DEFAULT_SLOWEST_COUNT = 10;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Comparator<GroovyFileMetrics> BY_TOTAL_TIME = new Comparator<GroovyFileMetrics>() {
+        @Override
+        public int compare(GroovyFileMetrics a, GroovyFileMetrics b) {
+            return Long.compare(a.getTotalNanos(), b.getTotalNanos());
+        }
+    };
+
+    private final int slowestCount;
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong cachedFiles = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong astNodes = new AtomicLong();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(GroovyParsePhase.values().length);
+    private final ConcurrentMap<String, AtomicLong> failureCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final PriorityQueue<GroovyFileMetrics> slowest;
+    private volatile long startNanos;
+
+    public GroovyParseStatistics() {
+        this(DEFAULT_SLOWEST_COUNT);
+    }
+
+    /**
+     * @param slowestCount number of slowest files to keep track of
+     */
+    public GroovyParseStatistics(int slowestCount) {
+        if (slowestCount < 0) {
+            throw new IllegalArgumentException("slowest file count must not be negative: " + slowestCount);
+        }
+        this.slowestCount = slowestCount;
+        slowest = new PriorityQueue<GroovyFileMetrics>(Math.max(1, slowestCount), BY_TOTAL_TIME);
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void fileParsed(GroovyFileMetrics metrics) {
+        files.incrementAndGet();
+        if (metrics.isCached()) {
+            cachedFiles.incrementAndGet();
+        }
+        String failureType = metrics.getFailureType();
+        if (failureType != null) {
+            failures.incrementAndGet();
+            AtomicLong count = failureCounts.get(failureType);
+            if (count == null) {
+                AtomicLong created = new AtomicLong();
+                count = failureCounts.putIfAbsent(failureType, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.incrementAndGet();
+        }
+        bytes.addAndGet(metrics.getBytes());
+        tokens.addAndGet(metrics.getTokens());
+        astNodes.addAndGet(metrics.getAstNodes());
+        for (GroovyParsePhase phase : GroovyParsePhase.values()) {
+            long nanos = metrics.getPhaseNanos(phase);
+            if (nanos != 0) {
+                phaseNanos.addAndGet(phase.ordinal(), nanos);
+            }
+        }
+        if (slowestCount > 0) {
+            synchronized (slowest) {
+                if (slowest.size() < slowestCount) {
+                    slowest.add(metrics);
+                } else if (BY_TOTAL_TIME.compare(metrics, slowest.peek()) > 0) {
+                    slowest.poll();
+                    slowest.add(metrics);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getFileCount() {
+        return files.get();
+    }
+
+    @Override
+    public long getCachedFileCount() {
+        return cachedFiles.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : failureCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return tokens.get();
+    }
+
+    @Override
+    public long getAstNodeCount() {
+        return astNodes.get();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return files.get() * 1e9 / elapsed;
+    }
+
+    public long getPhaseNanos(GroovyParsePhase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<String, Long>();
+        for (GroovyParsePhase phase : GroovyParsePhase.values()) {
+            millis.put(phase.name(), TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase)));
+        }
+        return millis;
+    }
+
+    /** Metrics of the slowest files, slowest first. */
+    public List<GroovyFileMetrics> getSlowestFileMetrics() {
+        List<GroovyFileMetrics> metrics;
+        synchronized (slowest) {
+            metrics = new ArrayList<GroovyFileMetrics>(slowest);
+        }
+        Collections.sort(metrics, Collections.reverseOrder(BY_TOTAL_TIME));
+        return metrics;
+    }
+
+    @Override
+    public List<String> getSlowestFiles() {
+        List<String> slowestFiles = new ArrayList<String>();
+        for (GroovyFileMetrics metrics : getSlowestFileMetrics()) {
+            slowestFiles.add(metrics.getFilePath() + ": "
+                    + TimeUnit.NANOSECONDS.toMillis(metrics.getTotalNanos()) + " ms");
+        }
+        return slowestFiles;
+    }
+
+    /**
+     * Clears all totals and restarts the files per second clock. Files
+     * reported concurrently may be split between before and after.
+     */
+    @Override
+    public void reset() {
+        files.set(0);
+        cachedFiles.set(0);
+        failures.set(0);
+        bytes.set(0);
+        tokens.set(0);
+        astNodes.set(0);
+        for (int i = 0; i < phaseNanos.length(); i++) {
+            phaseNanos.set(i, 0);
+        }
+        failureCounts.clear();
+        synchronized (slowest) {
+            slowest.clear();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers with the platform MBean server under
+     * {@link #DEFAULT_OBJECT_NAME}.
+     */
+    public ObjectName register() throws JMException {
+        return register(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DEFAULT_OBJECT_NAME));
+    }
+
+    public ObjectName register(MBeanServer server, ObjectName name) throws JMException {
+        return server.registerMBean(this, name).getObjectName();
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"files\":").append(getFileCount());
+        json.append(",\"cachedFiles\":").append(getCachedFileCount());
+        json.append(",\"failures\":").append(getFailureCount());
+        json.append(",\"failuresByType\":{");
+        appendCounts(json, getFailureCounts());
+        json.append("},\"bytes\":").append(getBytesRead());
+        json.append(",\"tokens\":").append(getTokenCount());
+        json.append(",\"astNodes\":").append(getAstNodeCount());
+        json.append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.2f", getFilesPerSecond()));
+        json.append(",\"phaseMillis\":{");
+        appendCounts(json, getPhaseMillis());
+        json.append("},\"slowestFiles\":[");
+        String separator = "";
+        for (GroovyFileMetrics metrics : getSlowestFileMetrics()) {
+            json.append(separator).append("{\"file\":");
+            GroovyJson.appendString(json, metrics.getFilePath());
+            json.append(",\"millis\":").append(TimeUnit.NANOSECONDS.toMillis(metrics.getTotalNanos()));
+            json.append(",\"status\":");
+            GroovyJson.appendString(json, (metrics.getStatus() != null ? metrics.getStatus().name() : null));
+            json.append('}');
+            separator = ",";
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} to the given file, replacing it atomically
+     * where the file system allows.
+     */
+    public void writeJson(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            OutputStream out = Files.newOutputStream(temp);
+            try {
+                out.write(toJson().getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the JSON summary to the given file at a fixed rate on the given
+     * executor, until the returned future is cancelled. A failed write is
+     * retried on the next run.
+     */
+    public ScheduledFuture<?> scheduleJsonDump(ScheduledExecutorService executor, final Path file,
+                                               long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeJson(file);
+                } catch (IOException e) {
+                    // keep the schedule alive, the next run writes again
+                }
+            }
+        }, period, period, unit);
+    }
+
+    private static void appendCounts(StringBuilder json, Map<String, Long> counts) {
+        String separator = "";
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            json.append(separator);
+            GroovyJson.appendString(json, entry.getKey());
+            json.append(':').append(entry.getValue());
+            separator = ",";
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management view of {@link GroovyParseStatistics}.
+ */
+public interface GroovyParseStatisticsMXBean {
+
+    long getFileCount();
+
+    long getCachedFileCount();
+
+    long getFailureCount();
+
+    /** Failed, degraded and unreadable files by exception simple class name. */
+    Map<String, Long> getFailureCounts();
+
+    long getBytesRead();
+
+    long getTokenCount();
+
+    long getAstNodeCount();
+
+    /** Files handled per second of wall clock time since the last reset. */
+    double getFilesPerSecond();
+
+    /** Total time per {@link GroovyParsePhase}, summed over all threads. */
+    Map<String, Long> getPhaseMillis();
+
+    /** The slowest files, slowest first, as {@code path: millis ms}. */
+    List<String> getSlowestFiles();
+
+    void reset();
+
+}
@@ -0,0 +1,214 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.LexerSharedInputState;
+import groovyjarjarantlr.TokenStream;
+import org.codehaus.groovy.antlr.UnicodeEscapingReader;
+import org.codehaus.groovy.antlr.parser.GroovyLexer;
+import org.codehaus.groovy.antlr.parser.GroovyRecognizer;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+/**
+ * Parsing objects kept per thread and reset between files: the lexer (whose
+ * constructor rebuilds its keyword table every time), the decoding buffers,
+ * the digest, the visitor and the token scanner. {@link GroovyRecognizer}
+ * and {@link UnicodeEscapingReader} keep state that cannot be reset, so they
+ * are still created per file.
+ */
+final class GroovyParsingContext {
+    private static final ThreadLocal<GroovyParsingContext> CONTEXTS = new ThreadLocal<GroovyParsingContext>() {
+        @Override
+        protected GroovyParsingContext initialValue() {
+            return new GroovyParsingContext();
+        }
+    };
+
+    private final ReusableGroovyLexer lexer;
+    private final GroovySourceReader reader;
+    private final GroovyClassVisitor visitor;
+    private final GroovyDeclarationScanner scanner;
+    private MessageDigest digest;
+    private GroovyParseRecorder recorder;
+    private boolean recording;
+    private boolean inUse;
+
+    private GroovyParsingContext() {
+        lexer = new ReusableGroovyLexer();
+        reader = new GroovySourceReader();
+        visitor = new GroovyClassVisitor();
+        scanner = new GroovyDeclarationScanner();
+    }
+
+    /**
+     * Returns the context of the current thread, or a throwaway one if that
+     * is already in use further up the stack.
+     */
+    static GroovyParsingContext acquire() {
+        GroovyParsingContext context = CONTEXTS.get();
+        if (context.inUse) {
+            context = new GroovyParsingContext();
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    void release() {
+        inUse = false;
+        recording = false;
+    }
+
+    /**
+     * Starts measuring the current file; reads and tokens are recorded
+     * until the context is released.
+     */
+    GroovyParseRecorder startRecording() {
+        if (recorder == null) {
+            recorder = new GroovyParseRecorder();
+        }
+        recorder.start();
+        recording = true;
+        return recorder;
+    }
+
+    /** The recorder of the current file, or null if it is not measured. */
+    GroovyParseRecorder getRecorder() {
+        return (recording ? recorder : null);
+    }
+
+    Reader openReader(ReadableByteChannel channel, Charset charset, MessageDigest digest) {
+        reader.reset(channel, charset, digest, getRecorder());
+        return reader;
+    }
+
+    Reader openReader(CharSequence text) {
+        reader.reset(text);
+        return reader;
+    }
+
+    void closeReader() throws IOException {
+        try {
+            reader.drain();
+        } finally {
+            reader.close();
+        }
+    }
+
+    MessageDigest getDigest() {
+        if (digest == null) {
+            digest = GroovyClassCache.newDigest();
+        }
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Returns the lexer reset to the given source. With a guard, the token
+     * stream it plumbs is checked against the guard's limits.
+     */
+    GroovyLexer getLexer(Reader source, GroovyParseGuard guard) {
+        lexer.reset(source, guard, getRecorder());
+        return lexer;
+    }
+
+    GroovyRecognizer getParser(Reader source, GroovyParseGuard guard) {
+        GroovyRecognizer parser = GroovyRecognizer.make(getLexer(source, guard));
+        parser.setSourceBuffer(GroovySourceInput.getSourceBuffer());
+        return parser;
+    }
+
+    GroovyClassVisitor getVisitor(boolean collectImports, boolean collectSupertypes, boolean collectAnnotations) {
+        visitor.reset(collectImports, collectSupertypes, collectAnnotations);
+        return visitor;
+    }
+
+    GroovyDeclarationScanner getScanner(boolean localClassScan) {
+        scanner.reset(localClassScan);
+        return scanner;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 where the JVM does
+     * not expose per-thread allocation counters.
+     */
+    static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static final class ReusableGroovyLexer extends GroovyLexer {
+        private GroovyParseGuard guard;
+        private GroovyParseRecorder recorder;
+
+        private ReusableGroovyLexer() {
+            super(new StringReader(""));
+        }
+
+        @Override
+        public TokenStream plumb() {
+            TokenStream tokenStream = super.plumb();
+            if (guard != null) {
+                tokenStream = guard.guard(tokenStream);
+            }
+            return (recorder != null ? recorder.record(tokenStream) : tokenStream);
+        }
+
+        private void reset(Reader source, GroovyParseGuard guard, GroovyParseRecorder recorder) {
+            this.guard = guard;
+            this.recorder = recorder;
+            if (guard != null) {
+                guard.restart();
+            }
+            UnicodeEscapingReader unicodeReader = new UnicodeEscapingReader(source, GroovySourceInput.getSourceBuffer());
+            unicodeReader.setLexer(this);
+            setInputState(new LexerSharedInputState(unicodeReader));
+            resetText();
+            parenLevel = 0;
+            suppressNewline = 0;
+            stringCtorState = 0;
+            parenLevelStack.clear();
+            lastSigTokenType = GroovyTokenTypes.EOF;
+            parser = null;
+            _returnToken = null;
+            commitToPath = false;
+            traceDepth = 0;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.Locale;
+
+/**
+ * Totals of one {@link GroovyParsePipeline} stage for one run. Queue figures
+ * are those of the queue feeding the stage, sampled whenever an item is
+ * queued; the first stage reads from the file list and has no queue.
+ * <p>
+ * A stage that mostly waits for input is starved by the stage before it,
+ * while a stage that is mostly blocked on output is held back by the stage
+ * after it.
+ */
+public final class GroovyPipelineStageMetrics {
+    private final String name;
+    private final int threads;
+    private final long items;
+    private final long busyNanos;
+    private final long waitNanos;
+    private final long blockedNanos;
+    private final int queueCapacity;
+    private final int maxQueueDepth;
+    private final double averageQueueDepth;
+    private final long elapsedNanos;
+
+    GroovyPipelineStageMetrics(String name, int threads, long items, long busyNanos, long waitNanos,
+                               long blockedNanos, int queueCapacity, int maxQueueDepth, double averageQueueDepth,
+                               long elapsedNanos) {
+        this.name = name;
+        this.threads = threads;
+        this.items = items;
+        this.busyNanos = busyNanos;
+        this.waitNanos = waitNanos;
+        this.blockedNanos = blockedNanos;
+        this.queueCapacity = queueCapacity;
+        this.maxQueueDepth = maxQueueDepth;
+        this.averageQueueDepth = averageQueueDepth;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getItems() {
+        return items;
+    }
+
+    /** Time spent on items, summed over the stage's threads. */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /** Time spent waiting for input, summed over the stage's threads. */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /** Time spent waiting for room in the next stage's queue, summed over the stage's threads. */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public double getAverageQueueDepth() {
+        return averageQueueDepth;
+    }
+
+    /** Wall time of the whole run. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Items per second of wall time. */
+    public double getThroughput() {
+        return (elapsedNanos > 0 ? items * 1e9 / elapsedNanos : 0);
+    }
+
+    /**
+     * One line in a fixed layout, for logs and for comparing runs with
+     * simple text tools.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "stage=%s threads=%d items=%d itemsPerSecond=%.1f queueCapacity=%d queueMax=%d queueAverage=%.1f"
+                        + " busyMillis=%d waitMillis=%d blockedMillis=%d",
+                name, threads, items, getThroughput(), queueCapacity, maxQueueDepth, averageQueueDepth,
+                busyNanos / 1000000, waitNanos / 1000000, blockedNanos / 1000000);
+    }
+
+}
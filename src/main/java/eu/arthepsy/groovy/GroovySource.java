@@ -0,0 +1,171 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Where the text of one source comes from. A source may be opened more than
+ * once, as a file can be scanned and then parsed, so in-memory content is
+ * read from a fresh view every time.
+ */
+abstract class GroovySource {
+
+    /** Size checked against the file size limit, in bytes or characters. */
+    abstract long size() throws IOException;
+
+    abstract Reader open(GroovyParsingContext context, MessageDigest digest) throws IOException;
+
+    static GroovySource of(Path path) {
+        return new FileSource(path);
+    }
+
+    static GroovySource of(ByteBuffer bytes, Charset charset) {
+        return new BytesSource(bytes, charset);
+    }
+
+    static GroovySource of(CharSequence text) {
+        return new TextSource(text);
+    }
+
+    /**
+     * Reads the stream to its end, leaving it open; streams cannot be read
+     * twice, so the content is kept for the passes.
+     */
+    static GroovySource of(InputStream in, Charset charset) throws IOException {
+        byte[] buffer = new byte[GroovySourceInput.BUFFER_SIZE];
+        int length = 0;
+        int count;
+        while ((count = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += count;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return of(ByteBuffer.wrap(buffer, 0, length), charset);
+    }
+
+    private static final class FileSource extends GroovySource {
+        private final Path path;
+
+        FileSource(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        long size() throws IOException {
+            return Files.size(path);
+        }
+
+        @Override
+        Reader open(GroovyParsingContext context, MessageDigest digest) throws IOException {
+            return context.openReader(FileChannel.open(path, StandardOpenOption.READ), GroovySourceInput.UTF_8,
+                    digest);
+        }
+    }
+
+    private static final class BytesSource extends GroovySource {
+        private final ByteBuffer bytes;
+        private final Charset charset;
+
+        BytesSource(ByteBuffer bytes, Charset charset) {
+            this.bytes = bytes.duplicate();
+            this.charset = charset;
+        }
+
+        @Override
+        long size() {
+            return bytes.remaining();
+        }
+
+        @Override
+        Reader open(GroovyParsingContext context, MessageDigest digest) {
+            return context.openReader(new ByteBufferChannel(bytes.duplicate()), charset, digest);
+        }
+    }
+
+    private static final class TextSource extends GroovySource {
+        private final CharSequence text;
+
+        TextSource(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        long size() {
+            return text.length();
+        }
+
+        @Override
+        Reader open(GroovyParsingContext context, MessageDigest digest) {
+            return context.openReader(text);
+        }
+    }
+
+    private static final class ByteBufferChannel implements ReadableByteChannel {
+        private ByteBuffer bytes;
+
+        ByteBufferChannel(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (bytes == null) {
+                throw new IOException("Channel is closed");
+            }
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(dst.remaining(), bytes.remaining());
+            ByteBuffer slice = bytes.slice();
+            slice.limit(count);
+            dst.put(slice);
+            bytes.position(bytes.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return bytes != null;
+        }
+
+        @Override
+        public void close() {
+            bytes = null;
+        }
+    }
+
+}
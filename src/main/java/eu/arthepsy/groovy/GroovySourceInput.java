@@ -0,0 +1,64 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import org.codehaus.groovy.antlr.SourceBuffer;
+import org.codehaus.groovy.antlr.UnicodeEscapingReader;
+import org.codehaus.groovy.antlr.parser.GroovyLexer;
+
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Plumbing between raw source bytes and {@link GroovyLexer}. Sources are
+ * decoded through a fixed-size buffer by {@link GroovySourceReader} and never
+ * held as a whole, and the lexer gets a {@link SourceBuffer} that drops every
+ * character, since nothing here asks the parser for source snippets.
+ */
+final class GroovySourceInput {
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int BUFFER_SIZE = 8192;
+
+    private static final SourceBuffer DISCARDING_SOURCE_BUFFER = new DiscardingSourceBuffer();
+
+    private GroovySourceInput() {}
+
+    static SourceBuffer getSourceBuffer() {
+        return DISCARDING_SOURCE_BUFFER;
+    }
+
+    static GroovyLexer newLexer(Reader reader) {
+        UnicodeEscapingReader unicodeReader = new UnicodeEscapingReader(reader, DISCARDING_SOURCE_BUFFER);
+        GroovyLexer lexer = new GroovyLexer(unicodeReader);
+        unicodeReader.setLexer(lexer);
+        return lexer;
+    }
+
+    private static final class DiscardingSourceBuffer extends SourceBuffer {
+        @Override
+        public void write(int c) {
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+
+/**
+ * Decodes a byte channel through fixed-size buffers that are kept and reused
+ * for the next source. Bytes read are optionally fed to a digest, so a
+ * content hash comes with the parse at no extra pass. Sources already held
+ * as characters are copied through the same buffer without decoding.
+ */
+final class GroovySourceReader extends Reader {
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private CharsetDecoder decoder;
+    private ReadableByteChannel channel;
+    private CharSequence text;
+    private int textPosition;
+    private MessageDigest digest;
+    private GroovyParseRecorder recorder;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    public GroovySourceReader() {
+        bytes = ByteBuffer.allocate(GroovySourceInput.BUFFER_SIZE);
+        chars = CharBuffer.allocate(GroovySourceInput.BUFFER_SIZE);
+    }
+
+    public void reset(ReadableByteChannel channel, Charset charset, MessageDigest digest,
+                      GroovyParseRecorder recorder) {
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            decoder.reset();
+        }
+        this.channel = channel;
+        this.text = null;
+        this.digest = digest;
+        this.recorder = recorder;
+        bytes.clear();
+        chars.clear();
+        chars.flip();
+        endOfInput = false;
+        flushed = false;
+    }
+
+    public void reset(CharSequence text) {
+        this.channel = null;
+        this.text = text;
+        this.textPosition = 0;
+        this.digest = null;
+        this.recorder = null;
+        chars.clear();
+        chars.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get();
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, chars.remaining());
+        chars.get(buffer, offset, count);
+        return count;
+    }
+
+    /**
+     * Reads whatever is left of the channel without decoding it, so that the
+     * digest covers the whole input even when parsing stopped early.
+     */
+    public void drain() throws IOException {
+        if (digest == null) {
+            return;
+        }
+        while (!endOfInput) {
+            bytes.clear();
+            readBytes();
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ReadableByteChannel current = channel;
+        channel = null;
+        text = null;
+        digest = null;
+        recorder = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (text != null) {
+            return fillText();
+        }
+        if (channel == null) {
+            throw new IOException("Reader is closed");
+        }
+        chars.clear();
+        while (!flushed) {
+            if (!endOfInput) {
+                readBytes();
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (result.isOverflow()) {
+                break;
+            }
+            if (endOfInput) {
+                if (decoder.flush(chars).isOverflow()) {
+                    break;
+                }
+                flushed = true;
+            } else if (chars.position() > 0) {
+                break;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    private boolean fillText() {
+        int count = Math.min(chars.capacity(), text.length() - textPosition);
+        chars.clear();
+        if (text instanceof String) {
+            ((String) text).getChars(textPosition, textPosition + count, chars.array(), chars.arrayOffset());
+            chars.position(count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                chars.put(text.charAt(textPosition + i));
+            }
+        }
+        textPosition += count;
+        chars.flip();
+        return count > 0;
+    }
+
+    private void readBytes() throws IOException {
+        int start = bytes.position();
+        long startNanos = (recorder != null ? System.nanoTime() : 0);
+        int count = channel.read(bytes);
+        if (recorder != null) {
+            recorder.addRead(Math.max(count, 0), System.nanoTime() - startNanos);
+        }
+        if (count < 0) {
+            endOfInput = true;
+        } else if (count > 0 && digest != null) {
+            digest.update(bytes.array(), bytes.arrayOffset() + start, count);
+        }
+    }
+
+}
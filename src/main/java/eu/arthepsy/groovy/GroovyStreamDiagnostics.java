@@ -0,0 +1,64 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.PrintStream;
+
+/**
+ * Prints diagnostics one line each. Stack traces of causes are only printed
+ * when {@link GroovyDiagnosticLevel#DEBUG} is enabled.
+ */
+public class GroovyStreamDiagnostics implements GroovyDiagnostics {
+    private final PrintStream out;
+    private final GroovyDiagnosticLevel level;
+
+    /** Prints warnings and errors to standard error. */
+    public GroovyStreamDiagnostics() {
+        this(System.err, GroovyDiagnosticLevel.WARN);
+    }
+
+    public GroovyStreamDiagnostics(PrintStream out, GroovyDiagnosticLevel level) {
+        this.out = out;
+        this.level = level;
+    }
+
+    @Override
+    public boolean isEnabled(GroovyDiagnosticLevel level) {
+        return this.level.includes(level);
+    }
+
+    @Override
+    public void report(GroovyDiagnostic diagnostic) {
+        if (!isEnabled(diagnostic.getLevel())) {
+            return;
+        }
+        synchronized (out) {
+            out.println(diagnostic);
+            if (diagnostic.getCause() != null && isEnabled(GroovyDiagnosticLevel.DEBUG)) {
+                diagnostic.getCause().printStackTrace(out);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+/**
+ * A stretch of source a recovering parse could not make sense of, see
+ * {@link GroovyClassParser#setErrorRecovery(boolean)}. It runs from where the
+ * error was found to where scanning picked up again, which for the parser's
+ * own error is the next top level type declaration or the end of the file.
+ * Lines and columns start at 1, and the end position is exclusive.
+ */
+public final class GroovySyntaxError {
+    private final int line;
+    private final int column;
+    private final int endLine;
+    private final int endColumn;
+    private final String message;
+
+    GroovySyntaxError(int line, int column, int endLine, int endColumn, String message) {
+        this.line = line;
+        this.column = column;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    boolean startsAt(int line, int column) {
+        return this.line == line && this.column == column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GroovySyntaxError)) {
+            return false;
+        }
+        GroovySyntaxError other = (GroovySyntaxError) o;
+        return line == other.line
+                && column == other.column
+                && endLine == other.endLine
+                && endColumn == other.endColumn
+                && (message == null ? other.message == null : message.equals(other.message));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * line + column) + endLine;
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column + "-" + endLine + ":" + endColumn + " " + message;
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A type declared in a source file. Nested types name their enclosing type
+ * and have a depth one greater than it; top level types have depth 0.
+ * <p>
+ * Supertypes and annotations are only filled in when the parser was asked
+ * to collect them, and are names as written in the source, not resolved
+ * against imports.
+ */
+public final class GroovyTypeDeclaration {
+    private final String classPath;
+    private final String name;
+    private final GroovyTypeKind kind;
+    private final String enclosingClassPath;
+    private final int depth;
+    private final String superclass;
+    private final List<String> interfaces;
+    private final List<String> annotations;
+
+    GroovyTypeDeclaration(String classPath, String name, GroovyTypeKind kind,
+                          String enclosingClassPath, int depth) {
+        this(classPath, name, kind, enclosingClassPath, depth, null,
+                Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
+
+    GroovyTypeDeclaration(String classPath, String name, GroovyTypeKind kind,
+                          String enclosingClassPath, int depth, String superclass,
+                          List<String> interfaces, List<String> annotations) {
+        this.classPath = classPath;
+        this.name = name;
+        this.kind = kind;
+        this.enclosingClassPath = enclosingClassPath;
+        this.depth = depth;
+        this.superclass = superclass;
+        this.interfaces = copyOf(interfaces);
+        this.annotations = copyOf(annotations);
+    }
+
+    private static List<String> copyOf(List<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<String>(names));
+    }
+
+    /** Binary name including the package, e.g. {@code a.b.Outer$Inner}. */
+    public String getClassPath() {
+        return classPath;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GroovyTypeKind getKind() {
+        return kind;
+    }
+
+    /** Class path of the enclosing type, or null for a top level type. */
+    public String getEnclosingClassPath() {
+        return enclosingClassPath;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /** The class named in the {@code extends} clause of a class, or null. */
+    public String getSuperclass() {
+        return superclass;
+    }
+
+    /**
+     * Interfaces named in the {@code implements} clause, or in the
+     * {@code extends} clause of an interface or trait.
+     */
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<String> getAnnotations() {
+        return annotations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GroovyTypeDeclaration)) {
+            return false;
+        }
+        GroovyTypeDeclaration other = (GroovyTypeDeclaration) o;
+        return depth == other.depth
+                && kind == other.kind
+                && classPath.equals(other.classPath)
+                && name.equals(other.name)
+                && (enclosingClassPath == null
+                    ? other.enclosingClassPath == null
+                    : enclosingClassPath.equals(other.enclosingClassPath))
+                && (superclass == null ? other.superclass == null : superclass.equals(other.superclass))
+                && interfaces.equals(other.interfaces)
+                && annotations.equals(other.annotations);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * classPath.hashCode() + kind.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + classPath;
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import groovyjarjarantlr.collections.AST;
+import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the type names a source refers to, as written: declared types of
+ * fields, parameters and variables, casts, generics, instantiations,
+ * supertypes, annotations, and names used as qualifiers such as
+ * {@code Foo.bar()} or {@code java.util.Collections.emptyList()}.
+ * <p>
+ * Without type resolution a name is taken as a type when it starts with an
+ * upper case letter, so constants and type parameters are collected too.
+ * That errs on the side of more dependencies, which is the safe side for
+ * deciding what a change affects.
+ */
+final class GroovyTypeReferences {
+
+    private GroovyTypeReferences() {
+    }
+
+    /**
+     * Walks the whole AST without recursion, so deeply nested expressions
+     * cannot overflow the stack.
+     */
+    public static void collect(AST ast, Set<String> references) {
+        List<AST> nodes = new ArrayList<AST>();
+        List<AST> parents = new ArrayList<AST>();
+        for (AST node = ast; node != null; node = node.getNextSibling()) {
+            nodes.add(node);
+            parents.add(null);
+        }
+        List<String> segments = new ArrayList<String>();
+        while (!nodes.isEmpty()) {
+            int last = nodes.size() - 1;
+            AST node = nodes.remove(last);
+            AST parent = parents.remove(last);
+            switch (node.getType()) {
+                case GroovyTokenTypes.PACKAGE_DEF:
+                case GroovyTokenTypes.IMPORT:
+                case GroovyTokenTypes.STATIC_IMPORT:
+                    continue;
+                case GroovyTokenTypes.DOT:
+                    segments.clear();
+                    if (addSegments(node, segments)) {
+                        addReference(segments, references);
+                        pushChainChildren(node, nodes, parents);
+                        continue;
+                    }
+                    break;
+                case GroovyTokenTypes.IDENT:
+                    if (!isDeclaredName(parent) && isTypeName(node.getText())) {
+                        references.add(node.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pushChildren(node, nodes, parents);
+        }
+    }
+
+    private static void pushChildren(AST node, List<AST> nodes, List<AST> parents) {
+        for (AST child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            nodes.add(child);
+            parents.add(node);
+        }
+    }
+
+    /**
+     * Queues what hangs off a name chain besides the name itself, such as
+     * type arguments.
+     */
+    private static void pushChainChildren(AST dot, List<AST> nodes, List<AST> parents) {
+        AST first = dot.getFirstChild();
+        AST second = first.getNextSibling();
+        if (first.getType() == GroovyTokenTypes.DOT) {
+            pushChainChildren(first, nodes, parents);
+        } else {
+            pushChildren(first, nodes, parents);
+        }
+        pushChildren(second, nodes, parents);
+        for (AST extra = second.getNextSibling(); extra != null; extra = extra.getNextSibling()) {
+            nodes.add(extra);
+            parents.add(dot);
+        }
+    }
+
+    /**
+     * Adds the segments of a chain made of identifiers only, e.g.
+     * {@code a.b.C.d}, returning false for anything else.
+     */
+    private static boolean addSegments(AST t, List<String> segments) {
+        if (t == null) {
+            return false;
+        }
+        if (t.getType() == GroovyTokenTypes.IDENT) {
+            segments.add(t.getText());
+            return true;
+        }
+        if (t.getType() == GroovyTokenTypes.DOT) {
+            AST first = t.getFirstChild();
+            return first != null && addSegments(first, segments) && addSegments(first.getNextSibling(), segments);
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the chain up to the end of its first run of type names, so
+     * {@code a.b.Outer.Inner.call} yields {@code a.b.Outer.Inner}.
+     */
+    private static void addReference(List<String> segments, Set<String> references) {
+        int start = -1;
+        int end = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            if (isTypeName(segments.get(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+                end = i;
+            } else if (start >= 0) {
+                break;
+            }
+        }
+        if (start < 0) {
+            return;
+        }
+        StringBuilder reference = new StringBuilder();
+        for (int i = 0; i <= end; i++) {
+            if (i > 0) {
+                reference.append('.');
+            }
+            reference.append(segments.get(i));
+        }
+        references.add(reference.toString());
+    }
+
+    private static boolean isTypeName(String name) {
+        return !name.isEmpty() && Character.isUpperCase(name.charAt(0));
+    }
+
+    /**
+     * Whether an identifier directly below the given node is the name being
+     * declared rather than a reference.
+     */
+    private static boolean isDeclaredName(AST parent) {
+        if (parent == null) {
+            return false;
+        }
+        switch (parent.getType()) {
+            case GroovyTokenTypes.CLASS_DEF:
+            case GroovyTokenTypes.INTERFACE_DEF:
+            case GroovyTokenTypes.TRAIT_DEF:
+            case GroovyTokenTypes.ENUM_DEF:
+            case GroovyTokenTypes.ANNOTATION_DEF:
+            case GroovyTokenTypes.METHOD_DEF:
+            case GroovyTokenTypes.VARIABLE_DEF:
+            case GroovyTokenTypes.PARAMETER_DEF:
+            case GroovyTokenTypes.ENUM_CONSTANT_DEF:
+            case GroovyTokenTypes.TYPE_PARAMETER:
+            case GroovyTokenTypes.ANNOTATION_FIELD_DEF:
+            case GroovyTokenTypes.ANNOTATION_MEMBER_VALUE_PAIR:
+            case GroovyTokenTypes.LABELED_STAT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes git repositories for tests without a git installation: loose
+ * objects, refs, and packs whose objects are stored as a delta chain.
+ */
+public class GitTestRepository {
+    private static final String[] TYPES = { null, "commit", "tree", "blob", "tag" };
+
+    private final Path gitDir;
+    private final Map<String, Integer> types = new HashMap<String, Integer>();
+    private final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+
+    public GitTestRepository(Path workTree) throws IOException {
+        gitDir = workTree.resolve(".git");
+        Files.createDirectories(gitDir.resolve("objects/pack"));
+        Files.createDirectories(gitDir.resolve("refs/heads"));
+        Files.createDirectories(gitDir.resolve("refs/tags"));
+        Files.write(gitDir.resolve("HEAD"), "ref: refs/heads/master\n".getBytes("UTF-8"));
+    }
+
+    public Path getGitDir() {
+        return gitDir;
+    }
+
+    public String blob(String content) throws IOException {
+        return write(3, content.getBytes("UTF-8"));
+    }
+
+    /** Entries are given as name and object id pairs; trees become directories. */
+    public String tree(String... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < entries.length; i += 2) {
+            String mode = (types.get(entries[i + 1]) == 2 ? "40000" : "100644");
+            out.write((mode + " " + entries[i] + "\0").getBytes("UTF-8"));
+            out.write(fromHex(entries[i + 1]));
+        }
+        return write(2, out.toByteArray());
+    }
+
+    public String commit(String treeId) throws IOException {
+        return write(1, ("tree " + treeId + "\nauthor a <a@b> 0 +0000\ncommitter a <a@b> 0 +0000\n\ncommit\n")
+                .getBytes("UTF-8"));
+    }
+
+    public String tag(String name, String objectId) throws IOException {
+        return write(4, ("object " + objectId + "\ntype " + TYPES[types.get(objectId)] + "\ntag " + name
+                + "\ntagger a <a@b> 0 +0000\n\ntag\n").getBytes("UTF-8"));
+    }
+
+    public void ref(String name, String id) throws IOException {
+        Files.write(gitDir.resolve(name), (id + "\n").getBytes("UTF-8"));
+    }
+
+    public void packedRefs(String... namesAndIds) throws IOException {
+        StringBuilder refs = new StringBuilder("# pack-refs with: peeled fully-peeled sorted \n");
+        for (int i = 0; i < namesAndIds.length; i += 2) {
+            refs.append(namesAndIds[i + 1]).append(' ').append(namesAndIds[i]).append('\n');
+        }
+        Files.write(gitDir.resolve("packed-refs"), refs.toString().getBytes("UTF-8"));
+    }
+
+    /**
+     * Moves loose objects into a pack. The first object is stored whole and
+     * every further one as a delta on the one before, alternating between
+     * offset and object id references to the base.
+     */
+    public void pack(String... ids) throws IOException {
+        ByteArrayOutputStream pack = new ByteArrayOutputStream();
+        pack.write("PACK".getBytes("US-ASCII"));
+        writeInt(pack, 2);
+        writeInt(pack, ids.length);
+        long[] offsets = new long[ids.length];
+        long[] crcs = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            offsets[i] = pack.size();
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            byte[] content = contents.get(ids[i]);
+            if (i == 0) {
+                writeObjectHeader(entry, types.get(ids[i]), content.length);
+                entry.write(deflate(content));
+            } else {
+                byte[] delta = delta(contents.get(ids[i - 1]), content);
+                if (i % 2 == 1) {
+                    writeObjectHeader(entry, 6, delta.length);
+                    long distance = offsets[i] - offsets[i - 1];
+                    byte[] encoded = new byte[10];
+                    int position = encoded.length - 1;
+                    encoded[position] = (byte) (distance & 0x7f);
+                    while ((distance >>= 7) > 0) {
+                        encoded[--position] = (byte) (0x80 | (--distance & 0x7f));
+                    }
+                    entry.write(encoded, position, encoded.length - position);
+                } else {
+                    writeObjectHeader(entry, 7, delta.length);
+                    entry.write(fromHex(ids[i - 1]));
+                }
+                entry.write(deflate(delta));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(entry.toByteArray());
+            crcs[i] = crc.getValue();
+            entry.writeTo(pack);
+        }
+        byte[] packChecksum = sha1(pack.toByteArray());
+        pack.write(packChecksum);
+
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < ids.length; i++) {
+            int position = 0;
+            while (position < order.size() && ids[order.get(position)].compareTo(ids[i]) < 0) {
+                position++;
+            }
+            order.add(position, i);
+        }
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        writeInt(index, 0xff744f63);
+        writeInt(index, 2);
+        for (int b = 0; b < 256; b++) {
+            int count = 0;
+            for (String id : ids) {
+                if (Integer.parseInt(id.substring(0, 2), 16) <= b) {
+                    count++;
+                }
+            }
+            writeInt(index, count);
+        }
+        for (int i : order) {
+            index.write(fromHex(ids[i]));
+        }
+        for (int i : order) {
+            writeInt(index, (int) crcs[i]);
+        }
+        for (int i : order) {
+            writeInt(index, (int) offsets[i]);
+        }
+        index.write(packChecksum);
+        index.write(sha1(index.toByteArray()));
+
+        String name = "pack-" + toHex(packChecksum);
+        Files.write(gitDir.resolve("objects/pack/" + name + ".pack"), pack.toByteArray());
+        Files.write(gitDir.resolve("objects/pack/" + name + ".idx"), index.toByteArray());
+        for (String id : ids) {
+            Files.delete(getLooseFile(id));
+        }
+    }
+
+    private String write(int type, byte[] content) throws IOException {
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        object.write((TYPES[type] + " " + content.length + "\0").getBytes("US-ASCII"));
+        object.write(content);
+        String id = toHex(sha1(object.toByteArray()));
+        if (!types.containsKey(id)) {
+            types.put(id, type);
+            contents.put(id, content);
+            Path file = getLooseFile(id);
+            Files.createDirectories(file.getParent());
+            Files.write(file, deflate(object.toByteArray()));
+        }
+        return id;
+    }
+
+    private Path getLooseFile(String id) {
+        return gitDir.resolve("objects").resolve(id.substring(0, 2)).resolve(id.substring(2));
+    }
+
+    /** A delta copying the common prefix from the base and inserting the rest. */
+    private static byte[] delta(byte[] base, byte[] target) {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        writeVarint(delta, base.length);
+        writeVarint(delta, target.length);
+        int common = 0;
+        while (common < base.length && common < target.length && common < 0xffff
+                && base[common] == target[common]) {
+            common++;
+        }
+        if (common > 0) {
+            delta.write(0x80 | 0x10 | 0x20);
+            delta.write(common & 0xff);
+            delta.write(common >> 8);
+        }
+        for (int position = common; position < target.length; position += 0x7f) {
+            int length = Math.min(0x7f, target.length - position);
+            delta.write(length);
+            delta.write(target, position, length);
+        }
+        return delta.toByteArray();
+    }
+
+    private static void writeObjectHeader(OutputStream out, int type, long size) throws IOException {
+        int c = (type << 4) | (int) (size & 15);
+        size >>= 4;
+        while (size > 0) {
+            out.write(c | 0x80);
+            c = (int) (size & 0x7f);
+            size >>= 7;
+        }
+        out.write(c);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater());
+        deflater.write(data);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] fromHex(String id) {
+        byte[] bytes = new byte[id.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
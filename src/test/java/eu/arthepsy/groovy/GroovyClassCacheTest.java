@@ -0,0 +1,271 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+public class GroovyClassCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path copyResource(String fileName) throws IOException {
+        Path target = folder.getRoot().toPath().resolve(fileName);
+        Files.copy(ResourceUtils.getFile(fileName).toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    private Set<String> parse(GroovyClassCache cache, Path file) throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCache(cache);
+        parser.parseGroovyFile(file.toString());
+        return parser.getClassPaths();
+    }
+
+    private void rewriteKeepingAttributes(Path file, String content) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        assertEquals(Files.size(file), content.getBytes("UTF-8").length);
+        Files.write(file, content.getBytes(Charset.forName("UTF-8")));
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    @Test
+    public void RoundTripTest() throws IOException {
+        Path file = copyResource("SingleNestedClass.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("cache/classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        Set<String> classPaths = parse(cache, file);
+        assertEquals(4, classPaths.size());
+        assertEquals(1, cache.size());
+        cache.save();
+
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        assertEquals(1, loaded.size());
+        String original = new String(Files.readAllBytes(file), "UTF-8");
+        rewriteKeepingAttributes(file, original.replace("Nested", "Others"));
+        assertEquals(classPaths, parse(loaded, file));
+    }
+
+    @Test
+    public void TypeDeclarationsRoundTripTest() throws IOException {
+        Path file = copyResource("DeclarationScan.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCache(cache);
+        GroovyFileResult parsed = parser.parseGroovyFile(file.toString());
+        cache.save();
+
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        parser = new GroovyClassParser();
+        parser.setCache(loaded);
+        GroovyFileResult cached = parser.parseGroovyFile(file.toString());
+        assertTrue(parsed != cached);
+        assertEquals(parsed.getTypeDeclarations(), cached.getTypeDeclarations());
+        assertEquals(parsed.getFileNameClassPath(), cached.getFileNameClassPath());
+        assertEquals(parsed.getClassPaths(), cached.getClassPaths());
+    }
+
+    @Test
+    public void RecoveredRoundTripTest() throws IOException {
+        Path file = copyResource("Recovery.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setCache(cache);
+        parser.setErrorRecovery(true);
+        GroovyFileResult recovered = parser.parseGroovyFile(file.toString());
+        assertEquals(GroovyParseStatus.RECOVERED, recovered.getStatus());
+        cache.save();
+
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        parser.setCache(loaded);
+        GroovyFileResult cached = parser.parseGroovyFile(file.toString());
+        assertTrue(recovered != cached);
+        assertEquals(GroovyParseStatus.RECOVERED, cached.getStatus());
+        assertEquals(recovered.getSyntaxErrors(), cached.getSyntaxErrors());
+        assertEquals(recovered.getClassPaths(), cached.getClassPaths());
+        assertEquals(recovered.getMessage(), cached.getMessage());
+
+        parser.setErrorRecovery(false);
+        GroovyFileResult failed = parser.parseGroovyFile(file.toString());
+        assertEquals(GroovyParseStatus.RECOGNITION_ERROR, failed.getStatus());
+        assertTrue(failed.getSyntaxErrors().isEmpty());
+    }
+
+    @Test
+    public void ExtractionRoundTripTest() throws IOException {
+        Path file = copyResource("Extraction.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCache(cache);
+        parser.setCollectImports(true);
+        parser.setCollectSupertypes(true);
+        parser.setCollectAnnotations(true);
+        parser.setCollectTypeReferences(true);
+        parser.setCollectGeneratedClassPaths(true);
+        GroovyFileResult parsed = parser.parseGroovyFile(file.toString());
+        cache.save();
+
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        parser.setCache(loaded);
+        GroovyFileResult cached = parser.parseGroovyFile(file.toString());
+        assertTrue(parsed != cached);
+        assertEquals(parsed.getImports(), cached.getImports());
+        assertEquals(parsed.getTypeReferences(), cached.getTypeReferences());
+        assertTrue(!cached.getTypeReferences().isEmpty());
+        assertEquals(parsed.getGeneratedClassPaths(), cached.getGeneratedClassPaths());
+        assertTrue(cached.getClassPaths().contains("eu.arthepsy.groovy.extraction.Extraction$Named$Trait$Helper"));
+        assertEquals(parsed.getTypeDeclarations(), cached.getTypeDeclarations());
+
+        parser.setCollectImports(false);
+        assertTrue(parser.parseGroovyFile(file.toString()).getImports().isEmpty());
+    }
+
+    @Test
+    public void CachedFilePathTest() throws IOException {
+        Path file = copyResource("SingleNestedClass.groovy");
+        String filePath = file.getParent().resolve(".").resolve(file.getFileName()).toString();
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCache(cache);
+        GroovyFileResult parsed = parser.parseGroovyFile(filePath);
+        cache.save();
+
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        parser.setCache(loaded);
+        GroovyFileResult cached = parser.parseGroovyFile(filePath);
+        assertTrue(parsed != cached);
+        assertEquals(filePath, parsed.getFilePath());
+        assertEquals(filePath, cached.getFilePath());
+    }
+
+    @Test
+    public void ChangedContentTest() throws IOException {
+        Path file = copyResource("SingleNestedClass.groovy");
+        GroovyClassCache cache = new GroovyClassCache(folder.getRoot().toPath().resolve("classes.bin"));
+        parse(cache, file);
+        String original = new String(Files.readAllBytes(file), "UTF-8");
+        Files.write(file, original.replace("Nested", "Others").getBytes("UTF-8"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        Set<String> classPaths = parse(cache, file);
+        assertTrue(classPaths.contains("Single$Others$Clazz"));
+    }
+
+    @Test
+    public void TouchedUnchangedContentTest() throws IOException {
+        Path file = copyResource("SingleNestedClass.groovy");
+        GroovyClassCache cache = new GroovyClassCache(folder.getRoot().toPath().resolve("classes.bin"));
+        Set<String> classPaths = parse(cache, file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertEquals(classPaths, parse(cache, file));
+    }
+
+    @Test
+    public void TruncatedCacheTest() throws IOException {
+        Path file = copyResource("SiblingClasses.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        parse(cache, file);
+        cache.save();
+        FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(channel.size() - 3);
+        } finally {
+            channel.close();
+        }
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        assertEquals(0, loaded.size());
+    }
+
+    @Test
+    public void CorruptCountCacheTest() throws IOException {
+        Path file = copyResource("SingleNestedClass.groovy");
+        Path cacheFile = folder.getRoot().toPath().resolve("classes.bin");
+        GroovyClassCache cache = new GroovyClassCache(cacheFile);
+        parse(cache, file);
+        cache.save();
+        byte[] data = Files.readAllBytes(cacheFile);
+        // the type declaration count follows the file name class path, give it a matching checksum
+        byte[] fileNameClassPath = "\u0000\u0011SingleNestedClass".getBytes("UTF-8");
+        int offset = indexOf(data, fileNameClassPath) + fileNameClassPath.length;
+        assertTrue(offset > fileNameClassPath.length);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.putInt(offset, Integer.MAX_VALUE);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        buffer.putLong(data.length - 8, crc.getValue());
+        Files.write(cacheFile, data);
+        GroovyClassCache loaded = new GroovyClassCache(cacheFile);
+        loaded.load();
+        assertEquals(0, loaded.size());
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i + part.length <= data.length; i++) {
+            int j = 0;
+            while (j < part.length && data[i + j] == part[j]) {
+                j++;
+            }
+            if (j == part.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void MissingCacheFileTest() throws IOException {
+        GroovyClassCache cache = new GroovyClassCache(folder.getRoot().toPath().resolve("missing.bin"));
+        cache.load();
+        assertEquals(0, cache.size());
+    }
+
+}
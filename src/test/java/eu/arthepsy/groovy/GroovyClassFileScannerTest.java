@@ -0,0 +1,158 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class GroovyClassFileScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] CLASS_FILES = {
+            "Top.class",
+            "Top$_run_closure1.class",
+            "eu/arthepsy/groovy/ClassPath.class",
+            "eu/arthepsy/groovy/ClassPath$1.class",
+            "eu/arthepsy/groovy/ClassPath$_methodOne_closure2.class",
+            "eu/arthepsy/groovy/ClassPath$Inner.class",
+            "eu/arthepsy/groovy/Named$Trait$Helper.class",
+            "eu/arthepsy/groovy/Named$Trait$FieldHelper.class",
+            "eu/arthepsy/groovy/Named.class",
+    };
+
+    private static final Set<String> EXPECTED = new HashSet<String>(Arrays.asList(
+            "Top",
+            "eu.arthepsy.groovy.ClassPath",
+            "eu.arthepsy.groovy.ClassPath$Inner",
+            "eu.arthepsy.groovy.Named"));
+
+    private Path createClassesDirectory(String name) throws IOException {
+        Path root = folder.newFolder(name).toPath();
+        for (String classFile : CLASS_FILES) {
+            Path file = root.resolve(classFile);
+            Files.createDirectories(file.getParent());
+            Files.write(file, new byte[] { (byte) 0xCA, (byte) 0xFE });
+        }
+        Files.write(root.resolve("eu/arthepsy/groovy/readme.txt"), new byte[0]);
+        Files.write(root.resolve("eu/arthepsy/groovy/package-info.class"), new byte[0]);
+        Files.write(root.resolve("module-info.class"), new byte[0]);
+        return root;
+    }
+
+    private Path createJar(String name) throws IOException {
+        Path jar = folder.getRoot().toPath().resolve(name);
+        OutputStream out = Files.newOutputStream(jar);
+        try {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.putNextEntry(new ZipEntry("eu/arthepsy/groovy/"));
+            zip.closeEntry();
+            for (String classFile : CLASS_FILES) {
+                zip.putNextEntry(new ZipEntry(classFile));
+                zip.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("META-INF/versions/9/eu/arthepsy/groovy/Versioned.class"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("eu/arthepsy/groovy/package-info.class"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("module-info.class"));
+            zip.closeEntry();
+            zip.finish();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    @Test
+    public void ClassesDirectoryTest() throws IOException {
+        GroovyClassFileScanner scanner = new GroovyClassFileScanner(2);
+        scanner.scan(createClassesDirectory("classes"));
+        assertEquals(EXPECTED, scanner.getClassPaths());
+    }
+
+    @Test
+    public void ClassesDirectoryMatchesHelperTest() throws IOException {
+        Path root = createClassesDirectory("classes");
+        Set<String> classPaths = new HashSet<String>();
+        for (String classFile : CLASS_FILES) {
+            String filePath = root.resolve(classFile).toString();
+            String classPath = GroovyClassHelper.getClassPathFromFilePath(filePath, root.toString());
+            classPaths.add(GroovyClassHelper.getClassPathForClass(classPath));
+        }
+        GroovyClassFileScanner scanner = new GroovyClassFileScanner();
+        scanner.scan(root);
+        assertEquals(classPaths, scanner.getClassPaths());
+    }
+
+    @Test
+    public void JarTest() throws IOException {
+        GroovyClassFileScanner scanner = new GroovyClassFileScanner();
+        scanner.scan(createJar("classes.jar"));
+        assertEquals(EXPECTED, scanner.getClassPaths());
+    }
+
+    @Test
+    public void ScanAllTest() throws IOException {
+        List<Path> roots = new ArrayList<Path>();
+        roots.add(createClassesDirectory("first"));
+        roots.add(createClassesDirectory("second"));
+        roots.add(createJar("classes.jar"));
+        GroovyClassFileScanner scanner = new GroovyClassFileScanner(4);
+        scanner.scanAll(roots);
+        assertEquals(EXPECTED, scanner.getClassPaths());
+    }
+
+    @Test
+    public void MissingPathTest() throws IOException {
+        GroovyClassFileScanner scanner = new GroovyClassFileScanner();
+        try {
+            scanner.scan(folder.getRoot().toPath().resolve("missing"));
+        } catch (NoSuchFileException e) {
+            assertTrue(scanner.getClassPaths().isEmpty());
+            return;
+        }
+        throw new AssertionError("missing path was not reported");
+    }
+
+}
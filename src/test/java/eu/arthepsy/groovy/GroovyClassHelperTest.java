@@ -28,6 +28,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -130,4 +134,47 @@ public class GroovyClassHelperTest {
 		assertEquals(testClassPath, GroovyClassHelper.getClassPathForClass(classPath));
 	}
 
+	@Test
+	public void ClassPathWithClosureAndNumberTest() {
+		String classPath;
+		classPath = "eu.arthepsy.groovy.ClassPath$1$_run_closure2";
+		assertEquals(testClassPath, GroovyClassHelper.getClassPathForClass(classPath));
+		classPath = "eu.arthepsy.groovy.ClassPath$Trait$Helper$12";
+		assertEquals(testClassPath, GroovyClassHelper.getClassPathForClass(classPath));
+		classPath = "eu.arthepsy.groovy.ClassPath$Inner2";
+		assertEquals(classPath, GroovyClassHelper.getClassPathForClass(classPath));
+		classPath = "eu.arthepsy.groovy.ClassPath$";
+		assertEquals(classPath, GroovyClassHelper.getClassPathForClass(classPath));
+		classPath = "$12";
+		assertEquals("", GroovyClassHelper.getClassPathForClass(classPath));
+	}
+
+	@Test
+	public void ClassPathsForClassesTest() {
+		Set<String> classPaths = GroovyClassHelper.getClassPathsForClasses(Arrays.asList(
+				"eu.arthepsy.groovy.ClassPath$_methodOne",
+				"eu.arthepsy.groovy.Other",
+				"eu.arthepsy.groovy.ClassPath$1",
+				"eu.arthepsy.groovy.ClassPath",
+				"eu.arthepsy.groovy.Other$Trait$FieldHelper"));
+		assertEquals(2, classPaths.size());
+		Iterator<String> it = classPaths.iterator();
+		assertEquals(testClassPath, it.next());
+		assertEquals("eu.arthepsy.groovy.Other", it.next());
+	}
+
+	@Test
+	public void FilePathWithLeadingDotsTest() {
+		assertEquals(testClassPath, getClassPath("../" + testFilePath));
+	}
+
+	@Test
+	public void ClassNameForFileNameTest() {
+		assertEquals("ClassPath", GroovyClassHelper.getClassNameForFileName("ClassPath.groovy"));
+		assertEquals("ClassPath.test", GroovyClassHelper.getClassNameForFileName("ClassPath.test.groovy"));
+		assertEquals("ClassPath.", GroovyClassHelper.getClassNameForFileName("ClassPath."));
+		assertEquals("ClassPath", GroovyClassHelper.getClassNameForFileName("ClassPath"));
+		assertEquals("", GroovyClassHelper.getClassNameForFileName(".groovy"));
+	}
+
 }
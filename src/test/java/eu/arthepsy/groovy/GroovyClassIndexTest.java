@@ -0,0 +1,143 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class GroovyClassIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GroovyClassIndex buildIndex(String... fileClassNames) throws IOException {
+        GroovyClassIndex.Builder builder = new GroovyClassIndex.Builder();
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setListener(builder);
+        for (String fileClassName : fileClassNames) {
+            parser.parseGroovyFile(getPath(fileClassName));
+        }
+        return builder.build();
+    }
+
+    private String getPath(String fileClassName) throws IOException {
+        return ResourceUtils.getFile(fileClassName + ".groovy").getPath();
+    }
+
+    @Test
+    public void ExactLookupTest() throws IOException {
+        GroovyClassIndex index = buildIndex("SingleNestedClass", "DeclarationScan", "SiblingClasses");
+        assertEquals(3, index.getFileCount());
+        assertEquals(getPath("SingleNestedClass"), index.getFilePathForClass("Single$Nested$Clazz"));
+        assertEquals(getPath("DeclarationScan"), index.getFilePathForClass("eu.arthepsy.groovy.scan.Outer$Inner$Kind"));
+        assertEquals(getPath("DeclarationScan"), index.getFilePathForClass("eu.arthepsy.groovy.scan.DeclarationScan"));
+        assertNull(index.getFilePathForClass("Single$Nested$Missing"));
+        assertNull(index.getFilePathForClass("Single$Nested$Claz"));
+        assertNull(index.getFilePathForClass(""));
+    }
+
+    @Test
+    public void CompiledClassLookupTest() throws IOException {
+        GroovyClassIndex index = buildIndex("SingleNestedClass", "DeclarationScan");
+        String scanPath = getPath("DeclarationScan");
+        assertEquals(scanPath, index.findFilePathForClass("eu.arthepsy.groovy.scan.Outer$_run_closure1"));
+        assertEquals(scanPath, index.findFilePathForClass("eu.arthepsy.groovy.scan.Outer$1"));
+        assertEquals(scanPath, index.findFilePathForClass("eu.arthepsy.groovy.scan.Helper$Trait$Helper"));
+        assertEquals(scanPath, index.findFilePathForClass("eu.arthepsy.groovy.scan.Outer$Inner$Unknown"));
+        assertEquals(getPath("SingleNestedClass"), index.findFilePathForClass("Single$Nested$Clazz$2"));
+        assertNull(index.findFilePathForClass("eu.arthepsy.groovy.scan.Unknown$1"));
+    }
+
+    @Test
+    public void PrefixLookupTest() throws IOException {
+        GroovyClassIndex index = buildIndex("SingleNestedClass", "DeclarationScan", "SingleClassWithPackage");
+        assertEquals(Arrays.asList("Single$Nested", "Single$Nested$Clazz"), index.getNestedClassPaths("Single"));
+        assertEquals(Arrays.asList(
+                "eu.arthepsy.groovy.scan.Outer$Callback",
+                "eu.arthepsy.groovy.scan.Outer$Inner",
+                "eu.arthepsy.groovy.scan.Outer$Inner$Kind"),
+                index.getNestedClassPaths("eu.arthepsy.groovy.scan.Outer"));
+        assertEquals(Arrays.asList("eu.arthepsy.groovy.SingleClassWithPackage"),
+                index.getPackageClassPaths("eu.arthepsy.groovy"));
+        assertEquals(7, index.getPackageClassPaths("eu.arthepsy.groovy.scan").size());
+        assertEquals(Arrays.asList("Single", "Single$Nested", "Single$Nested$Clazz", "SingleNestedClass"),
+                index.getPackageClassPaths(""));
+        assertEquals(Collections.<String>emptyList(), index.getClassPathsWithPrefix("org."));
+    }
+
+    @Test
+    public void DuplicateClassTest() throws IOException {
+        GroovyClassIndex index = buildIndex("SingleNestedClass", "SiblingClasses");
+        List<String> siblings = index.getFilePathsForClass("Sibling1");
+        assertEquals(1, siblings.size());
+        GroovyClassIndex.Builder builder = new GroovyClassIndex.Builder();
+        GroovyClassParser parser = new GroovyClassParser();
+        File copy = folder.newFile("SingleNestedClass.groovy");
+        Files.copy(new File(getPath("SingleNestedClass")).toPath(), copy.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        builder.add(parser.parseGroovyFile(getPath("SingleNestedClass")));
+        builder.add(parser.parseGroovyFile(copy.getPath()));
+        index = builder.build();
+        assertEquals(Arrays.asList(getPath("SingleNestedClass"), copy.getPath()),
+                index.getFilePathsForClass("Single$Nested"));
+        assertEquals(Arrays.asList("Single$Nested", "Single$Nested$Clazz"), index.getNestedClassPaths("Single"));
+    }
+
+    @Test
+    public void SaveAndLoadTest() throws IOException {
+        GroovyClassIndex index = buildIndex("SingleNestedClass", "DeclarationScan", "UnicodeClassNames");
+        Path indexFile = folder.getRoot().toPath().resolve("index/classes.idx");
+        index.save(indexFile);
+        GroovyClassIndex loaded = GroovyClassIndex.load(indexFile);
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getFileCount(), loaded.getFileCount());
+        assertEquals(index.getClassPathsWithPrefix(""), loaded.getClassPathsWithPrefix(""));
+        for (String classPath : index.getClassPathsWithPrefix("")) {
+            assertEquals(index.getFilePathForClass(classPath), loaded.getFilePathForClass(classPath));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void CorruptIndexTest() throws IOException {
+        Path indexFile = folder.getRoot().toPath().resolve("classes.idx");
+        buildIndex("SingleNestedClass").save(indexFile);
+        byte[] bytes = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(bytes, bytes.length - 1));
+        GroovyClassIndex.load(indexFile);
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class GroovyClassParserCliTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+
+    private Path createSources() throws IOException {
+        Path root = folder.newFolder("src").toPath();
+        Files.createDirectories(root.resolve("eu/arthepsy"));
+        Files.createDirectories(root.resolve("generated"));
+        Files.write(root.resolve("eu/arthepsy/Sample.groovy"),
+                "package eu.arthepsy\nclass Sample { class Inner {} }\n".getBytes("UTF-8"));
+        Files.write(root.resolve("generated/Generated.groovy"), "class Generated {}\n".getBytes("UTF-8"));
+        Files.write(root.resolve("Script.groovy"), "println 'script'\n".getBytes("UTF-8"));
+        return root;
+    }
+
+    private int run(String... args) throws IOException {
+        return GroovyClassParserCli.run(args, new PrintStream(outStream, true, "UTF-8"),
+                new PrintStream(errStream, true, "UTF-8"));
+    }
+
+    @Test
+    public void JsonLinesTest() throws IOException {
+        Path root = createSources();
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--threads", "2", "--exclude=generated/**", root.toString()));
+        String[] lines = outStream.toString("UTF-8").split("\n");
+        assertEquals(2, lines.length);
+        String sample = (lines[0].contains("Sample.groovy") ? lines[0] : lines[1]);
+        assertTrue(sample.contains("\"status\":\"PARSED\",\"package\":\"eu.arthepsy\","
+                + "\"classPaths\":[\"eu.arthepsy.Sample\",\"eu.arthepsy.Sample$Inner\"]}"));
+        String err = errStream.toString("UTF-8");
+        assertTrue(err.startsWith("files=2 parsed=2 "));
+        assertTrue(err.contains("phaseMillis read="));
+    }
+
+    @Test
+    public void IncludeTest() throws IOException {
+        Path root = createSources();
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--include", "**/*.groovy", "--quiet", root.toString()));
+        assertEquals(2, outStream.toString("UTF-8").split("\n").length);
+        assertEquals(0, errStream.size());
+    }
+
+    @Test
+    public void BinaryOutputTest() throws IOException {
+        Path root = createSources();
+        Path classes = folder.newFolder("classes").toPath();
+        Files.write(classes.resolve("Top.class"), new byte[0]);
+        Files.write(classes.resolve("Top$_run_closure1.class"), new byte[0]);
+        Path output = folder.getRoot().toPath().resolve("classes.bin");
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--format", "binary", "--output", output.toString(),
+                "--include", "Script.groovy", "--classes", classes.toString(), root.toString()));
+        assertEquals(0, outStream.size());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(output)));
+        assertEquals(GroovyClassParserCli.MAGIC, in.readInt());
+        assertEquals(GroovyClassParserCli.FORMAT_VERSION, in.readInt());
+        assertEquals(GroovyClassParserCli.RECORD_FILE, in.readByte());
+        assertEquals(root.resolve("Script.groovy").toString(), in.readUTF());
+        assertEquals(GroovyParseStatus.PARSED.ordinal(), in.readByte());
+        assertEquals("", in.readUTF());
+        assertEquals(1, in.readInt());
+        assertEquals("Script", in.readUTF());
+        assertEquals(GroovyClassParserCli.RECORD_CLASSES, in.readByte());
+        assertEquals(classes.toString(), in.readUTF());
+        assertEquals(1, in.readInt());
+        assertEquals("Top", in.readUTF());
+        assertEquals(GroovyClassParserCli.RECORD_END, in.readByte());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void CacheTest() throws IOException {
+        Path root = createSources();
+        Path cache = folder.getRoot().toPath().resolve("cache");
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--cache", cache.toString(), root.toString()));
+        assertTrue(errStream.toString("UTF-8").contains(" cached=0 "));
+        String firstRun = outStream.toString("UTF-8");
+        outStream.reset();
+        errStream.reset();
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--cache", cache.toString(), "--threads=1", root.toString()));
+        assertTrue(errStream.toString("UTF-8").contains(" cached=3 "));
+        assertEquals(firstRun.split("\n").length, outStream.toString("UTF-8").split("\n").length);
+    }
+
+    @Test
+    public void PipelineTest() throws IOException {
+        Path root = createSources();
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--readers", "2", "--threads=2", root.toString()));
+        assertEquals(3, outStream.toString("UTF-8").split("\n").length);
+        String err = errStream.toString("UTF-8");
+        assertTrue(err.startsWith("files=3 parsed=3 "));
+        assertTrue(err.contains("stage=read threads=2 items=3 "));
+        assertTrue(err.contains("stage=parse threads=2 items=3 "));
+        assertTrue(err.contains("stage=aggregate threads=1 items=3 "));
+    }
+
+    @Test
+    public void RecoverTest() throws IOException {
+        Path root = folder.newFolder("src").toPath();
+        Files.write(root.resolve("Broken.groovy"), "class A {}\nclass B {\n  def x = = 1\n}\nclass C {}\n"
+                .getBytes("UTF-8"));
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--recover", root.toString()));
+        String line = outStream.toString("UTF-8");
+        assertTrue(line.contains("\"status\":\"RECOVERED\",\"package\":null,"
+                + "\"classPaths\":[\"A\",\"B\",\"Broken\",\"C\"]"));
+        assertTrue(line.contains(",\"syntaxErrors\":[{\"line\":3,\"column\":"));
+        assertTrue(line.contains(",\"endLine\":5,\"endColumn\":1,\"message\":"));
+        String err = errStream.toString("UTF-8");
+        assertTrue(err.contains("WARN recovered from syntax errors: Broken.groovy"));
+        assertTrue(err.contains(" recovered=1 "));
+    }
+
+    @Test
+    public void UsageTest() throws IOException {
+        assertEquals(GroovyClassParserCli.EXIT_USAGE, run());
+        assertEquals(GroovyClassParserCli.EXIT_USAGE, run("--threads", "0", "src"));
+        assertEquals(GroovyClassParserCli.EXIT_USAGE, run("--readers", "none", "src"));
+        assertEquals(GroovyClassParserCli.EXIT_USAGE, run("--format", "xml", "src"));
+        assertTrue(errStream.toString("UTF-8").contains("usage: "));
+        assertEquals(GroovyClassParserCli.EXIT_OK, run("--help"));
+        assertEquals(GroovyClassParserCli.EXIT_FAILURE,
+                run("--quiet", folder.getRoot().toPath().resolve("missing").toString()));
+    }
+
+}
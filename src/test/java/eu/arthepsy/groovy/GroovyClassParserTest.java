@@ -23,13 +23,28 @@
  */
 package eu.arthepsy.groovy;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.File;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
-import org.codehaus.groovy.tools.shell.IO;
-import org.codehaus.groovy.tools.shell.util.Logger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -38,17 +53,23 @@ import static org.junit.Assert.assertTrue;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class GroovyClassParserTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-    private ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+    private GroovyDiagnostics diagnostics;
 
     private GroovyClassParser parseFile(String fileClassName) throws IOException {
         File file = ResourceUtils.getFile(fileClassName + ".groovy");
         assertNotNull(file);
         GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(diagnostics);
         parser.parseGroovyFile(file.getPath());
         return parser;
     }
@@ -69,14 +90,13 @@ public class GroovyClassParserTest {
     }
 
     @Before
-    public void initStreams() throws IllegalAccessException {
-        Logger.io = new IO(System.in, outStream, errStream);
+    public void initStreams() {
+        diagnostics = new GroovyStreamDiagnostics(new PrintStream(outStream, true), GroovyDiagnosticLevel.WARN);
     }
 
     @After
     public void resetStreams() {
         outStream.reset();
-        errStream.reset();
     }
 
     @Test
@@ -136,6 +156,16 @@ public class GroovyClassParserTest {
         assertTrue(classPaths.contains("Single$Nested$Clazz"));
     }
 
+    @Test
+    public void DuplicateNestedNamesTest() throws IOException {
+        String fileClassName = "DuplicateNestedNames";
+        Set<String> classPaths = getClassPaths(fileClassName);
+        assertEquals(9, classPaths.size());
+        assertTrue(classPaths.contains("First$Inner$Leaf"));
+        assertTrue(classPaths.contains("Second$Inner$Leaf"));
+        assertTrue(classPaths.contains("Second$Other$Leaf"));
+    }
+
     @Test
     public void SiblingClassesTest() throws IOException {
         String fileClassName = "SiblingClasses";
@@ -178,6 +208,40 @@ public class GroovyClassParserTest {
         assertTrue(classPaths.contains("SimpleTrait"));
     }
 
+    @Test
+    public void UnicodeClassNamesTest() throws IOException {
+        String fileClassName = "UnicodeClassNames";
+        Set<String> classPaths = getClassPaths(fileClassName);
+        assertEquals(3, classPaths.size());
+        assertTrue(classPaths.contains("\u00dcn\u00efcode"));
+        assertTrue(classPaths.contains("AEscaped"));
+    }
+
+    @Test
+    public void LocalClassesTest() throws IOException {
+        String fileClassName = "LocalClasses";
+        Set<String> classPaths = getClassPaths(fileClassName);
+        assertEquals(3, classPaths.size());
+        assertTrue(classPaths.contains("Service"));
+        assertTrue(classPaths.contains("Service$Config"));
+    }
+
+    @Test
+    public void LocalClassScanTest() throws IOException {
+        File file = ResourceUtils.getFile("LocalClasses.groovy");
+        for (boolean declarationScan : new boolean[] { false, true }) {
+            GroovyClassParser parser = new GroovyClassParser();
+            parser.setLocalClassScan(true);
+            parser.setDeclarationScan(declarationScan);
+            parser.parseGroovyFile(file.getPath());
+            Set<String> classPaths = parser.getClassPaths();
+            assertEquals(6, classPaths.size());
+            assertTrue(classPaths.contains("Service$Handler"));
+            assertTrue(classPaths.contains("Service$Handler$Step"));
+            assertTrue(classPaths.contains("ScriptLocal"));
+        }
+    }
+
     @Test
     public void RecognitionExceptionTest() throws IOException {
         String fileClassName = "RecognitionException";
@@ -194,5 +258,651 @@ public class GroovyClassParserTest {
         assertTrue(out.contains(" ignored due to TokenStreamException: "));
     }
 
+    @Test
+    public void BufferedDiagnosticsTest() throws IOException {
+        GroovyBufferedDiagnostics buffered = new GroovyBufferedDiagnostics(GroovyDiagnosticLevel.WARN, 1);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(buffered);
+        File file = ResourceUtils.getFile("RecognitionException.groovy");
+        parser.parseGroovyFile(file.getPath());
+        parser.parseGroovyFile(ResourceUtils.getFile("TokenStreamException.groovy").getPath());
+        parser.parseGroovyFile(ResourceUtils.getFile("SingleNestedClass.groovy").getPath());
+        List<GroovyDiagnostic> reported = buffered.drain();
+        assertEquals(1, reported.size());
+        assertEquals(1, buffered.getDroppedCount());
+        GroovyDiagnostic diagnostic = reported.get(0);
+        assertEquals(GroovyDiagnosticLevel.ERROR, diagnostic.getLevel());
+        assertEquals(file.getPath(), diagnostic.getFilePath());
+        assertEquals(GroovyParseStatus.RECOGNITION_ERROR, diagnostic.getStatus());
+        assertNotNull(diagnostic.getCause());
+        assertTrue(diagnostic.getText().startsWith("ignored due to RecognitionException: RecognitionException.groovy"));
+        assertTrue(buffered.getDiagnostics().isEmpty());
+    }
+
+    @Test
+    public void DisabledDiagnosticsTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(new GroovyStreamDiagnostics(new PrintStream(outStream, true), GroovyDiagnosticLevel.ERROR));
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxFileSize(10);
+        parser.setLimits(limits);
+        parser.parseGroovyFile(ResourceUtils.getFile("SingleClassWithPackage.groovy").getPath());
+        assertEquals(0, outStream.size());
+        parser.setDiagnostics(null);
+        assertTrue(parser.getDiagnostics() == GroovyDiagnostics.NONE);
+        parser.parseGroovyFile(ResourceUtils.getFile("RecognitionException.groovy").getPath());
+        assertEquals(0, outStream.size());
+    }
+
+    @Test
+    public void ParseAfterFailureTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.parseGroovyFile(ResourceUtils.getFile("TokenStreamException.groovy").getPath());
+        parser.parseGroovyFile(ResourceUtils.getFile("RecognitionException.groovy").getPath());
+        parser.parseGroovyFile(ResourceUtils.getFile("SingleNestedClass.groovy").getPath());
+        assertEquals(getClassPaths("SingleNestedClass"), parser.getClassPaths());
+        assertTrue(parser.getAllocatedBytesPerFile() != 0);
+    }
+
+    @Test
+    public void TypeDeclarationsTest() throws IOException {
+        File file = ResourceUtils.getFile("DeclarationScan.groovy");
+        String packagePath = "eu.arthepsy.groovy.scan";
+        for (boolean declarationScan : new boolean[] { false, true }) {
+            GroovyClassParser parser = new GroovyClassParser();
+            parser.setDeclarationScan(declarationScan);
+            GroovyFileResult result = parser.parseGroovyFile(file.getPath());
+            assertEquals(GroovyParseStatus.PARSED, result.getStatus());
+            assertEquals(packagePath, result.getPackagePath());
+            assertEquals(packagePath + ".DeclarationScan", result.getFileNameClassPath());
+            List<GroovyTypeDeclaration> types = result.getTypeDeclarations();
+            assertEquals(6, types.size());
+            GroovyTypeDeclaration kind = types.get(2);
+            assertEquals(packagePath + ".Outer$Inner$Kind", kind.getClassPath());
+            assertEquals("Kind", kind.getName());
+            assertEquals(GroovyTypeKind.ENUM, kind.getKind());
+            assertEquals(packagePath + ".Outer$Inner", kind.getEnclosingClassPath());
+            assertEquals(2, kind.getDepth());
+            assertEquals(GroovyTypeKind.INTERFACE, types.get(3).getKind());
+            assertEquals(GroovyTypeKind.TRAIT, types.get(4).getKind());
+            assertEquals(GroovyTypeKind.ANNOTATION, types.get(5).getKind());
+            assertEquals(null, types.get(5).getEnclosingClassPath());
+            assertEquals(0, types.get(5).getDepth());
+        }
+    }
+
+    private GroovyFileResult parseExtraction(boolean collect) throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCollectImports(collect);
+        parser.setCollectSupertypes(collect);
+        parser.setCollectAnnotations(collect);
+        return parser.parseGroovyFile(ResourceUtils.getFile("Extraction.groovy").getPath());
+    }
+
+    @Test
+    public void ExtractionTest() throws IOException {
+        GroovyFileResult result = parseExtraction(true);
+        List<GroovyImport> imports = result.getImports();
+        assertEquals(5, imports.size());
+        assertEquals("java.util.concurrent.Callable", imports.get(0).toString());
+        assertEquals("java.util.*", imports.get(1).toString());
+        assertEquals("java.util", imports.get(1).getName());
+        assertTrue(imports.get(1).isStar());
+        assertEquals("static java.lang.Math.max", imports.get(2).toString());
+        assertEquals("static java.util.Collections.*", imports.get(3).toString());
+        assertEquals("java.util.Map.Entry", imports.get(4).getName());
+        assertEquals("MapEntry", imports.get(4).getAlias());
+
+        List<GroovyTypeDeclaration> types = result.getTypeDeclarations();
+        assertEquals(4, types.size());
+        GroovyTypeDeclaration extraction = types.get(0);
+        assertEquals("AbstractList", extraction.getSuperclass());
+        assertEquals(Arrays.asList("Callable", "java.io.Serializable"), extraction.getInterfaces());
+        assertEquals(Arrays.asList("Deprecated", "groovy.transform.EqualsAndHashCode"),
+                extraction.getAnnotations());
+        GroovyTypeDeclaration listener = types.get(1);
+        assertEquals(null, listener.getSuperclass());
+        assertEquals(Arrays.asList("EventListener", "Cloneable"), listener.getInterfaces());
+        assertEquals(Collections.singletonList("Runnable"), types.get(2).getInterfaces());
+        assertTrue(types.get(3).getAnnotations().isEmpty());
+    }
+
+    @Test
+    public void ExtractionDisabledTest() throws IOException {
+        GroovyFileResult result = parseExtraction(false);
+        assertTrue(result.getImports().isEmpty());
+        assertEquals(parseExtraction(true).getClassPaths(), result.getClassPaths());
+        for (GroovyTypeDeclaration type : result.getTypeDeclarations()) {
+            assertEquals(null, type.getSuperclass());
+            assertTrue(type.getInterfaces().isEmpty());
+            assertTrue(type.getAnnotations().isEmpty());
+        }
+    }
+
+    @Test
+    public void TypeReferencesTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCollectTypeReferences(true);
+        GroovyFileResult result = parser.parseGroovyFile(ResourceUtils.getFile("TypeReferences.groovy").getPath());
+        assertEquals(new HashSet<String>(Arrays.asList("Singleton", "Base", "Comparable", "Other", "Limits.MAX",
+                "Map", "String", "List", "Item", "HashMap", "Outer.Inner", "K", "Key", "Closure", "Result",
+                "Value", "Helper", "java.util.Collections", "Entry", "Factory", "TimeUnit.SECONDS")),
+                result.getTypeReferences());
+        assertEquals(getClassPaths("TypeReferences", "eu.arthepsy.groovy.references"), result.getClassPaths());
+
+        parser.setCollectTypeReferences(false);
+        assertTrue(parser.parseGroovyFile(ResourceUtils.getFile("TypeReferences.groovy").getPath())
+                .getTypeReferences().isEmpty());
+    }
+
+    @Test
+    public void GeneratedClassPathsTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCollectGeneratedClassPaths(true);
+        GroovyFileResult result = parser.parseGroovyFile(ResourceUtils.getFile("GeneratedClasses.groovy").getPath());
+        String prefix = "eu.arthepsy.groovy.generated.";
+        List<String> expected = new ArrayList<String>();
+        for (String name : Arrays.asList("GeneratedClasses$1", "GeneratedClasses$2", "GeneratedClasses$2$3",
+                "GeneratedClasses$Nested$4", "GeneratedClasses$4", "Named$Trait$Helper",
+                "Named$Trait$FieldHelper", "Kind$1", "GeneratedClasses$_closure1", "GeneratedClasses$_closure2",
+                "GeneratedClasses$_method_closure3", "GeneratedClasses$_method_closure4",
+                "GeneratedClasses$__clinit__closure5", "GeneratedClasses$_method_closure6",
+                "GeneratedClasses$_method_closure3_closure7", "GeneratedClasses$_2_closure1",
+                "GeneratedClasses$_Nested_method_closure1", "Named$_Helper_greet_closure1",
+                "Kind$_1_get_closure1")) {
+            expected.add(prefix + name);
+        }
+        assertEquals(expected, result.getGeneratedClassPaths());
+        assertTrue(result.getClassPaths().containsAll(expected));
+        assertTrue(result.getClassPaths().contains(prefix + "GeneratedClasses$Nested"));
+
+        parser.setCollectGeneratedClassPaths(false);
+        result = parser.parseGroovyFile(ResourceUtils.getFile("GeneratedClasses.groovy").getPath());
+        assertTrue(result.getGeneratedClassPaths().isEmpty());
+        assertTrue(!result.getClassPaths().contains(prefix + "GeneratedClasses$1"));
+    }
+
+    @Test
+    public void ListenerTest() throws IOException {
+        List<Path> filePaths = new ArrayList<Path>();
+        filePaths.add(ResourceUtils.getFile("SingleNestedClass.groovy").toPath());
+        filePaths.add(ResourceUtils.getFile("SiblingClasses.groovy").toPath());
+        filePaths.add(ResourceUtils.getFile("RecognitionException.groovy").toPath());
+        final Map<String, GroovyFileResult> results = new ConcurrentHashMap<String, GroovyFileResult>();
+        GroovyClassParser parser = new GroovyClassParser(2);
+        parser.setCollectClassPaths(false);
+        parser.setListener(new GroovyFileListener() {
+            @Override
+            public void fileParsed(GroovyFileResult result) {
+                results.put(new File(result.getFilePath()).getName(), result);
+            }
+        });
+        parser.parseAll(filePaths);
+        assertTrue(parser.getClassPaths().isEmpty());
+        assertEquals(3, results.size());
+        assertEquals(getClassPaths("SingleNestedClass"), results.get("SingleNestedClass.groovy").getClassPaths());
+        assertEquals(getClassPaths("SiblingClasses"), results.get("SiblingClasses.groovy").getClassPaths());
+        GroovyFileResult failed = results.get("RecognitionException.groovy");
+        assertEquals(GroovyParseStatus.RECOGNITION_ERROR, failed.getStatus());
+        assertTrue(failed.getClassPaths().isEmpty());
+        assertEquals(null, failed.getFileNameClassPath());
+    }
+
+    @Test
+    public void InstrumentationTest() throws IOException {
+        final Map<String, GroovyFileMetrics> metrics = new ConcurrentHashMap<String, GroovyFileMetrics>();
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setInstrumentation(new GroovyParseInstrumentation() {
+            @Override
+            public void fileParsed(GroovyFileMetrics fileMetrics) {
+                metrics.put(new File(fileMetrics.getFilePath()).getName(), fileMetrics);
+            }
+        });
+        File file = ResourceUtils.getFile("SingleNestedClass.groovy");
+        parser.parseGroovyFile(file.getPath());
+        parser.parseGroovyFile(ResourceUtils.getFile("RecognitionException.groovy").getPath());
+        GroovyFileMetrics parsed = metrics.get("SingleNestedClass.groovy");
+        assertEquals(GroovyParseStatus.PARSED, parsed.getStatus());
+        assertEquals(null, parsed.getFailureType());
+        assertEquals(file.length(), parsed.getBytes());
+        assertTrue(parsed.getTokens() > 0);
+        assertTrue(parsed.getAstNodes() > 0);
+        assertTrue(parsed.getPhaseNanos(GroovyParsePhase.PARSE) > 0);
+        assertEquals(0, parsed.getPhaseNanos(GroovyParsePhase.SCAN));
+        GroovyFileMetrics failed = metrics.get("RecognitionException.groovy");
+        assertEquals(GroovyParseStatus.RECOGNITION_ERROR, failed.getStatus());
+        assertNotNull(failed.getFailureType());
+        parser.setInstrumentation(null);
+        assertTrue(parser.getInstrumentation() == GroovyParseInstrumentation.NOOP);
+    }
+
+    private GroovyFileResult parseWithLimits(String fileClassName, GroovyParseLimits limits, boolean declarationScan)
+            throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDeclarationScan(declarationScan);
+        parser.setLimits(limits);
+        parser.setDiagnostics(diagnostics);
+        GroovyFileResult result = parser.parseGroovyFile(ResourceUtils.getFile(fileClassName + ".groovy").getPath());
+        assertEquals(result.getClassPaths(), parser.getClassPaths());
+        return result;
+    }
+
+    @Test
+    public void MaxFileSizeTest() throws IOException {
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxFileSize(10);
+        GroovyFileResult result = parseWithLimits("SingleClassWithPackage", limits, false);
+        assertEquals(GroovyParseStatus.DEGRADED, result.getStatus());
+        assertEquals("eu.arthepsy.groovy", result.getPackagePath());
+        assertEquals(Collections.singleton("eu.arthepsy.groovy.SingleClassWithPackage"), result.getClassPaths());
+        assertTrue(outStream.toString().contains("reduced to file name class path: SingleClassWithPackage.groovy"));
+    }
+
+    @Test
+    public void MaxTokensTest() throws IOException {
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxTokens(5);
+        for (boolean declarationScan : new boolean[] { false, true }) {
+            GroovyFileResult result = parseWithLimits("DeclarationScan", limits, declarationScan);
+            assertEquals(GroovyParseStatus.DEGRADED, result.getStatus());
+            assertEquals(Collections.singleton("eu.arthepsy.groovy.scan.DeclarationScan"), result.getClassPaths());
+        }
+        limits.setMaxTokens(1000);
+        assertEquals(GroovyParseStatus.PARSED, parseWithLimits("DeclarationScan", limits, false).getStatus());
+    }
+
+    @Test
+    public void MaxNestingTest() throws IOException {
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxNesting(2);
+        GroovyFileResult result = parseWithLimits("SingleNestedClass", limits, false);
+        assertEquals(GroovyParseStatus.DEGRADED, result.getStatus());
+        assertEquals(Collections.singleton("SingleNestedClass"), result.getClassPaths());
+        limits.setMaxNesting(3);
+        assertEquals(getClassPaths("SingleNestedClass"), parseWithLimits("SingleNestedClass", limits, true).getClassPaths());
+    }
+
+    @Test
+    public void TimeoutTest() throws IOException {
+        File file = folder.newFile("Timeout.groovy");
+        StringBuilder sb = new StringBuilder("class Timeout {\n");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("    def method").append(i).append("() { [1, 2, 3].collect { it * ").append(i).append(" } }\n");
+        }
+        sb.append("}\n");
+        Files.write(file.toPath(), sb.toString().getBytes("UTF-8"));
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setTimeoutMillis(1);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setLimits(limits);
+        GroovyFileResult result = parser.parseGroovyFile(file.getPath());
+        assertEquals(GroovyParseStatus.DEGRADED, result.getStatus());
+        assertTrue(result.getMessage().startsWith("timeout"));
+    }
+
+    @Test
+    public void DeclarationScanTest() throws IOException {
+        String fileClassName = "DeclarationScan";
+        String packagePath = "eu.arthepsy.groovy.scan";
+        File file = ResourceUtils.getFile(fileClassName + ".groovy");
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDeclarationScan(true);
+        parser.parseGroovyFile(file.getPath());
+        Set<String> classPaths = parser.getClassPaths();
+        assertEquals(7, classPaths.size());
+        assertTrue(classPaths.contains(packagePath + '.' + fileClassName));
+        assertTrue(classPaths.contains(packagePath + ".Outer$Inner$Kind"));
+        assertTrue(classPaths.contains(packagePath + ".Outer$Callback"));
+        assertTrue(classPaths.contains(packagePath + ".Helper"));
+        assertTrue(classPaths.contains(packagePath + ".Marker"));
+        assertEquals(getClassPaths(fileClassName, packagePath), classPaths);
+    }
+
+    @Test
+    public void DeclarationScanMatchesParserTest() throws IOException {
+        File directory = ResourceUtils.getFile("WithoutClass.groovy").getParentFile();
+        for (File file : directory.listFiles()) {
+            if (!file.getName().endsWith(".groovy")) {
+                continue;
+            }
+            GroovyClassParser parser = new GroovyClassParser();
+            parser.parseGroovyFile(file.getPath());
+            GroovyClassParser scanParser = new GroovyClassParser();
+            scanParser.setDeclarationScan(true);
+            scanParser.parseGroovyFile(file.getPath());
+            assertEquals(file.getName(), parser.getClassPaths(), scanParser.getClassPaths());
+        }
+    }
+
+    @Test
+    public void ParseAllTest() throws IOException {
+        List<Path> filePaths = new ArrayList<Path>();
+        filePaths.add(ResourceUtils.getFile("SingleNestedClass.groovy").toPath());
+        filePaths.add(ResourceUtils.getFile("SingleClassWithPackage.groovy").toPath());
+        filePaths.add(ResourceUtils.getFile("SiblingClasses.groovy").toPath());
+        GroovyClassParser parser = new GroovyClassParser(2);
+        parser.parseAll(filePaths);
+        Set<String> classPaths = parser.getClassPaths();
+        assertEquals(8, classPaths.size());
+        assertTrue(classPaths.contains("Single$Nested$Clazz"));
+        assertTrue(classPaths.contains("eu.arthepsy.groovy.SingleClassWithPackage"));
+        assertTrue(classPaths.contains("Sibling2"));
+    }
+
+    @Test
+    public void ParseDirectoryTest() throws IOException {
+        File directory = ResourceUtils.getFile("WithoutClass.groovy").getParentFile();
+        GroovyClassParser sequentialParser = new GroovyClassParser();
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith(".groovy")) {
+                sequentialParser.parseGroovyFile(file.getPath());
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            GroovyClassParser parallelParser = new GroovyClassParser(executor);
+            parallelParser.parseDirectory(directory.toPath());
+            assertEquals(sequentialParser.getClassPaths(), parallelParser.getClassPaths());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void InMemorySourceTest() throws IOException {
+        File file = ResourceUtils.getFile("SingleNestedClass.groovy");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Charset charset = Charset.forName("UTF-8");
+        Set<String> expected = getClassPaths("SingleNestedClass");
+        GroovyClassParser parser = new GroovyClassParser();
+        assertEquals(expected, parser.parseGroovySource(file.getPath(), new String(bytes, charset)).getClassPaths());
+        assertEquals(expected, parser.parseGroovySource(file.getPath(), bytes, charset).getClassPaths());
+        assertEquals(expected, parser.parseGroovySource(file.getPath(), new ByteArrayInputStream(bytes), charset)
+                .getClassPaths());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3);
+        buffer.put(new byte[] { 1, 2, 3 }).put(bytes).position(3);
+        GroovyFileResult result = parser.parseGroovySource(file.getPath(), buffer, charset);
+        assertEquals(expected, result.getClassPaths());
+        assertEquals(3, buffer.position());
+        assertEquals(file.getPath(), result.getFilePath());
+    }
+
+    @Test
+    public void InMemorySourceFailureTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        GroovyFileResult result = parser.parseGroovySource("Broken.groovy", "class Broken {");
+        assertTrue(result.getStatus() != GroovyParseStatus.PARSED);
+        assertTrue(!parser.getClassPaths().contains("Broken"));
+    }
+
+    @Test
+    public void ErrorRecoveryTest() throws IOException {
+        GroovyBufferedDiagnostics diagnostics = new GroovyBufferedDiagnostics(GroovyDiagnosticLevel.WARN, 10);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(diagnostics);
+        parser.setErrorRecovery(true);
+        File file = ResourceUtils.getFile("Recovery.groovy");
+        GroovyFileResult result = parser.parseGroovyFile(file.getPath());
+        assertEquals(GroovyParseStatus.RECOVERED, result.getStatus());
+        String prefix = "eu.arthepsy.groovy.recovery.";
+        assertEquals("eu.arthepsy.groovy.recovery", result.getPackagePath());
+        assertEquals(new HashSet<String>(Arrays.asList(prefix + "Before", prefix + "Broken", prefix + "Broken$Inner",
+                prefix + "Unclosed", prefix + "After", prefix + "After$Nested", prefix + "Last", prefix + "Recovery")),
+                result.getClassPaths());
+        assertEquals(result.getClassPaths(), parser.getClassPaths());
+
+        List<GroovySyntaxError> errors = result.getSyntaxErrors();
+        assertEquals(errors.toString(), 3, errors.size());
+        assertEquals(9, errors.get(0).getLine());
+        assertEquals(14, errors.get(0).getEndLine());
+        assertEquals(1, errors.get(0).getEndColumn());
+        assertEquals(result.getMessage(), errors.get(0).getMessage());
+        assertEquals(new GroovySyntaxError(14, 16, 21, 1, "missing '}' before type declaration"), errors.get(1));
+        assertEquals(24, errors.get(2).getLine());
+        assertEquals(25, errors.get(2).getEndLine());
+
+        List<GroovyDiagnostic> reported = diagnostics.drain();
+        assertEquals(1, reported.size());
+        assertEquals(GroovyDiagnosticLevel.WARN, reported.get(0).getLevel());
+        assertEquals(GroovyParseStatus.RECOVERED, reported.get(0).getStatus());
+        assertTrue(reported.get(0).getText().startsWith("recovered from syntax errors: Recovery.groovy"));
+    }
+
+    @Test
+    public void ErrorRecoveryFixturesTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setErrorRecovery(true);
+        GroovyFileResult recognition = parser.parseGroovyFile(
+                ResourceUtils.getFile("RecognitionException.groovy").getPath());
+        assertEquals(GroovyParseStatus.RECOVERED, recognition.getStatus());
+        assertEquals(Collections.singleton("RecognitionException"), recognition.getClassPaths());
+        assertEquals(2, recognition.getSyntaxErrors().size());
+        // the parser's failure replaces the scan's own error at the same place
+        assertEquals(1, recognition.getSyntaxErrors().get(0).getLine());
+        assertEquals(1, recognition.getSyntaxErrors().get(0).getColumn());
+        assertEquals(recognition.getMessage(), recognition.getSyntaxErrors().get(0).getMessage());
+        assertEquals(new GroovySyntaxError(1, 7, 2, 1, "missing '}' at end of file"),
+                recognition.getSyntaxErrors().get(1));
+
+        GroovyFileResult tokenStream = parser.parseGroovyFile(
+                ResourceUtils.getFile("TokenStreamException.groovy").getPath());
+        assertEquals(GroovyParseStatus.RECOVERED, tokenStream.getStatus());
+        assertEquals(new HashSet<String>(Arrays.asList("x", "TokenStreamException")), tokenStream.getClassPaths());
+        assertEquals(1, tokenStream.getSyntaxErrors().size());
+        assertEquals(2, tokenStream.getSyntaxErrors().get(0).getLine());
+        // no declaration follows, so the span runs to the end of the file
+        assertEquals(4, tokenStream.getSyntaxErrors().get(0).getEndLine());
+    }
+
+    @Test
+    public void ErrorRecoveryLineBreaksTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setErrorRecovery(true);
+        for (String lineBreak : Arrays.asList("\n", "\r\n", "\r")) {
+            String source = "class A {" + lineBreak + "  def s = 'broken" + lineBreak + "}" + lineBreak + lineBreak
+                    + "class B {}" + lineBreak;
+            GroovyFileResult result = parser.parseGroovySource("Script.groovy", source);
+            assertEquals(GroovyParseStatus.RECOVERED, result.getStatus());
+            assertEquals(new HashSet<String>(Arrays.asList("A", "B", "Script")), result.getClassPaths());
+            assertEquals(1, result.getSyntaxErrors().size());
+            assertEquals(new GroovySyntaxError(2, 18, 5, 1, result.getMessage()), result.getSyntaxErrors().get(0));
+        }
+        parser.setErrorRecovery(false);
+        GroovyFileResult failed = parser.parseGroovySource("Script.groovy", "class A {\n  def s = 'broken\n}\n");
+        assertEquals(GroovyParseStatus.TOKEN_STREAM_ERROR, failed.getStatus());
+        assertTrue(failed.getSyntaxErrors().isEmpty());
+    }
+
+    @Test
+    public void ErrorRecoveryLimitTest() throws IOException {
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setErrorRecovery(true);
+        StringBuilder source = new StringBuilder("class A {}\n");
+        for (int i = 0; i < 2 * GroovyDeclarationScanner.MAX_SYNTAX_ERRORS; i++) {
+            source.append("}\n");
+        }
+        source.append("class B {}\n");
+        GroovyFileResult result = parser.parseGroovySource("Script.groovy", source);
+        assertEquals(GroovyParseStatus.RECOVERED, result.getStatus());
+        assertEquals(GroovyDeclarationScanner.MAX_SYNTAX_ERRORS, result.getSyntaxErrors().size());
+        assertTrue(result.getClassPaths().contains("A"));
+        assertTrue(!result.getClassPaths().contains("B"));
+    }
+
+    @Test
+    public void ErrorRecoveryTokenLimitTest() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            source.append("class C").append(i).append(" { def a = 1 }\n");
+        }
+        source.append("def x = = 3\n");
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxTokens(1000);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setErrorRecovery(true);
+        parser.setLimits(limits);
+        GroovyFileResult result = parser.parseGroovySource("Script.groovy", source);
+        assertEquals(GroovyParseStatus.RECOVERED, result.getStatus());
+        assertTrue(result.getClassPaths().contains("C59"));
+
+        limits.setMaxTokens(400);
+        assertEquals(GroovyParseStatus.DEGRADED, parser.parseGroovySource("Script.groovy", source).getStatus());
+    }
+
+    private byte[] createArchive(String... fileClassNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zip.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        zip.putNextEntry(new ZipEntry("src/"));
+        for (String fileClassName : fileClassNames) {
+            zip.putNextEntry(new ZipEntry("src/" + fileClassName + ".groovy"));
+            zip.write(Files.readAllBytes(ResourceUtils.getFile(fileClassName + ".groovy").toPath()));
+        }
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void ParseArchiveTest() throws IOException {
+        final Map<String, GroovyFileResult> results = new ConcurrentHashMap<String, GroovyFileResult>();
+        GroovyClassParser parser = new GroovyClassParser(2);
+        parser.setListener(new GroovyFileListener() {
+            @Override
+            public void fileParsed(GroovyFileResult result) {
+                results.put(result.getFilePath(), result);
+            }
+        });
+        byte[] archive = createArchive("SingleNestedClass", "SingleClassWithPackage", "SiblingClasses");
+        parser.parseArchive(new ByteArrayInputStream(archive));
+        assertEquals(new HashSet<String>(Arrays.asList("src/SingleNestedClass.groovy",
+                "src/SingleClassWithPackage.groovy", "src/SiblingClasses.groovy")), results.keySet());
+        Set<String> expected = new HashSet<String>();
+        expected.addAll(getClassPaths("SingleNestedClass"));
+        expected.addAll(getClassPaths("SingleClassWithPackage", "eu.arthepsy.groovy"));
+        expected.addAll(getClassPaths("SiblingClasses"));
+        assertEquals(expected, parser.getClassPaths());
+    }
+
+    @Test(timeout = 60000)
+    public void ParseArchiveExecutorTest() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            GroovyClassParser parser = new GroovyClassParser(executor);
+            parser.parseArchive(new ByteArrayInputStream(createArchive("SingleNestedClass", "SiblingClasses")));
+            Set<String> expected = new HashSet<String>();
+            expected.addAll(getClassPaths("SingleNestedClass"));
+            expected.addAll(getClassPaths("SiblingClasses"));
+            assertEquals(expected, parser.getClassPaths());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void ParseArchiveFileTest() throws IOException {
+        Path archivePath = folder.newFile("sources.jar").toPath();
+        Files.write(archivePath, createArchive("SingleTrait"));
+        final List<String> filePaths = Collections.synchronizedList(new ArrayList<String>());
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setListener(new GroovyFileListener() {
+            @Override
+            public void fileParsed(GroovyFileResult result) {
+                filePaths.add(result.getFilePath());
+            }
+        });
+        parser.parseArchive(archivePath);
+        assertEquals(Collections.singletonList(archivePath + "!/src/SingleTrait.groovy"), filePaths);
+        assertEquals(getClassPaths("SingleTrait"), parser.getClassPaths());
+    }
+
+    @Test
+    public void ParseGitRevisionTest() throws IOException {
+        Path workTree = folder.getRoot().toPath();
+        GitTestRepository git = new GitTestRepository(workTree);
+        String shared = git.blob("package a\nclass Shared {}\n");
+        String script = git.blob("package a\nprintln 'run'\n");
+        String first = git.commit(git.tree("Shared.groovy", shared, "Run.groovy", script,
+                "copy", git.tree("Shared.groovy", shared)));
+        String second = git.commit(git.tree("Shared.groovy", shared,
+                "Run.groovy", git.blob("package a\nclass Run {}\n"), "Main.groovy", script));
+        git.ref("refs/tags/v1", first);
+        git.ref("refs/tags/v2", second);
+
+        final List<String> parsed = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> cached = Collections.synchronizedList(new ArrayList<String>());
+        GroovyClassParser parser = new GroovyClassParser(2);
+        parser.setInstrumentation(new GroovyParseInstrumentation() {
+            @Override
+            public void fileParsed(GroovyFileMetrics fileMetrics) {
+                (fileMetrics.isCached() ? cached : parsed).add(fileMetrics.getFilePath());
+            }
+        });
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            parser.parseGitRevision(repository, "v1");
+            assertEquals(new HashSet<String>(Arrays.asList("Shared.groovy", "Run.groovy")),
+                    new HashSet<String>(parsed));
+            assertEquals(Collections.singletonList("copy/Shared.groovy"), cached);
+            assertEquals(new HashSet<String>(Arrays.asList("a.Shared", "a.Run")), parser.getClassPaths());
+
+            parsed.clear();
+            cached.clear();
+            final Map<String, GroovyFileResult> results = new ConcurrentHashMap<String, GroovyFileResult>();
+            parser.setListener(new GroovyFileListener() {
+                @Override
+                public void fileParsed(GroovyFileResult result) {
+                    results.put(result.getFilePath(), result);
+                }
+            });
+            parser.parseGitRevision(repository, "v2");
+            assertEquals(new HashSet<String>(Arrays.asList("Run.groovy", "Main.groovy")),
+                    new HashSet<String>(parsed));
+            assertEquals(Collections.singletonList("Shared.groovy"), cached);
+            assertEquals("a.Main", results.get("Main.groovy").getFileNameClassPath());
+            assertEquals("Shared.groovy", results.get("Shared.groovy").getFilePath());
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void ParseGitRevisionCacheTest() throws IOException {
+        Path workTree = folder.getRoot().toPath();
+        GitTestRepository git = new GitTestRepository(workTree);
+        git.ref("refs/heads/master", git.commit(git.tree("A.groovy", git.blob("class A { class B {} }\n"))));
+        GroovyClassCache cache = new GroovyClassCache(workTree.resolve("cache.bin"));
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            GroovyClassParser parser = new GroovyClassParser();
+            parser.setCache(cache);
+            parser.parseGitRevision(repository, "master");
+            cache.save();
+            cache.load();
+            assertEquals(1, cache.size());
+
+            final List<GroovyFileMetrics> metrics = new ArrayList<GroovyFileMetrics>();
+            GroovyClassParser cachedParser = new GroovyClassParser(1);
+            cachedParser.setCache(cache);
+            cachedParser.setInstrumentation(new GroovyParseInstrumentation() {
+                @Override
+                public void fileParsed(GroovyFileMetrics fileMetrics) {
+                    metrics.add(fileMetrics);
+                }
+            });
+            cachedParser.parseGitRevision(repository, "master");
+            assertEquals(1, metrics.size());
+            assertTrue(metrics.get(0).isCached());
+            assertEquals("A.groovy", metrics.get(0).getFilePath());
+            assertEquals(parser.getClassPaths(), cachedParser.getClassPaths());
+            assertEquals(new HashSet<String>(Arrays.asList("A", "A$B")), cachedParser.getClassPaths());
+        } finally {
+            repository.close();
+        }
+    }
 
 }
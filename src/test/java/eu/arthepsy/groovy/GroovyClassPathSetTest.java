@@ -0,0 +1,204 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class GroovyClassPathSetTest {
+
+    private static final List<String> CLASS_PATHS = Arrays.asList(
+            "a.b.C", "a.b.C$Inner", "a.b.C$Inner$Deep", "a.b.c.D", "a.bc.E", "a.b.C$1", "Script", "a.b$c.F",
+            "", "x..y", "x.y.", "$Leading", "Trailing$");
+
+    private static Set<String> collect(Iterator<String> iterator) {
+        Set<String> names = new HashSet<String>();
+        while (iterator.hasNext()) {
+            assertTrue(names.add(iterator.next()));
+        }
+        return names;
+    }
+
+    private static Set<String> names(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    @Test
+    public void SetContractTest() {
+        GroovyClassPathSet set = new GroovyClassPathSet(CLASS_PATHS);
+        Set<String> expected = new HashSet<String>(CLASS_PATHS);
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+        assertEquals(expected.hashCode(), set.hashCode());
+        for (String classPath : CLASS_PATHS) {
+            assertTrue(classPath, set.contains(classPath));
+            assertFalse(classPath, set.add(classPath));
+        }
+        assertFalse(set.contains("a.b"));
+        assertFalse(set.contains("a"));
+        assertFalse(set.contains("a.b.C$Other"));
+        assertFalse(set.contains("a.b$C"));
+        assertFalse(set.contains("a.b.C.Inner"));
+        assertFalse(set.contains(Integer.valueOf(1)));
+        assertEquals(expected, collect(set.iterator()));
+    }
+
+    @Test
+    public void RemoveTest() {
+        GroovyClassPathSet set = new GroovyClassPathSet(CLASS_PATHS);
+        assertTrue(set.remove("a.b.C"));
+        assertFalse(set.remove("a.b.C"));
+        assertFalse(set.remove("a.b"));
+        assertFalse(set.contains("a.b.C"));
+        assertTrue(set.contains("a.b.C$Inner"));
+        set.removeAll(Arrays.asList("a.b.C$Inner", "Script"));
+        assertEquals(CLASS_PATHS.size() - 3, set.size());
+        Iterator<String> iterator = set.iterator("a.b.C");
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        assertEquals(names("a.b.c.D", "a.b$c.F"), collect(set.iterator("a.b")));
+        assertTrue(set.add("a.b.C"));
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.iterator().hasNext());
+    }
+
+    @Test
+    public void ClearWhileIteratingTest() {
+        GroovyClassPathSet set = new GroovyClassPathSet(CLASS_PATHS);
+        Iterator<String> iterator = set.iterator();
+        Iterator<String> prefixed = set.iterator("a.b");
+        assertTrue(CLASS_PATHS.contains(iterator.next()));
+        assertTrue(iterator.hasNext());
+        set.clear();
+        set.add("z.Z");
+        assertFalse(iterator.hasNext());
+        assertFalse(prefixed.hasNext());
+        iterator.remove();
+        assertEquals(Collections.singleton("z.Z"), set);
+        assertEquals(Collections.singleton("z.Z"), collect(set.iterator()));
+    }
+
+    @Test
+    public void PrefixTest() {
+        GroovyClassPathSet set = new GroovyClassPathSet(CLASS_PATHS);
+        assertEquals(names("a.b.C", "a.b.C$Inner", "a.b.C$Inner$Deep", "a.b.C$1", "a.b.c.D", "a.b$c.F"),
+                collect(set.iterator("a.b")));
+        assertEquals(names("a.b.C", "a.b.C$Inner", "a.b.C$Inner$Deep", "a.b.C$1"), collect(set.iterator("a.b.C")));
+        assertEquals(names("a.b.C$Inner", "a.b.C$Inner$Deep"), collect(set.iterator("a.b.C$Inner")));
+        assertEquals(names("a.b$c.F"), collect(set.iterator("a.b$c")));
+        assertEquals(names(), collect(set.iterator("a.b.c.D.E")));
+        assertEquals(names(), collect(set.iterator("a.bx")));
+        assertEquals(new HashSet<String>(CLASS_PATHS), collect(set.iterator("")));
+    }
+
+    @Test
+    public void SharedSegmentsTest() {
+        GroovyClassPathSet set = new GroovyClassPathSet();
+        for (int i = 0; i < 1000; i++) {
+            set.add("eu.arthepsy.groovy.pkg" + (i % 10) + ".Class" + i);
+            set.add("eu.arthepsy.groovy.pkg" + (i % 10) + ".Class" + i + "$Inner");
+        }
+        assertEquals(2000, set.size());
+        assertEquals(3 + 10 + 1000 + 1, set.getSegmentCount());
+        assertTrue(set.contains("eu.arthepsy.groovy.pkg3.Class503$Inner"));
+        assertEquals(200, collect(set.iterator("eu.arthepsy.groovy.pkg3")).size());
+    }
+
+    @Test
+    public void SerializationTest() throws IOException {
+        GroovyClassPathSet set = new GroovyClassPathSet(CLASS_PATHS);
+        set.remove("Script");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(new DataOutputStream(bytes));
+        GroovyClassPathSet read = GroovyClassPathSet.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(set, read);
+        assertEquals(set.size(), read.size());
+        assertEquals(set.getSegmentCount(), read.getSegmentCount());
+        assertEquals(names("a.b.C$Inner", "a.b.C$Inner$Deep"), collect(read.iterator("a.b.C$Inner")));
+        assertTrue(read.add("Script"));
+    }
+
+    @Test(expected = IOException.class)
+    public void CorruptSerializationTest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GroovyClassPathSet(Arrays.asList("a")).writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        // header, one segment and the node count come first; the only node is made its own parent
+        data[4 + 4 + 4 + 3 + 4 + 3] = 1;
+        GroovyClassPathSet.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void ConcurrentAddTest() throws InterruptedException {
+        final GroovyClassPathSet set = new GroovyClassPathSet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        set.add("p" + (i % 7) + ".q" + (i % 13) + ".C" + (i * 4 + thread));
+                    }
+                }
+            });
+        }
+        Iterator<String> iterator = set.iterator();
+        int seen = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            seen++;
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertTrue(seen <= 20000);
+        assertEquals(20000, set.size());
+        assertEquals(20000, collect(set.iterator()).size());
+        assertTrue(set.contains("p1.q1.C" + (1 * 4 + 2)));
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class GroovyClassWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<GroovyClassChange> changes = new LinkedBlockingQueue<GroovyClassChange>();
+    private final BlockingQueue<GroovyDiagnostic> diagnostics = new LinkedBlockingQueue<GroovyDiagnostic>();
+    private GroovyClassWatcher watcher;
+    private Thread watchThread;
+    private Path root;
+
+    private void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private GroovyClassChange nextChange() throws InterruptedException {
+        GroovyClassChange change = changes.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no change published", change);
+        return change;
+    }
+
+    @Before
+    public void startWatcher() throws IOException {
+        root = folder.getRoot().toPath().toAbsolutePath().normalize();
+        write(root.resolve("a/First.groovy"), "package a\nclass First { class Inner {} }\n");
+        // files named Locked.groovy fail to open, as if they were not readable
+        GroovyClassParser parser = new GroovyClassParser(1) {
+            @Override
+            public GroovyFileResult parseGroovyFile(String filePath) throws IOException {
+                if (filePath.endsWith("Locked.groovy")) {
+                    throw new AccessDeniedException(filePath);
+                }
+                return super.parseGroovyFile(filePath);
+            }
+        };
+        parser.setCollectClassPaths(false);
+        parser.setDiagnostics(new GroovyDiagnostics() {
+            @Override
+            public boolean isEnabled(GroovyDiagnosticLevel level) {
+                return true;
+            }
+
+            @Override
+            public void report(GroovyDiagnostic diagnostic) {
+                diagnostics.add(diagnostic);
+            }
+        });
+        watcher = new GroovyClassWatcher(parser, 20);
+        watcher.addListener(new GroovyClassChangeListener() {
+            @Override
+            public void classesChanged(GroovyClassChange change) {
+                changes.add(change);
+            }
+        });
+        watcher.register(root);
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    watcher.watch();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        watchThread.start();
+    }
+
+    @After
+    public void stopWatcher() throws IOException, InterruptedException {
+        watcher.close();
+        watchThread.join(10000);
+    }
+
+    @Test
+    public void RegisterTest() throws InterruptedException {
+        GroovyClassChange change = nextChange();
+        assertEquals(root.resolve("a/First.groovy"), change.getFilePath());
+        assertEquals(new HashSet<String>(Arrays.asList("a.First", "a.First$Inner")), change.getAddedClassPaths());
+        assertTrue(change.getRemovedClassPaths().isEmpty());
+        assertEquals(change.getAddedClassPaths(), watcher.getClassPaths());
+    }
+
+    @Test
+    public void ModifyTest() throws IOException, InterruptedException {
+        nextChange();
+        write(root.resolve("a/First.groovy"), "package a\nclass First { class Other {} }\n");
+        GroovyClassChange change = nextChange();
+        assertEquals(Collections.singleton("a.First$Other"), change.getAddedClassPaths());
+        assertEquals(Collections.singleton("a.First$Inner"), change.getRemovedClassPaths());
+        assertEquals(new HashSet<String>(Arrays.asList("a.First", "a.First$Other")), watcher.getClassPaths());
+    }
+
+    @Test
+    public void CreateAndDeleteTest() throws IOException, InterruptedException {
+        nextChange();
+        Path second = root.resolve("b/c/Second.groovy");
+        write(second, "package b.c\nclass Second {}\n");
+        GroovyClassChange change = nextChange();
+        assertEquals(second, change.getFilePath());
+        assertEquals(Collections.singleton("b.c.Second"), change.getAddedClassPaths());
+
+        Files.delete(second);
+        change = nextChange();
+        assertTrue(change.isDeleted());
+        assertEquals(Collections.singleton("b.c.Second"), change.getRemovedClassPaths());
+        assertEquals(1, watcher.getResults().size());
+    }
+
+    @Test
+    public void UnreadableFileTest() throws IOException, InterruptedException {
+        nextChange();
+        Path locked = root.resolve("a/Locked.groovy");
+        Path second = root.resolve("a/Second.groovy");
+        write(locked, "package a\nclass Locked {}\n");
+        write(second, "package a\nclass Second {}\n");
+        GroovyClassChange change = nextChange();
+        assertEquals(second, change.getFilePath());
+        GroovyDiagnostic diagnostic = diagnostics.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no diagnostic reported", diagnostic);
+        assertEquals(locked.toString(), diagnostic.getFilePath());
+        assertTrue(diagnostic.getCause() instanceof AccessDeniedException);
+
+        write(root.resolve("a/First.groovy"), "package a\nclass First {}\n");
+        change = nextChange();
+        assertEquals(Collections.singleton("a.First$Inner"), change.getRemovedClassPaths());
+        assertEquals(new HashSet<String>(Arrays.asList("a.First", "a.Second")), watcher.getClassPaths());
+    }
+
+}
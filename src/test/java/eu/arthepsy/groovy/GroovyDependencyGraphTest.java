@@ -0,0 +1,162 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class GroovyDependencyGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GroovyClassParser parser;
+    private GroovyDependencyGraph graph;
+
+    @Before
+    public void setUp() throws IOException {
+        parser = new GroovyClassParser();
+        parser.setCollectImports(true);
+        parser.setCollectTypeReferences(true);
+        graph = new GroovyDependencyGraph();
+        parser.setListener(graph);
+        write("Base.groovy", "package a\nclass Base {\n    static class Nested {}\n}\n");
+        write("Child.groovy", "package a\nclass Child extends Base {}\n");
+        write("User.groovy", "package b\nimport a.Child\nclass User {\n    Child child\n}\n");
+        write("Star.groovy", "package b\nimport a.*\nclass Star {\n    Base.Nested nested\n}\n");
+        write("Qualified.groovy", "package c\nclass Qualified {\n    def nested = new a.Base.Nested()\n}\n");
+        write("Pending.groovy", "package a\nclass Pending {\n    Late late\n    String name\n}\n");
+    }
+
+    private String write(String fileName, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(fileName);
+        Files.write(file, content.getBytes("UTF-8"));
+        parser.parseGroovyFile(file.toString());
+        return file.toString();
+    }
+
+    private String path(String fileName) {
+        return folder.getRoot().toPath().resolve(fileName).toString();
+    }
+
+    private Set<String> paths(String... fileNames) {
+        Set<String> result = new HashSet<String>();
+        for (String fileName : fileNames) {
+            result.add(path(fileName));
+        }
+        return result;
+    }
+
+    private Set<String> affected(String fileName) {
+        return graph.getAffectedFiles(Collections.singleton(path(fileName)));
+    }
+
+    @Test
+    public void DependenciesTest() {
+        assertEquals(6, graph.size());
+        assertEquals(paths("Base.groovy"), graph.getDependencies(path("Child.groovy")));
+        assertEquals(paths("Child.groovy"), graph.getDependencies(path("User.groovy")));
+        assertEquals(paths("Base.groovy"), graph.getDependencies(path("Star.groovy")));
+        assertEquals(paths("Base.groovy"), graph.getDependencies(path("Qualified.groovy")));
+        assertTrue(graph.getDependencies(path("Pending.groovy")).isEmpty());
+        assertEquals(paths("Child.groovy", "Star.groovy", "Qualified.groovy"),
+                graph.getDependents(path("Base.groovy")));
+    }
+
+    @Test
+    public void AffectedFilesTest() {
+        assertEquals(paths("Base.groovy", "Child.groovy", "User.groovy", "Star.groovy", "Qualified.groovy"),
+                affected("Base.groovy"));
+        assertEquals(paths("Child.groovy", "User.groovy"), affected("Child.groovy"));
+        assertEquals(paths("User.groovy"), affected("User.groovy"));
+        Set<String> unknown = graph.getAffectedFiles(Arrays.asList(path("User.groovy"), "Unknown.groovy"));
+        assertTrue(unknown.contains("Unknown.groovy"));
+        assertEquals(2, unknown.size());
+        assertEquals(new HashSet<String>(Arrays.asList("a.Child", "b.User")),
+                graph.getAffectedClassPaths(Collections.singleton(path("Child.groovy"))));
+    }
+
+    @Test
+    public void IncrementalUpdateTest() throws IOException {
+        write("Child.groovy", "package a\nclass Child {}\n");
+        assertEquals(paths("Base.groovy", "Star.groovy", "Qualified.groovy"), affected("Base.groovy"));
+        assertEquals(paths("Child.groovy", "User.groovy"), affected("Child.groovy"));
+
+        write("Late.groovy", "package a\nclass Late {}\n");
+        assertEquals(paths("Late.groovy"), graph.getDependencies(path("Pending.groovy")));
+
+        write("Late.groovy", "package b\nclass Late {}\n");
+        assertEquals(paths("Late.groovy"), affected("Late.groovy"));
+        assertTrue(graph.getDependencies(path("Pending.groovy")).isEmpty());
+
+        write("Late.groovy", "package a\nclass Late {}\n");
+        assertEquals(paths("Pending.groovy"), graph.getDependents(path("Late.groovy")));
+    }
+
+    @Test
+    public void RemoveTest() throws IOException {
+        graph.remove(path("Base.groovy"));
+        assertEquals(5, graph.size());
+        assertTrue(graph.getDependencies(path("Child.groovy")).isEmpty());
+        assertEquals(paths("Child.groovy", "User.groovy"), affected("Child.groovy"));
+
+        write("Other.groovy", "package a\nclass Base {}\n");
+        assertEquals(paths("Other.groovy"), graph.getDependencies(path("Child.groovy")));
+        graph.remove(path("Unknown.groovy"));
+        assertEquals(6, graph.size());
+    }
+
+    @Test
+    public void DuplicateDeclarationTest() throws IOException {
+        write("First.groovy", "package d\nclass Shared {}\n");
+        write("Second.groovy", "package d\nclass Shared {}\nclass Other {}\n");
+        write("Uses.groovy", "package d\nclass Uses {\n    Shared shared\n}\n");
+        assertEquals(paths("Second.groovy"), graph.getDependencies(path("Uses.groovy")));
+
+        write("Second.groovy", "package d\nclass Other {}\n");
+        assertEquals(paths("First.groovy"), graph.getDependencies(path("Uses.groovy")));
+        assertEquals(paths("First.groovy", "Uses.groovy"), affected("First.groovy"));
+
+        write("Second.groovy", "package d\nclass Shared {}\n");
+        graph.remove(path("First.groovy"));
+        assertEquals(paths("Second.groovy", "Uses.groovy"), affected("Second.groovy"));
+
+        graph.remove(path("Second.groovy"));
+        assertTrue(graph.getDependencies(path("Uses.groovy")).isEmpty());
+    }
+
+}
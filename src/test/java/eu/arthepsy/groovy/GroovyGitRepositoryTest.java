@@ -0,0 +1,164 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GroovyGitRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path workTree;
+    private GitTestRepository git;
+
+    @Before
+    public void setUp() throws IOException {
+        workTree = folder.getRoot().toPath();
+        git = new GitTestRepository(workTree);
+    }
+
+    private static Map<String, String> files(String... pathsAndIds) {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        for (int i = 0; i < pathsAndIds.length; i += 2) {
+            files.put(pathsAndIds[i], pathsAndIds[i + 1]);
+        }
+        return files;
+    }
+
+    @Test
+    public void LooseObjectsTest() throws IOException {
+        String first = git.blob("class First {}\n");
+        String second = git.blob("package a.b\nclass Second {}\n");
+        String readme = git.blob("readme\n");
+        String tree = git.tree("First.groovy", first, "README", readme,
+                "a", git.tree("b", git.tree("Second.groovy", second)));
+        String commit = git.commit(tree);
+        git.ref("refs/heads/master", commit);
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            assertEquals(commit, repository.resolve("HEAD"));
+            assertEquals(commit, repository.resolve("master"));
+            assertEquals(commit, repository.resolve("refs/heads/master"));
+            assertEquals(commit, repository.resolve(commit.toUpperCase()));
+            Map<String, String> expected = files("First.groovy", first, "a/b/Second.groovy", second);
+            assertEquals(expected, repository.listFiles("master", ".groovy"));
+            assertEquals(expected, repository.listFiles(tree, ".groovy"));
+            assertArrayEquals("readme\n".getBytes("UTF-8"), repository.readBlob(readme));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void PackedObjectsTest() throws IOException {
+        StringBuilder content = new StringBuilder("package a\nclass Big {\n");
+        for (int i = 0; i < 40; i++) {
+            content.append("    int field").append(i).append('\n');
+        }
+        String[] blobs = new String[5];
+        for (int i = 0; i < blobs.length; i++) {
+            content.append("    int extra").append(i).append('\n');
+            blobs[i] = git.blob(content + "}\n");
+        }
+        String tree = git.tree("Big.groovy", blobs[4]);
+        String commit = git.commit(tree);
+        git.pack(blobs);
+        git.pack(commit, git.commit(git.tree("Other.groovy", blobs[0])));
+        git.ref("refs/heads/master", commit);
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree.resolve(".git"));
+        try {
+            assertEquals(files("Big.groovy", blobs[4]), repository.listFiles("HEAD", ".groovy"));
+            for (int i = blobs.length - 1; i >= 0; i--) {
+                assertEquals(content.toString().substring(0, content.length() - (4 - i) * 15) + "}\n",
+                        new String(repository.readBlob(blobs[i]), "UTF-8"));
+            }
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void TagsAndPackedRefsTest() throws IOException {
+        String blob = git.blob("class Tagged {}\n");
+        String commit = git.commit(git.tree("Tagged.groovy", blob));
+        String tag = git.tag("v1.0", commit);
+        git.packedRefs("refs/heads/master", commit, "refs/tags/v1.0", tag);
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            assertEquals(commit, repository.resolve("HEAD"));
+            assertEquals(tag, repository.resolve("v1.0"));
+            assertEquals(tag, repository.resolve("tags/v1.0"));
+            assertEquals(files("Tagged.groovy", blob), repository.listFiles("v1.0", ".groovy"));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void UnknownRevisionTest() throws IOException {
+        git.ref("refs/heads/master", git.commit(git.tree()));
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            repository.listFiles("../HEAD", ".groovy");
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void NotABlobTest() throws IOException {
+        String tree = git.tree("A.groovy", git.blob("class A {}\n"));
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            repository.readBlob(tree);
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void EmptyTreeTest() throws IOException {
+        git.ref("refs/heads/master", git.commit(git.tree()));
+        GroovyGitRepository repository = GroovyGitRepository.open(workTree);
+        try {
+            assertEquals(files(), repository.listFiles("master", ".groovy"));
+            assertEquals(workTree.resolve(".git"), repository.getGitDir());
+        } finally {
+            repository.close();
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GroovyParsePipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Path> createSources(int count) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        for (int i = 0; i < count; i++) {
+            Path file = folder.getRoot().toPath().resolve("Source" + i + ".groovy");
+            Files.write(file, ("package p" + (i % 3) + "\nclass Source" + i + " { class Inner {} }\n")
+                    .getBytes("UTF-8"));
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Test
+    public void MatchesParseAllTest() throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        for (File file : ResourceUtils.getFile("WithoutClass.groovy").getParentFile().listFiles()) {
+            if (file.getName().endsWith(".groovy")) {
+                files.add(file.toPath());
+            }
+        }
+        GroovyClassParser expected = new GroovyClassParser(2);
+        expected.setDiagnostics(null);
+        expected.parseAll(files);
+
+        final Set<Thread> listenerThreads = new HashSet<Thread>();
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setListener(new GroovyFileListener() {
+            @Override
+            public void fileParsed(GroovyFileResult result) {
+                listenerThreads.add(Thread.currentThread());
+            }
+        });
+        GroovyParsePipeline pipeline = new GroovyParsePipeline(parser);
+        pipeline.setReaderThreads(3);
+        pipeline.setParserThreads(2);
+        pipeline.parseAll(files);
+        assertEquals(expected.getClassPaths(), parser.getClassPaths());
+        assertEquals(1, listenerThreads.size());
+        assertTrue(listenerThreads.contains(Thread.currentThread()));
+
+        List<GroovyPipelineStageMetrics> stages = pipeline.getStageMetrics();
+        assertEquals(3, stages.size());
+        assertEquals("read", stages.get(0).getName());
+        assertEquals("parse", stages.get(1).getName());
+        assertEquals("aggregate", stages.get(2).getName());
+        for (GroovyPipelineStageMetrics stage : stages) {
+            assertEquals(files.size(), stage.getItems());
+            assertTrue(stage.getMaxQueueDepth() <= stage.getQueueCapacity());
+            assertTrue(stage.getThroughput() > 0);
+        }
+        assertEquals(3, stages.get(0).getThreads());
+        assertEquals(0, stages.get(0).getQueueCapacity());
+        assertEquals(2, stages.get(1).getThreads());
+    }
+
+    @Test
+    public void BackpressureTest() throws IOException {
+        List<Path> files = createSources(50);
+        GroovyClassParser parser = new GroovyClassParser();
+        GroovyParsePipeline pipeline = new GroovyParsePipeline(parser);
+        pipeline.setReaderThreads(4);
+        pipeline.setParserThreads(1);
+        pipeline.setSourceQueueCapacity(1);
+        pipeline.setResultQueueCapacity(1);
+        pipeline.parseAll(files);
+        assertEquals(100, parser.getClassPaths().size());
+        assertTrue(parser.getClassPaths().contains("p1.Source49$Inner"));
+        for (GroovyPipelineStageMetrics stage : pipeline.getStageMetrics()) {
+            assertEquals(50, stage.getItems());
+            assertTrue(stage.getMaxQueueDepth() <= 1);
+        }
+    }
+
+    @Test
+    public void CacheTest() throws IOException {
+        List<Path> files = createSources(5);
+        GroovyClassCache cache = new GroovyClassCache(folder.getRoot().toPath().resolve("cache.bin"));
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setCache(cache);
+        new GroovyParsePipeline(parser).parseAll(files);
+        assertEquals(5, cache.size());
+
+        GroovyParseStatistics statistics = new GroovyParseStatistics();
+        GroovyClassParser cachedParser = new GroovyClassParser();
+        cachedParser.setCache(cache);
+        cachedParser.setInstrumentation(statistics);
+        GroovyParsePipeline pipeline = new GroovyParsePipeline(cachedParser);
+        pipeline.parseAll(files);
+        assertEquals(parser.getClassPaths(), cachedParser.getClassPaths());
+        assertEquals(5, statistics.getCachedFileCount());
+        assertEquals(5, pipeline.getStageMetrics().get(0).getItems());
+        assertEquals(0, pipeline.getStageMetrics().get(1).getItems());
+        assertEquals(5, pipeline.getStageMetrics().get(2).getItems());
+    }
+
+    @Test
+    public void MaxFileSizeTest() throws IOException {
+        List<Path> files = createSources(2);
+        Path large = folder.getRoot().toPath().resolve("Large.groovy");
+        StringBuilder content = new StringBuilder("package big\nclass Large {\n");
+        for (int i = 0; i < 100; i++) {
+            content.append("    int field").append(i).append('\n');
+        }
+        Files.write(large, content.append("}\n").toString().getBytes("UTF-8"));
+        files.add(large);
+        GroovyParseLimits limits = new GroovyParseLimits();
+        limits.setMaxFileSize(500);
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setDiagnostics(null);
+        parser.setLimits(limits);
+        new GroovyParsePipeline(parser).parseAll(files);
+        assertTrue(parser.getClassPaths().contains("big.Large"));
+        assertTrue(parser.getClassPaths().contains("p1.Source1$Inner"));
+    }
+
+    @Test
+    public void FailureTest() throws IOException {
+        List<Path> files = createSources(20);
+        files.add(10, folder.getRoot().toPath().resolve("Missing.groovy"));
+        GroovyParsePipeline pipeline = new GroovyParsePipeline(new GroovyClassParser());
+        pipeline.setSourceQueueCapacity(2);
+        try {
+            pipeline.parseAll(files);
+            fail();
+        } catch (NoSuchFileException e) {
+            assertTrue(e.getMessage().endsWith("Missing.groovy"));
+        }
+
+        GroovyClassParser parser = new GroovyClassParser();
+        parser.setListener(new GroovyFileListener() {
+            @Override
+            public void fileParsed(GroovyFileResult result) {
+                throw new IllegalStateException(result.getFilePath());
+            }
+        });
+        try {
+            new GroovyParsePipeline(parser).parseAll(createSources(3));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().endsWith(".groovy"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void InvalidSettingsTest() {
+        new GroovyParsePipeline(new GroovyClassParser()).setReaderThreads(0);
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * The MIT License
+ * Copyright (c) 2015 Andris Raugulis
+ * moo@arthepsy.eu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package eu.arthepsy.groovy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GroovyParseStatisticsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] FILES = {
+            "SingleNestedClass",
+            "SiblingClasses",
+            "SingleEnum",
+            "RecognitionException",
+            "TokenStreamException",
+    };
+
+    private GroovyParseStatistics parseFiles(int slowestCount) throws IOException {
+        List<Path> filePaths = new ArrayList<Path>();
+        for (String fileClassName : FILES) {
+            filePaths.add(ResourceUtils.getFile(fileClassName + ".groovy").toPath());
+        }
+        GroovyParseStatistics statistics = new GroovyParseStatistics(slowestCount);
+        GroovyClassParser parser = new GroovyClassParser(2);
+        parser.setInstrumentation(statistics);
+        parser.parseAll(filePaths);
+        return statistics;
+    }
+
+    @Test
+    public void TotalsTest() throws IOException {
+        GroovyParseStatistics statistics = parseFiles(3);
+        assertEquals(FILES.length, statistics.getFileCount());
+        assertEquals(0, statistics.getCachedFileCount());
+        assertEquals(2, statistics.getFailureCount());
+        long failures = 0;
+        for (Long count : statistics.getFailureCounts().values()) {
+            failures += count;
+        }
+        assertEquals(2, failures);
+        long bytes = 0;
+        for (String fileClassName : FILES) {
+            bytes += ResourceUtils.getFile(fileClassName + ".groovy").length();
+        }
+        assertEquals(bytes, statistics.getBytesRead());
+        assertTrue(statistics.getTokenCount() > 0);
+        assertTrue(statistics.getAstNodeCount() > 0);
+        assertTrue(statistics.getFilesPerSecond() > 0);
+        assertEquals(GroovyParsePhase.values().length, statistics.getPhaseMillis().size());
+        statistics.reset();
+        assertEquals(0, statistics.getFileCount());
+        assertTrue(statistics.getFailureCounts().isEmpty());
+        assertTrue(statistics.getSlowestFiles().isEmpty());
+    }
+
+    @Test
+    public void SlowestFilesTest() throws IOException {
+        GroovyParseStatistics statistics = parseFiles(3);
+        List<GroovyFileMetrics> slowest = statistics.getSlowestFileMetrics();
+        assertEquals(3, slowest.size());
+        for (int i = 1; i < slowest.size(); i++) {
+            assertTrue(slowest.get(i - 1).getTotalNanos() >= slowest.get(i).getTotalNanos());
+        }
+        assertEquals(3, statistics.getSlowestFiles().size());
+        assertTrue(parseFiles(0).getSlowestFiles().isEmpty());
+    }
+
+    @Test
+    public void JsonTest() throws IOException {
+        GroovyParseStatistics statistics = parseFiles(10);
+        Path file = folder.getRoot().toPath().resolve("statistics.json");
+        statistics.writeJson(file);
+        String json = new String(Files.readAllBytes(file), "UTF-8");
+        assertTrue(json.startsWith("{\"files\":" + FILES.length + ","));
+        assertTrue(json.contains("\"phaseMillis\":{\"READ\":"));
+        String name = ResourceUtils.getFile("SingleEnum.groovy").getPath().replace("\\", "\\\\");
+        assertTrue(json.contains("{\"file\":\"" + name + "\""));
+        assertTrue(json.endsWith("]}"));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void FailedJsonWriteTest() throws IOException {
+        GroovyParseStatistics statistics = parseFiles(10);
+        Path file = folder.newFolder("statistics.json").toPath();
+        Files.createFile(file.resolve("occupied"));
+        try {
+            statistics.writeJson(file);
+            fail();
+        } catch (IOException e) {
+            assertTrue(Files.isDirectory(file));
+        }
+        assertFalse(Files.exists(file.resolveSibling("statistics.json.tmp")));
+    }
+
+    @Test
+    public void MBeanTest() throws IOException, JMException {
+        GroovyParseStatistics statistics = parseFiles(10);
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = statistics.register(server, new ObjectName(GroovyParseStatistics.DEFAULT_OBJECT_NAME));
+        assertEquals((long) FILES.length, server.getAttribute(name, "FileCount"));
+        assertEquals(2L, server.getAttribute(name, "FailureCount"));
+        assertTrue(server.getAttribute(name, "FailureCounts") != null);
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertEquals(0L, server.getAttribute(name, "FileCount"));
+    }
+
+}
@@ -0,0 +1,21 @@
+package eu.arthepsy.groovy.scan
+
+import java.util.List
+
+@Deprecated
+class Outer {
+	def type = Outer.class
+	def text = "value ${ [a: 1].collect { it } } and more"
+	static class Inner {
+		enum Kind { ONE, TWO }
+	}
+	def run() {
+		[1, 2].each { println it }
+		def anonymous = new Runnable() {
+			void run() { }
+		}
+	}
+	interface Callback {}
+}
+trait Helper {}
+@interface Marker {}
@@ -0,0 +1,13 @@
+class First {
+	class Inner {
+		class Leaf { }
+	}
+}
+class Second {
+	class Inner {
+		class Leaf { }
+	}
+	class Other {
+		class Leaf { }
+	}
+}
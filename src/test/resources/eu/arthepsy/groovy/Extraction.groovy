@@ -0,0 +1,29 @@
+package eu.arthepsy.groovy.extraction
+
+import java.util.concurrent.Callable
+import java.util.*
+import static java.lang.Math.max
+import static java.util.Collections.*
+import java.util.Map.Entry as MapEntry
+
+@Deprecated
+@groovy.transform.EqualsAndHashCode(includes = 'name')
+class Extraction<T> extends AbstractList<T> implements Callable<T>, java.io.Serializable {
+    String name
+
+    interface Listener extends EventListener, Cloneable {
+    }
+
+    enum Kind implements Runnable {
+        FIRST
+        void run() {}
+    }
+
+    trait Named {
+        String name
+    }
+
+    T get(int index) { null }
+    int size() { 0 }
+    T call() { null }
+}
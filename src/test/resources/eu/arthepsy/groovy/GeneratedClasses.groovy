@@ -0,0 +1,35 @@
+package eu.arthepsy.groovy.generated
+
+class GeneratedClasses {
+    def field = { 'field' }
+    Runnable runnable = new Runnable() { void run() {} }
+
+    GeneratedClasses() { def constructor = { 'constructor' } }
+
+    def method(value = { 'default' }) {
+        def outer = { -> def inner = { 'inner' } }
+        def anonymous = new Object() {
+            def closure = { 'anonymous' }
+            def runnable = new Runnable() { void run() {} }
+        }
+        [1].each { it }
+    }
+
+    static class Nested {
+        def method() { def closure = { 'nested' }; new Runnable() { void run() {} } }
+    }
+
+    def after = new Runnable() { void run() {} }
+
+    static { def block = { 'static' } }
+}
+
+trait Named {
+    String name
+    def greet() { def closure = { 'greet' } }
+}
+
+enum Kind {
+    FIRST { def get() { def closure = { 'first' } } },
+    SECOND
+}
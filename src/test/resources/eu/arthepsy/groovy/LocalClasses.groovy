@@ -0,0 +1,17 @@
+class Service {
+	def handle() {
+		class Handler {
+			class Step { }
+		}
+		def task = new Runnable() {
+			void run() { }
+		}
+		[1, 2].each {
+			println it
+		}
+	}
+	static class Config { }
+}
+if (true) {
+	class ScriptLocal { }
+}
@@ -0,0 +1,25 @@
+package eu.arthepsy.groovy.recovery
+
+class Before {
+    def ok() { 1 }
+}
+
+class Broken {
+    def m() {
+        def x = = 3
+    }
+    class Inner {}
+}
+
+class Unclosed {
+    def m() {
+        if (true) {
+    }
+}
+
+@Deprecated
+class After {
+    static class Nested {}
+}
+def s = 'unterminated
+interface Last {}
@@ -0,0 +1,24 @@
+package eu.arthepsy.groovy.references
+
+import java.util.concurrent.TimeUnit
+
+@Singleton
+class TypeReferences<K> extends Base implements Comparable<Other> {
+    static final int LIMIT = Limits.MAX
+    Map<String, List<Item>> items = new HashMap<String, List<Item>>()
+    Outer.Inner inner
+
+    K lookup(Key key, Closure<Result> callback) {
+        def value = (Value) key.load()
+        Helper.call(value)
+        java.util.Collections.emptyList()
+        int count = 0
+        done:
+        for (Entry entry : items) {
+            count++
+        }
+        return callback.call(Factory.create(TimeUnit.SECONDS))
+    }
+
+    int compareTo(Other other) { 0 }
+}
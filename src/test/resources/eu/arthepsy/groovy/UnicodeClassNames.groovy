@@ -0,0 +1,4 @@
+class Ünïcode {
+}
+class \u0041Escaped {
+}